@@ -134,25 +134,7 @@ public class JWildfireApplet extends JApplet implements IterationObserver {
 
   private void cancelRender() {
     if (state == State.RENDER) {
-      while (true) {
-        boolean done = true;
-        for (FlameRenderThread thread : threads) {
-          if (!thread.isFinished()) {
-            done = false;
-            thread.cancel();
-            try {
-              Thread.sleep(1);
-            }
-            catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-            break;
-          }
-        }
-        if (done) {
-          break;
-        }
-      }
+      renderer.cancelThreads(threads);
       state = State.IDLE;
     }
   }
@@ -22,6 +22,7 @@ import java.util.List;
 
 import org.jwildfire.base.mathlib.BaseMathLibType;
 import org.jwildfire.base.mathlib.MathLib;
+import org.jwildfire.create.tina.base.raster.RasterAccumulationMode;
 import org.jwildfire.create.tina.base.raster.RasterPointPrecision;
 import org.jwildfire.create.tina.random.RandomGeneratorType;
 import org.jwildfire.create.tina.swing.RandomBatchRefreshType;
@@ -62,6 +63,7 @@ public class Prefs extends ManagedObject {
   static final String KEY_TINA_PATH_JWFSCRIPTS = "tina.path.jwfscripts";
   static final String KEY_TINA_PATH_GRADIENTS = "tina.path.gradients";
   static final String KEY_TINA_RENDER_MOVIE_FRAMES = "tina.render.movie.frames";
+  static final String KEY_TINA_RENDER_MOVIE_CONCURRENT_FRAMES = "tina.render.movie.concurrent_frames";
   static final String KEY_TINA_PATH_SVG = "tina.path.svg";
 
   static final String KEY_TINA_RENDER_REALTIME_QUALITY = "tina.render.realtime.quality";
@@ -75,6 +77,9 @@ public class Prefs extends ManagedObject {
   static final String KEY_TINA_RANDOM_GENERATOR = "tina.random.generator";
   static final String KEY_TINA_RANDOMBATCH_SIZE = "tina.random_batch.size";
   static final String KEY_TINA_RASTERPOINT_PRECISION = "tina.rasterpoint.precision";
+  static final String KEY_TINA_RASTER_ACCUMULATION_MODE = "tina.raster.accumulation_mode";
+  static final String KEY_TINA_RENDER_STATISTICS = "tina.render.statistics";
+  static final String KEY_TINA_RENDER_SAMPLE_BATCH_SIZE = "tina.render.sample_batch_size";
   static final String KEY_TINA_RANDOMBATCH_BGCOLOR_RED = "tina.random_batch.bg_color.red";
   static final String KEY_TINA_RANDOMBATCH_BGCOLOR_GREEN = "tina.random_batch.bg_color.green";
   static final String KEY_TINA_RANDOMBATCH_BGCOLOR_BLUE = "tina.random_batch.bg_color.blue";
@@ -137,7 +142,7 @@ public class Prefs extends ManagedObject {
   @Property(description = "Development mode", category = PropertyCategory.GENERAL)
   private boolean developmentMode = false;
 
-  @Property(description = "Implementation of basic mathematical functions to use", category = PropertyCategory.GENERAL, editorClass = BaseMathLibTypeEditor.class)
+  @Property(description = "Implementation of basic mathematical functions to use (requires a restart)", category = PropertyCategory.GENERAL, editorClass = BaseMathLibTypeEditor.class)
   private BaseMathLibType baseMathLibType = BaseMathLibType.getDefaultValue();
 
   private final List<QualityProfile> qualityProfiles = new ArrayList<QualityProfile>();
@@ -162,14 +167,14 @@ public class Prefs extends ManagedObject {
   public static class BaseMathLibTypeEditor extends ComboBoxPropertyEditor {
     public BaseMathLibTypeEditor() {
       super();
-      setAvailableValues(new BaseMathLibType[] { BaseMathLibType.FAST_MATH, BaseMathLibType.JAVA_MATH });
+      setAvailableValues(new BaseMathLibType[] { BaseMathLibType.FAST_MATH, BaseMathLibType.JAVA_MATH, BaseMathLibType.TABLE_MATH });
     }
   }
 
   public static class RandomGeneratorTypeEditor extends ComboBoxPropertyEditor {
     public RandomGeneratorTypeEditor() {
       super();
-      setAvailableValues(new RandomGeneratorType[] { RandomGeneratorType.SIMPLE, RandomGeneratorType.MARSAGLIA, RandomGeneratorType.MERSENNE_TWISTER, RandomGeneratorType.JAVA_INTERNAL });
+      setAvailableValues(new RandomGeneratorType[] { RandomGeneratorType.SIMPLE, RandomGeneratorType.MARSAGLIA, RandomGeneratorType.MERSENNE_TWISTER, RandomGeneratorType.JAVA_INTERNAL, RandomGeneratorType.XOROSHIRO });
     }
   }
 
@@ -180,6 +185,13 @@ public class Prefs extends ManagedObject {
     }
   }
 
+  public static class RasterAccumulationModeEditor extends ComboBoxPropertyEditor {
+    public RasterAccumulationModeEditor() {
+      super();
+      setAvailableValues(new RasterAccumulationMode[] { RasterAccumulationMode.THREAD_LOCAL, RasterAccumulationMode.STRIPED });
+    }
+  }
+
   @Property(description = "Look and feel (major UI style) - changes are applied only after restarting the main program", category = PropertyCategory.TINA, editorClass = PLAFStyleEditor.class)
   private String plafStyle = LookAndFeel.PLAF_NIMBUS;
   @Property(description = "Look and feel theme (UI sub style) - changes are applied only after restarting the main program", category = PropertyCategory.TINA)
@@ -188,11 +200,23 @@ public class Prefs extends ManagedObject {
   @Property(description = "Default number of frames for a movie", category = PropertyCategory.TINA)
   private int tinaRenderMovieFrames = 90;
 
+  @Property(description = "Maximum number of movie frames which are rendered at the same time (limited by the available memory)", category = PropertyCategory.TINA)
+  private int tinaRenderMovieConcurrentFrames = 2;
+
   private static int tinaRenderThreads;
 
   @Property(description = "Precision of the raster (less precision needs less memory)", category = PropertyCategory.TINA, editorClass = RasterPointPrecisionEditor.class)
   private RasterPointPrecision tinaRasterPointPrecision = RasterPointPrecision.getDefaultValue();
 
+  @Property(description = "How render threads share the raster (THREAD_LOCAL is faster, STRIPED needs less memory)", category = PropertyCategory.TINA, editorClass = RasterAccumulationModeEditor.class)
+  private RasterAccumulationMode tinaRasterAccumulationMode = RasterAccumulationMode.getDefaultValue();
+
+  @Property(description = "Collect and log render statistics per xForm and variation (slows down rendering)", category = PropertyCategory.TINA)
+  private boolean tinaRenderStatistics = false;
+
+  @Property(description = "Number of samples which are iterated before they are drawn as one block (1 disables batching)", category = PropertyCategory.TINA)
+  private int tinaRenderSampleBatchSize = 256;
+
   @Property(description = "Random number generator to use", category = PropertyCategory.TINA, editorClass = RandomGeneratorTypeEditor.class)
   private RandomGeneratorType tinaRandomNumberGenerator = RandomGeneratorType.getDefaultValue();
 
@@ -449,6 +473,7 @@ public class Prefs extends ManagedObject {
     tinaDefaultAntialiasingRadius = pSrc.tinaDefaultAntialiasingRadius;
 
     tinaRenderMovieFrames = pSrc.tinaRenderMovieFrames;
+    tinaRenderMovieConcurrentFrames = pSrc.tinaRenderMovieConcurrentFrames;
     tinaRenderPreviewQuality = pSrc.tinaRenderPreviewQuality;
     tinaRenderRealtimeQuality = pSrc.tinaRenderRealtimeQuality;
     tinaRandomBatchSize = pSrc.tinaRandomBatchSize;
@@ -462,6 +487,9 @@ public class Prefs extends ManagedObject {
     tinaDefaultBGTransparency = pSrc.tinaDefaultBGTransparency;
     tinaDefaultDEMaxRadius = pSrc.tinaDefaultDEMaxRadius;
     tinaRasterPointPrecision = pSrc.tinaRasterPointPrecision;
+    tinaRasterAccumulationMode = pSrc.tinaRasterAccumulationMode;
+    tinaRenderStatistics = pSrc.tinaRenderStatistics;
+    tinaRenderSampleBatchSize = pSrc.tinaRenderSampleBatchSize;
     tinaJWFScriptPath = pSrc.tinaJWFScriptPath;
     tinaGradientPath = pSrc.tinaGradientPath;
     tinaSVGPath = pSrc.tinaSVGPath;
@@ -488,6 +516,10 @@ public class Prefs extends ManagedObject {
     return tinaRenderThreads;
   }
 
+  public void setTinaRenderThreads(int pTinaRenderThreads) {
+    tinaRenderThreads = pTinaRenderThreads;
+  }
+
   public int getTinaRenderPreviewQuality() {
     return tinaRenderPreviewQuality;
   }
@@ -504,6 +536,14 @@ public class Prefs extends ManagedObject {
     this.tinaRenderMovieFrames = tinaRenderMovieFrames;
   }
 
+  public int getTinaRenderMovieConcurrentFrames() {
+    return tinaRenderMovieConcurrentFrames;
+  }
+
+  public void setTinaRenderMovieConcurrentFrames(int tinaRenderMovieConcurrentFrames) {
+    this.tinaRenderMovieConcurrentFrames = tinaRenderMovieConcurrentFrames;
+  }
+
   public int getTinaRenderRealtimeQuality() {
     return tinaRenderRealtimeQuality;
   }
@@ -682,6 +722,30 @@ public class Prefs extends ManagedObject {
     this.tinaRasterPointPrecision = tinaRasterPointPrecision;
   }
 
+  public RasterAccumulationMode getTinaRasterAccumulationMode() {
+    return tinaRasterAccumulationMode;
+  }
+
+  public void setTinaRasterAccumulationMode(RasterAccumulationMode tinaRasterAccumulationMode) {
+    this.tinaRasterAccumulationMode = tinaRasterAccumulationMode;
+  }
+
+  public boolean isTinaRenderStatistics() {
+    return tinaRenderStatistics;
+  }
+
+  public void setTinaRenderStatistics(boolean tinaRenderStatistics) {
+    this.tinaRenderStatistics = tinaRenderStatistics;
+  }
+
+  public int getTinaRenderSampleBatchSize() {
+    return tinaRenderSampleBatchSize;
+  }
+
+  public void setTinaRenderSampleBatchSize(int tinaRenderSampleBatchSize) {
+    this.tinaRenderSampleBatchSize = tinaRenderSampleBatchSize;
+  }
+
   public RandomBatchRefreshType getTinaRandomBatchRefreshType() {
     return tinaRandomBatchRefreshType;
   }
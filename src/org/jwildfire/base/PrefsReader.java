@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.Properties;
 
 import org.jwildfire.base.mathlib.BaseMathLibType;
+import org.jwildfire.create.tina.base.raster.RasterAccumulationMode;
 import org.jwildfire.create.tina.base.raster.RasterPointPrecision;
 import org.jwildfire.create.tina.random.RandomGeneratorType;
 import org.jwildfire.create.tina.swing.RandomBatchRefreshType;
@@ -67,6 +68,8 @@ public class PrefsReader {
         pPrefs.setTinaAssociateProfilesWithFlames(getBooleanProperty(props, Prefs.KEY_TINA_PROFILE_ASSOCIATE_WITH_FLAMES, pPrefs.isTinaAssociateProfilesWithFlames()));
         pPrefs.setTinaSaveFlamesWhenImageIsSaved(getBooleanProperty(props, Prefs.KEY_TINA_SAVING_STORE_FLAMES_WHEN_SAVING_IMAGE, pPrefs.isTinaSaveFlamesWhenImageIsSaved()));
         pPrefs.setTinaSaveHDRInIR(getBooleanProperty(props, Prefs.KEY_TINA_SAVING_STORE_HDR_IN_IR, pPrefs.isTinaSaveHDRInIR()));
+        pPrefs.setTinaRenderStatistics(getBooleanProperty(props, Prefs.KEY_TINA_RENDER_STATISTICS, pPrefs.isTinaRenderStatistics()));
+        pPrefs.setTinaRenderSampleBatchSize(getIntProperty(props, Prefs.KEY_TINA_RENDER_SAMPLE_BATCH_SIZE, pPrefs.getTinaRenderSampleBatchSize()));
         pPrefs.setTinaDefaultBGTransparency(getBooleanProperty(props, Prefs.KEY_TINA_RENDER_DEFAULT_BG_TRANSPARENCY, pPrefs.isTinaDefaultBGTransparency()));
         pPrefs.setTinaDefaultDEMaxRadius(getDoubleProperty(props, Prefs.KEY_TINA_RENDER_DEFAULT_DE_MAX_RADIUS, pPrefs.getTinaDefaultDEMaxRadius()));
         pPrefs.setTinaDefaultAntialiasingAmount(getDoubleProperty(props, Prefs.KEY_TINA_RENDER_DEFAULT_ANTIALIASING_AMOUNT, pPrefs.getTinaDefaultAntialiasingAmount()));
@@ -77,6 +80,7 @@ public class PrefsReader {
         pPrefs.setTinaGradientPath(getProperty(props, Prefs.KEY_TINA_PATH_GRADIENTS, pPrefs.getTinaGradientPath()));
         pPrefs.setTinaSVGPath(getProperty(props, Prefs.KEY_TINA_PATH_SVG, pPrefs.getTinaSVGPath()));
         pPrefs.setTinaRenderMovieFrames(getIntProperty(props, Prefs.KEY_TINA_RENDER_MOVIE_FRAMES, pPrefs.getTinaRenderMovieFrames()));
+        pPrefs.setTinaRenderMovieConcurrentFrames(getIntProperty(props, Prefs.KEY_TINA_RENDER_MOVIE_CONCURRENT_FRAMES, pPrefs.getTinaRenderMovieConcurrentFrames()));
         pPrefs.setTinaRenderPreviewQuality(getIntProperty(props, Prefs.KEY_TINA_RENDER_PREVIEW_QUALITY, pPrefs.getTinaRenderPreviewQuality()));
         pPrefs.setTinaRenderRealtimeQuality(getIntProperty(props, Prefs.KEY_TINA_RENDER_REALTIME_QUALITY, pPrefs.getTinaRenderRealtimeQuality()));
         try {
@@ -86,6 +90,12 @@ public class PrefsReader {
         catch (Exception ex) {
           ex.printStackTrace();
         }
+        try {
+          pPrefs.setTinaRasterAccumulationMode(RasterAccumulationMode.valueOf(getProperty(props, Prefs.KEY_TINA_RASTER_ACCUMULATION_MODE, RasterAccumulationMode.getDefaultValue().toString())));
+        }
+        catch (Exception ex) {
+          ex.printStackTrace();
+        }
         try {
           pPrefs.setBaseMathLibType(BaseMathLibType.valueOf(getProperty(props, Prefs.KEY_GENERAL_BASE_MATH_LIB, BaseMathLibType.getDefaultValue().toString())));
         }
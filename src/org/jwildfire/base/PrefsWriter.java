@@ -43,6 +43,7 @@ public class PrefsWriter {
     addValue(sb, Prefs.KEY_TINA_PATH_GRADIENTS, pPrefs.getTinaGradientPath());
     addValue(sb, Prefs.KEY_TINA_PATH_SVG, pPrefs.getTinaSVGPath());
     addValue(sb, Prefs.KEY_TINA_RENDER_MOVIE_FRAMES, pPrefs.getTinaRenderMovieFrames());
+    addValue(sb, Prefs.KEY_TINA_RENDER_MOVIE_CONCURRENT_FRAMES, pPrefs.getTinaRenderMovieConcurrentFrames());
     addValue(sb, Prefs.KEY_TINA_RENDER_PREVIEW_QUALITY, pPrefs.getTinaRenderPreviewQuality());
     addValue(sb, Prefs.KEY_TINA_RENDER_REALTIME_QUALITY, pPrefs.getTinaRenderRealtimeQuality());
     addValue(sb, Prefs.KEY_TINA_RANDOM_GENERATOR, pPrefs.getTinaRandomNumberGenerator().toString());
@@ -52,6 +53,9 @@ public class PrefsWriter {
     addValue(sb, Prefs.KEY_TINA_RANDOMBATCH_BGCOLOR_BLUE, pPrefs.getTinaRandomBatchBGColorBlue());
     addValue(sb, Prefs.KEY_TINA_RANDOMBATCH_REFRESH_TYPE, pPrefs.getTinaRandomBatchRefreshType().toString());
     addValue(sb, Prefs.KEY_TINA_RASTERPOINT_PRECISION, pPrefs.getTinaRasterPointPrecision().toString());
+    addValue(sb, Prefs.KEY_TINA_RASTER_ACCUMULATION_MODE, pPrefs.getTinaRasterAccumulationMode().toString());
+    addValue(sb, Prefs.KEY_TINA_RENDER_STATISTICS, pPrefs.isTinaRenderStatistics());
+    addValue(sb, Prefs.KEY_TINA_RENDER_SAMPLE_BATCH_SIZE, pPrefs.getTinaRenderSampleBatchSize());
     addValue(sb, Prefs.KEY_SUNFLOW_PATH_SCENES, pPrefs.getSunflowScenePath());
     // resolution profiles
     addValue(sb, Prefs.KEY_TINA_PROFILE_RESOLUTION_COUNT, pPrefs.getResolutionProfiles().size());
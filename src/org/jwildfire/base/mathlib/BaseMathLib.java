@@ -22,6 +22,9 @@ public interface BaseMathLib {
 
   public double cos(double a);
 
+  // sin and cos of the same angle in one call
+  public void sincos(double a, SinCos pRes);
+
   public double tan(double a);
 
   public double atan2(double y, double x);
@@ -31,6 +31,13 @@ public enum BaseMathLibType {
     public Class<? extends BaseMathLib> getBaseMathLibClass() {
       return JavaMathLibImpl.class;
     }
+  },
+  TABLE_MATH {
+
+    @Override
+    public Class<? extends BaseMathLib> getBaseMathLibClass() {
+      return TableMathLibImpl.class;
+    }
   };
 
   protected abstract Class<? extends BaseMathLib> getBaseMathLibClass();
@@ -30,6 +30,12 @@ public final class FastMathLibImpl implements BaseMathLib {
     return FastMath.cos(a);
   }
 
+  @Override
+  public void sincos(double a, SinCos pRes) {
+    pRes.sin = FastMath.sin(a);
+    pRes.cos = FastMath.cos(a);
+  }
+
   @Override
   public double tan(double a) {
     return FastMath.tan(a);
@@ -28,6 +28,12 @@ public final class JavaMathLibImpl implements BaseMathLib {
     return Math.cos(a);
   }
 
+  @Override
+  public void sincos(double a, SinCos pRes) {
+    pRes.sin = Math.sin(a);
+    pRes.cos = Math.cos(a);
+  }
+
   @Override
   public double tan(double a) {
     return Math.tan(a);
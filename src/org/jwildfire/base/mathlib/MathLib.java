@@ -28,7 +28,36 @@ public final class MathLib {
   public final static double M_2_PI = 2.0 / M_PI;
   public static final double M_2PI = 2.0 * M_PI;
 
-  private static BaseMathLib baseLib = BaseMathLibType.FAST_MATH.createInstance();
+  // system property to choose the implementation, overrides the preferences
+  public static final String PROPERTY_BASE_MATH_LIB = "jwildfire.mathlib";
+
+  private static BaseMathLibType requestedType;
+  private static boolean resolved;
+
+  // The implementation is resolved once, at the first call of a function. Because the field is static final,
+  // the JIT treats it as a constant and the calls below are monomorphic and can be inlined.
+  private static final class Holder {
+    static final BaseMathLibType TYPE = resolveType();
+    static final BaseMathLib LIB = TYPE.createInstance();
+  }
+
+  private static BaseMathLibType resolveType() {
+    BaseMathLibType type;
+    synchronized (MathLib.class) {
+      resolved = true;
+      type = requestedType != null ? requestedType : BaseMathLibType.getDefaultValue();
+    }
+    String property = System.getProperty(PROPERTY_BASE_MATH_LIB);
+    if (property != null && property.length() > 0) {
+      try {
+        return BaseMathLibType.valueOf(property.trim().toUpperCase());
+      }
+      catch (IllegalArgumentException ex) {
+        System.err.println("Unknown math library <" + property + ">, ignoring it");
+      }
+    }
+    return type;
+  }
 
   public static final int iabs(int var) {
     if (var >= 0)
@@ -54,15 +83,19 @@ public final class MathLib {
   }
 
   public static final double sin(double a) {
-    return baseLib.sin(a);
+    return Holder.LIB.sin(a);
   }
 
   public static final double cos(double a) {
-    return baseLib.cos(a);
+    return Holder.LIB.cos(a);
+  }
+
+  public static final void sincos(double a, SinCos pRes) {
+    Holder.LIB.sincos(a, pRes);
   }
 
   public static final double tan(double a) {
-    return baseLib.tan(a);
+    return Holder.LIB.tan(a);
   }
 
   public static final double fmod(double a, double b) {
@@ -74,47 +107,47 @@ public final class MathLib {
   }
 
   public static final double atan2(double y, double x) {
-    return baseLib.atan2(y, x);
+    return Holder.LIB.atan2(y, x);
   }
 
   public static final double exp(double a) {
-    return baseLib.exp(a);
+    return Holder.LIB.exp(a);
   }
 
   public static final double sqrt(double a) {
-    return baseLib.sqrt(a);
+    return Holder.LIB.sqrt(a);
   }
 
   public static final double pow(double value, double power) {
-    return baseLib.pow(value, power);
+    return Holder.LIB.pow(value, power);
   }
 
   public static final double floor(double value) {
-    return baseLib.floor(value);
+    return Holder.LIB.floor(value);
   }
 
   public static final double round(double value) {
-    return baseLib.round(value);
+    return Holder.LIB.round(value);
   }
 
   public static final double log10(double value) {
-    return baseLib.log10(value);
+    return Holder.LIB.log10(value);
   }
 
   public static final double log(double value) {
-    return baseLib.log(value);
+    return Holder.LIB.log(value);
   }
 
   public static final double sinh(double value) {
-    return baseLib.sinh(value);
+    return Holder.LIB.sinh(value);
   }
 
   public static final double cosh(double value) {
-    return baseLib.cosh(value);
+    return Holder.LIB.cosh(value);
   }
 
   public static final double tanh(double value) {
-    return baseLib.tanh(value);
+    return Holder.LIB.tanh(value);
   }
 
   public static final double min(double a, double b) {
@@ -126,15 +159,15 @@ public final class MathLib {
   }
 
   public static final double atan(double value) {
-    return baseLib.atan(value);
+    return Holder.LIB.atan(value);
   }
 
   public static final double acos(double value) {
-    return baseLib.acos(value);
+    return Holder.LIB.acos(value);
   }
 
   public static final double asin(double value) {
-    return baseLib.asin(value);
+    return Holder.LIB.asin(value);
   }
 
   public static final double rint(double value) {
@@ -178,7 +211,25 @@ public final class MathLib {
       return -ans;
   }
 
+  // must be called before the first math function, later changes take effect only after a restart (see isRestartRequired)
   public static void setBaseMathLibType(BaseMathLibType pType) {
-    baseLib = pType.createInstance();
+    synchronized (MathLib.class) {
+      requestedType = pType;
+    }
+  }
+
+  // true if the given type differs from the one in use, which can only be changed by a restart
+  public static boolean isRestartRequired(BaseMathLibType pType) {
+    synchronized (MathLib.class) {
+      if (!resolved) {
+        return false;
+      }
+    }
+    return pType != Holder.TYPE;
+  }
+
+  // the implementation which is actually in use
+  public static BaseMathLibType getBaseMathLibType() {
+    return Holder.TYPE;
   }
 }
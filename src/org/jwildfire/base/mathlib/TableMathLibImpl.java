@@ -0,0 +1,291 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.base.mathlib;
+
+// Reduced-precision implementation using small lookup tables (which fit into the L1 cache) refined by short polynomials.
+// Maximum errors compared to java.lang.Math (checked by org.jwildfire.create.tina.benchmark.MathLibAccuracyCheck):
+//   sin, cos (|a| < 1.0e6):              absolute 1.0e-15 * (1 + |a|)
+//   atan, atan2, asin, acos:             absolute 2.0e-15
+//   exp (|a| < 700):                     relative 1.0e-15
+//   log, log10 (normal positive values): absolute 1.0e-15 * (1 + |log(value)|)
+//   pow (positive base):                 relative 1.0e-13 * (1 + |power * log(value)|)
+// Arguments outside those ranges (and NaN, infinite or subnormal values) are passed to java.lang.Math.
+public final class TableMathLibImpl implements BaseMathLib {
+  private static final double PI = Math.PI;
+  private static final double PI_2 = Math.PI * 0.5;
+
+  // sin/cos: sin(a) = sin(c + f) = sin(c) * cos(f) + cos(c) * sin(f), with c from the table and |f| < 2 * PI / SIN_SIZE
+  private static final int SIN_BITS = 10;
+  private static final int SIN_SIZE = 1 << SIN_BITS;
+  private static final int SIN_MASK = SIN_SIZE - 1;
+  private static final double SIN_STEP = 2.0 * PI / SIN_SIZE;
+  private static final double SIN_SCALE = 1.0 / SIN_STEP;
+  private static final double MAX_TRIG_ARG = 1.0e6;
+  private static final double SIN_TABLE[] = new double[SIN_SIZE];
+  private static final double COS_TABLE[] = new double[SIN_SIZE];
+
+  // exp: exp(a) = 2^k * 2^(j / EXP_SIZE) * exp(r), with 0 <= r < ln(2) / EXP_SIZE
+  private static final int EXP_BITS = 8;
+  private static final int EXP_SIZE = 1 << EXP_BITS;
+  private static final double LOG2E_SCALED = EXP_SIZE / Math.log(2.0);
+  // ln(2) split into a high part with trailing zero bits (so n * LN2_HI is exact) and the remainder, taken from fdlibm
+  private static final double LN2_HI = 6.93147180369123816490e-01;
+  private static final double LN2_LO = 1.90821492927058770002e-10;
+  private static final double LN2_HI_SCALED = LN2_HI / EXP_SIZE;
+  private static final double LN2_LO_SCALED = LN2_LO / EXP_SIZE;
+  private static final double MAX_EXP_ARG = 700.0;
+  private static final double EXP_TABLE[] = new double[EXP_SIZE];
+
+  // log: log(2^e * c * (1 + t)) = e * ln(2) + log(c) + log(1 + t), with c = 1 + j / LOG_SIZE and 0 <= t < 1 / LOG_SIZE
+  private static final int LOG_BITS = 8;
+  private static final int LOG_SIZE = 1 << LOG_BITS;
+  private static final double INV_LN10 = 1.0 / Math.log(10.0);
+  private static final double LOG_TABLE[] = new double[LOG_SIZE];
+  private static final double LOG_C[] = new double[LOG_SIZE];
+  private static final double LOG_INV_C[] = new double[LOG_SIZE];
+
+  // atan: atan(x) = atan(c) + atan((x - c) / (1 + x * c)), with c = j / ATAN_SIZE, for 0 <= x <= 1 
+  private static final int ATAN_SIZE = 64;
+  private static final double ATAN_TABLE[] = new double[ATAN_SIZE + 1];
+
+  static {
+    for (int i = 0; i < SIN_SIZE; i++) {
+      SIN_TABLE[i] = Math.sin(i * SIN_STEP);
+      COS_TABLE[i] = Math.cos(i * SIN_STEP);
+    }
+    for (int i = 0; i < EXP_SIZE; i++) {
+      EXP_TABLE[i] = Math.pow(2.0, (double) i / EXP_SIZE);
+    }
+    for (int i = 0; i < LOG_SIZE; i++) {
+      LOG_C[i] = 1.0 + (double) i / LOG_SIZE;
+      LOG_INV_C[i] = 1.0 / LOG_C[i];
+      LOG_TABLE[i] = Math.log(LOG_C[i]);
+    }
+    for (int i = 0; i <= ATAN_SIZE; i++) {
+      ATAN_TABLE[i] = Math.atan((double) i / ATAN_SIZE);
+    }
+  }
+
+  @Override
+  public double sin(double a) {
+    if (!(a > -MAX_TRIG_ARG && a < MAX_TRIG_ARG)) {
+      return Math.sin(a);
+    }
+    double x = a * SIN_SCALE;
+    long n = (long) x;
+    if (x < n) {
+      n--;
+    }
+    int idx = (int) n & SIN_MASK;
+    double f = (x - n) * SIN_STEP;
+    double f2 = f * f;
+    double sinf = f * (1.0 - f2 * (1.0 / 6.0 - f2 * (1.0 / 120.0)));
+    double cosf = 1.0 - f2 * (0.5 - f2 * (1.0 / 24.0));
+    return SIN_TABLE[idx] * cosf + COS_TABLE[idx] * sinf;
+  }
+
+  @Override
+  public double cos(double a) {
+    if (!(a > -MAX_TRIG_ARG && a < MAX_TRIG_ARG)) {
+      return Math.cos(a);
+    }
+    double x = a * SIN_SCALE;
+    long n = (long) x;
+    if (x < n) {
+      n--;
+    }
+    int idx = (int) n & SIN_MASK;
+    double f = (x - n) * SIN_STEP;
+    double f2 = f * f;
+    double sinf = f * (1.0 - f2 * (1.0 / 6.0 - f2 * (1.0 / 120.0)));
+    double cosf = 1.0 - f2 * (0.5 - f2 * (1.0 / 24.0));
+    return COS_TABLE[idx] * cosf - SIN_TABLE[idx] * sinf;
+  }
+
+  @Override
+  public void sincos(double a, SinCos pRes) {
+    if (!(a > -MAX_TRIG_ARG && a < MAX_TRIG_ARG)) {
+      pRes.sin = Math.sin(a);
+      pRes.cos = Math.cos(a);
+      return;
+    }
+    double x = a * SIN_SCALE;
+    long n = (long) x;
+    if (x < n) {
+      n--;
+    }
+    int idx = (int) n & SIN_MASK;
+    double f = (x - n) * SIN_STEP;
+    double f2 = f * f;
+    double sinf = f * (1.0 - f2 * (1.0 / 6.0 - f2 * (1.0 / 120.0)));
+    double cosf = 1.0 - f2 * (0.5 - f2 * (1.0 / 24.0));
+    pRes.sin = SIN_TABLE[idx] * cosf + COS_TABLE[idx] * sinf;
+    pRes.cos = COS_TABLE[idx] * cosf - SIN_TABLE[idx] * sinf;
+  }
+
+  @Override
+  public double tan(double a) {
+    return sin(a) / cos(a);
+  }
+
+  // 0 <= x <= 1
+  private static double atan01(double x) {
+    int idx = (int) (x * ATAN_SIZE + 0.5);
+    double c = (double) idx / ATAN_SIZE;
+    double t = (x - c) / (1.0 + x * c);
+    double t2 = t * t;
+    return ATAN_TABLE[idx] + t * (1.0 - t2 * (1.0 / 3.0 - t2 * (1.0 / 5.0 - t2 * (1.0 / 7.0))));
+  }
+
+  @Override
+  public double atan2(double y, double x) {
+    double ax = x < 0.0 ? -x : x;
+    double ay = y < 0.0 ? -y : y;
+    // y == 0.0 also covers -0.0, whose sign decides between PI and -PI for x < 0.0
+    if (!(ax < Double.POSITIVE_INFINITY && ay < Double.POSITIVE_INFINITY) || ay == 0.0) {
+      return Math.atan2(y, x);
+    }
+    double res = ay <= ax ? atan01(ay / ax) : PI_2 - atan01(ax / ay);
+    if (x < 0.0) {
+      res = PI - res;
+    }
+    return y < 0.0 ? -res : res;
+  }
+
+  @Override
+  public double atan(double value) {
+    double ax = value < 0.0 ? -value : value;
+    if (!(ax < Double.POSITIVE_INFINITY)) {
+      return Math.atan(value);
+    }
+    double res = ax <= 1.0 ? atan01(ax) : PI_2 - atan01(1.0 / ax);
+    return value < 0.0 ? -res : res;
+  }
+
+  @Override
+  public double asin(double value) {
+    if (!(value >= -1.0 && value <= 1.0)) {
+      return Math.asin(value);
+    }
+    return atan2(value, Math.sqrt((1.0 - value) * (1.0 + value)));
+  }
+
+  @Override
+  public double acos(double value) {
+    if (!(value >= -1.0 && value <= 1.0)) {
+      return Math.acos(value);
+    }
+    return atan2(Math.sqrt((1.0 - value) * (1.0 + value)), value);
+  }
+
+  @Override
+  public double exp(double a) {
+    if (!(a > -MAX_EXP_ARG && a < MAX_EXP_ARG)) {
+      return Math.exp(a);
+    }
+    double x = a * LOG2E_SCALED;
+    long n = (long) x;
+    if (x < n) {
+      n--;
+    }
+    double r = (a - n * LN2_HI_SCALED) - n * LN2_LO_SCALED;
+    int k = (int) (n >> EXP_BITS);
+    int j = (int) (n & (EXP_SIZE - 1));
+    double p = 1.0 + r * (1.0 + r * (0.5 + r * (1.0 / 6.0 + r * (1.0 / 24.0 + r * (1.0 / 120.0)))));
+    return EXP_TABLE[j] * p * Double.longBitsToDouble((long) (k + 1023) << 52);
+  }
+
+  @Override
+  public double log(double value) {
+    if (!(value >= Double.MIN_NORMAL && value < Double.POSITIVE_INFINITY)) {
+      return Math.log(value);
+    }
+    long bits = Double.doubleToRawLongBits(value);
+    int e = (int) (bits >>> 52) - 1023;
+    long mantissa = bits & 0x000fffffffffffffL;
+    int j = (int) (mantissa >>> (52 - LOG_BITS));
+    double m = Double.longBitsToDouble(mantissa | 0x3ff0000000000000L);
+    double t = (m - LOG_C[j]) * LOG_INV_C[j];
+    double poly = t * (1.0 - t * (0.5 - t * (1.0 / 3.0 - t * (0.25 - t * (1.0 / 5.0)))));
+    return (e * LN2_HI + LOG_TABLE[j]) + (poly + e * LN2_LO);
+  }
+
+  @Override
+  public double log10(double value) {
+    return log(value) * INV_LN10;
+  }
+
+  @Override
+  public double pow(double value, double power) {
+    if (power == 2.0) {
+      return value * value;
+    }
+    else if (power == 0.5 && value >= 0.0) {
+      return Math.sqrt(value);
+    }
+    else if (value > 0.0 && value < Double.POSITIVE_INFINITY && power > -Double.MAX_VALUE && power < Double.MAX_VALUE) {
+      return exp(power * log(value));
+    }
+    return Math.pow(value, power);
+  }
+
+  @Override
+  public double sqrt(double a) {
+    return Math.sqrt(a);
+  }
+
+  @Override
+  public double floor(double value) {
+    return Math.floor(value);
+  }
+
+  @Override
+  public double round(double value) {
+    return Math.round(value);
+  }
+
+  @Override
+  public double sinh(double value) {
+    if (value > -1.0e-3 && value < 1.0e-3) {
+      return value * (1.0 + value * value * (1.0 / 6.0));
+    }
+    double e = exp(value);
+    return 0.5 * (e - 1.0 / e);
+  }
+
+  @Override
+  public double cosh(double value) {
+    double e = exp(value);
+    return 0.5 * (e + 1.0 / e);
+  }
+
+  @Override
+  public double tanh(double value) {
+    if (value > 20.0) {
+      return 1.0;
+    }
+    else if (value < -20.0) {
+      return -1.0;
+    }
+    else if (value > -1.0e-3 && value < 1.0e-3) {
+      return value * (1.0 - value * value * (1.0 / 3.0));
+    }
+    double e2 = exp(2.0 * value);
+    return (e2 - 1.0) / (e2 + 1.0);
+  }
+
+}
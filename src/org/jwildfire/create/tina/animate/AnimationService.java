@@ -16,9 +16,13 @@
 */
 package org.jwildfire.create.tina.animate;
 
+import java.util.List;
+
 import org.jwildfire.base.Prefs;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XForm;
+import org.jwildfire.create.tina.random.RandomGeneratorType;
+import org.jwildfire.create.tina.render.FlameRenderSession;
 import org.jwildfire.create.tina.render.FlameRenderer;
 import org.jwildfire.create.tina.render.RenderInfo;
 import org.jwildfire.create.tina.render.RenderedFlame;
@@ -150,16 +154,43 @@ public class AnimationService {
   }
 
   public static SimpleImage renderFrame(int pFrame, int pFrames, Flame pFlame, GlobalScript pGlobalScript, MotionSpeed pGlobalSpeed, XFormScript pXFormScript, MotionSpeed pXFormSpeed, int pWidth, int pHeight, Prefs pPrefs) throws Exception {
+    return renderFrame(pFrame, pFrames, pFlame, pGlobalScript, pGlobalSpeed, pXFormScript, pXFormSpeed, pWidth, pHeight, pPrefs, null);
+  }
+
+  // pSession (optional) keeps the buffers alive for the next frames
+  public static SimpleImage renderFrame(int pFrame, int pFrames, Flame pFlame, GlobalScript pGlobalScript, MotionSpeed pGlobalSpeed, XFormScript pXFormScript, MotionSpeed pXFormSpeed, int pWidth, int pHeight, Prefs pPrefs, FlameRenderSession pSession) throws Exception {
+    Flame flame = createFrameFlame(pFrame, pFrames, pFlame, pGlobalScript, pGlobalSpeed, pXFormScript, pXFormSpeed, pWidth, pHeight, pPrefs);
+    return renderFrame(flame, null, pPrefs, pSession, null, 0);
+  }
+
+  // applies the scripts to the flame of a frame (which may be fractional) and scales it to the given size
+  public static Flame createFrameFlame(double pFrame, int pFrames, Flame pFlame, GlobalScript pGlobalScript, MotionSpeed pGlobalSpeed, XFormScript pXFormScript, MotionSpeed pXFormSpeed, int pWidth, int pHeight, Prefs pPrefs) {
     double globalTime = pGlobalSpeed.calcTime(pFrame, pFrames, true);
     double xFormTime = pXFormSpeed.calcTime(pFrame, pFrames, true);
     Flame flame = createFlame(pFlame, pGlobalScript, globalTime, pXFormScript, xFormTime, pPrefs);
-    RenderInfo info = new RenderInfo(pWidth, pHeight);
-    double wScl = (double) info.getImageWidth() / (double) flame.getWidth();
-    double hScl = (double) info.getImageHeight() / (double) flame.getHeight();
+    double wScl = (double) pWidth / (double) flame.getWidth();
+    double hScl = (double) pHeight / (double) flame.getHeight();
     flame.setPixelsPerUnit((wScl + hScl) * 0.5 * flame.getPixelsPerUnit());
-    flame.setWidth(info.getImageWidth());
-    flame.setHeight(info.getImageHeight());
-    FlameRenderer renderer = new FlameRenderer(flame, pPrefs, flame.isBGTransparency(), false);
+    flame.setWidth(pWidth);
+    flame.setHeight(pHeight);
+    return flame;
+  }
+
+  // renders a flame created by createFrameFlame(), pMotionBlurFlames (optional) are the flames at the time steps of the
+  // shutter interval, the samples of the frame are distributed over them. Frames which are rendered concurrently must
+  // pass a pRandomSeed, so that their renderers do not share the random generators of the factory.
+  // pRenderThreads overrides the number of render threads of the prefs, if it is greater than 0
+  public static SimpleImage renderFrame(Flame pFrameFlame, List<Flame> pMotionBlurFlames, Prefs pPrefs, FlameRenderSession pSession, Long pRandomSeed, int pRenderThreads) throws Exception {
+    RenderInfo info = new RenderInfo(pFrameFlame.getWidth(), pFrameFlame.getHeight());
+    FlameRenderer renderer = new FlameRenderer(pFrameFlame, pPrefs, pFrameFlame.isBGTransparency(), false);
+    if (pRenderThreads > 0) {
+      renderer.setRenderThreads(pRenderThreads);
+    }
+    if (pRandomSeed != null) {
+      renderer.setRandomSeed(pRandomSeed.longValue(), RandomGeneratorType.XOROSHIRO);
+    }
+    renderer.setRenderSession(pSession);
+    renderer.setMotionBlurFlames(pMotionBlurFlames);
     RenderedFlame res = renderer.renderFlame(info);
     return res.getImage();
   }
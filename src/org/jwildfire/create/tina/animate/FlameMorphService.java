@@ -40,7 +40,12 @@ public class FlameMorphService {
   public static Flame morphFlames(Prefs pPrefs, Flame pFlame1, Flame pFlame2, int pFrame, int pFrames) {
     if (pFrame < 1 || pFrames < 2)
       return pFlame1;
-    double fScl = (double) (pFrame - 1) / (pFrames - 1);
+    return morphFlames(pPrefs, pFlame1, pFlame2, (double) (pFrame - 1) / (pFrames - 1));
+  }
+
+  // pFScl: 0.0 (pFlame1) ... 1.0 (pFlame2), allows to morph between frames (e. g. for motion blur)
+  public static Flame morphFlames(Prefs pPrefs, Flame pFlame1, Flame pFlame2, double pFScl) {
+    double fScl = pFScl;
     if (fScl <= MathLib.EPSILON) {
       return pFlame1;
     }
@@ -70,7 +75,7 @@ public class FlameMorphService {
           xForm2.setWeight(0.0);
         }
 
-        XForm morphedXForm = morphXForms(pPrefs, xForm1, xForm2, fScl, pFrame, pFrames);
+        XForm morphedXForm = morphXForms(pPrefs, xForm1, xForm2, fScl);
         res.getXForms().add(morphedXForm);
       }
     }
@@ -94,7 +99,7 @@ public class FlameMorphService {
           xForm2.setWeight(0.0);
         }
 
-        XForm morphedXForm = morphXForms(pPrefs, xForm1, xForm2, fScl, pFrame, pFrames);
+        XForm morphedXForm = morphXForms(pPrefs, xForm1, xForm2, fScl);
         res.getFinalXForms().add(morphedXForm);
       }
     }
@@ -138,7 +143,7 @@ public class FlameMorphService {
     return res;
   }
 
-  private static XForm morphXForms(Prefs pPrefs, XForm pXForm1, XForm pXForm2, double pFScl, int pFrame, int pFrames) {
+  private static XForm morphXForms(Prefs pPrefs, XForm pXForm1, XForm pXForm2, double pFScl) {
     pXForm1 = pXForm1.makeCopy();
     pXForm2 = pXForm2.makeCopy();
     prepareMorphXForm(pXForm1);
@@ -251,7 +256,7 @@ public class FlameMorphService {
             try {
               Flame flame1 = new FlameReader(pPrefs).readFlamesfromXML(flame1XML).get(0);
               Flame flame2 = new FlameReader(pPrefs).readFlamesfromXML(flame2XML).get(0);
-              Flame morphedFlame = morphFlames(pPrefs, flame1, flame2, pFrame, pFrames);
+              Flame morphedFlame = morphFlames(pPrefs, flame1, flame2, pFScl);
               String morphedFlameXML = new FlameWriter().getFlameXML(morphedFlame);
               var.getFunc().setRessource(SubFlameWFFunc.RESSOURCE_FLAME, morphedFlameXML.getBytes());
             }
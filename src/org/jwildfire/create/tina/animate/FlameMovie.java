@@ -20,9 +20,11 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.MathLib;
 import org.jwildfire.create.tina.base.Flame;
 
 public class FlameMovie {
+  public static final int DEFAULT_MOTION_BLUR_TIME_STEPS = 8;
   private final Prefs prefs;
   private String soundFilename;
   private GlobalScript globalScript;
@@ -30,6 +32,9 @@ public class FlameMovie {
   private int colorOversampling;
   private int spatialOversampling;
   private int quality;
+  // shutter interval in frames, 0: no motion blur
+  private double motionBlurLength;
+  private int motionBlurTimeSteps = DEFAULT_MOTION_BLUR_TIME_STEPS;
   private OutputFormat outputFormat;
   private final List<Motion> motions = new ArrayList<Motion>();
   private final List<FlameMoviePart> parts = new ArrayList<FlameMoviePart>();
@@ -105,6 +110,33 @@ public class FlameMovie {
     return null;
   }
 
+  // pFrame may be fractional (e. g. for motion blur), the flames are morphed continuously inside the morph frames
+  public Flame getFlame(double pFrame) {
+    int frame = (int) pFrame;
+    double fraction = pFrame - frame;
+    if (fraction < MathLib.EPSILON) {
+      return getFlame(frame);
+    }
+    int currFrame = 0;
+    for (int i = 0; i < parts.size(); i++) {
+      FlameMoviePart part = parts.get(i);
+      currFrame += part.getFrameCount();
+      if (currFrame >= frame) {
+        Flame flame1 = part.getFlame().makeCopy();
+        int morphFrames = part.getFrameMorphCount();
+        if (morphFrames < 2 || frame < (currFrame - morphFrames) || i == (parts.size() - 1)) {
+          return flame1;
+        }
+        else {
+          Flame flame2 = parts.get(i + 1).getFlame().makeCopy();
+          double morphFrame = frame - (currFrame - morphFrames) + fraction;
+          return FlameMorphService.morphFlames(prefs, flame1, flame2, Math.min(1.0, (morphFrame - 1.0) / (morphFrames - 1)));
+        }
+      }
+    }
+    return null;
+  }
+
   public int getFrameWidth() {
     return frameWidth;
   }
@@ -165,4 +197,20 @@ public class FlameMovie {
     this.quality = quality;
   }
 
+  public double getMotionBlurLength() {
+    return motionBlurLength;
+  }
+
+  public void setMotionBlurLength(double motionBlurLength) {
+    this.motionBlurLength = motionBlurLength;
+  }
+
+  public int getMotionBlurTimeSteps() {
+    return motionBlurTimeSteps;
+  }
+
+  public void setMotionBlurTimeSteps(int motionBlurTimeSteps) {
+    this.motionBlurTimeSteps = motionBlurTimeSteps;
+  }
+
 }
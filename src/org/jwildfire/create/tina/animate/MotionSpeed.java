@@ -310,7 +310,12 @@ public enum MotionSpeed {
   abstract double getMultiplier();
 
   public double calcTime(int pFrame, int pFrames, boolean pDoWrap) {
-    double t = (double) (pFrame - 1) * getMultiplier() / ((double) pFrames * getDivisor());
+    return calcTime((double) pFrame, pFrames, pDoWrap);
+  }
+
+  // pFrame may be fractional, e. g. for the time steps of motion blur
+  public double calcTime(double pFrame, int pFrames, boolean pDoWrap) {
+    double t = (pFrame - 1.0) * getMultiplier() / ((double) pFrames * getDivisor());
     if (pDoWrap && t > 1.0) {
       t -= (int) (t);
     }
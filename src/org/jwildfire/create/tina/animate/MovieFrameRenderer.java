@@ -0,0 +1,30 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.animate;
+
+import org.jwildfire.create.tina.render.FlameRenderSession;
+import org.jwildfire.image.SimpleImage;
+
+// Renders and saves single frames of a movie, e. g. the HeadlessRenderer of the batch package
+public interface MovieFrameRenderer {
+
+  // pSession (optional) keeps the buffers alive for the next frames
+  public SimpleImage renderMovieFrame(FlameMovie pMovie, int pFrame, FlameRenderSession pSession) throws Exception;
+
+  public void saveMovieFrame(SimpleImage pImage, FlameMovie pMovie, int pFrame, String pOutputFilename) throws Exception;
+
+}
@@ -0,0 +1,232 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.animate;
+
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.create.tina.render.FlameRenderSession;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.image.SimpleImage;
+
+// Renders several frames of a movie at the same time, but returns them in frame order. Each frame is prepared (the
+// flame of the frame is created, which may include morphing), rendered and passed to prepareFrame() by a worker
+// thread, so this work and the encoding of a frame overlap with the iteration of the other frames.
+// At most getConcurrentFrames() frames are in flight (running, or finished and waiting for their predecessors).
+public class OrderedFrameRenderer {
+  private final MovieFrameRenderer renderer;
+  private final FlameMovie movie;
+  private final int frames[];
+  private final int concurrentFrames;
+  private final ExecutorService executor;
+  private final LinkedList<Future<MovieFrame>> pending = new LinkedList<Future<MovieFrame>>();
+  // one session per running frame, so consecutive frames reuse the buffers
+  private final LinkedList<FlameRenderSession> idleSessions = new LinkedList<FlameRenderSession>();
+  private boolean closed;
+  private int nextSubmitIdx;
+  private int nextIdx;
+  private volatile boolean cancelled;
+
+  public static class MovieFrame {
+    private final int frame;
+    private final SimpleImage image;
+    private final Object data;
+    private final long elapsedMillis;
+
+    public MovieFrame(int pFrame, SimpleImage pImage, Object pData, long pElapsedMillis) {
+      frame = pFrame;
+      image = pImage;
+      data = pData;
+      elapsedMillis = pElapsedMillis;
+    }
+
+    public int getFrame() {
+      return frame;
+    }
+
+    public SimpleImage getImage() {
+      return image;
+    }
+
+    // result of prepareFrame()
+    public Object getData() {
+      return data;
+    }
+
+    // time to render and prepare the frame
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+  }
+
+  private static class FrameThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable pRunnable) {
+      Thread thread = new Thread(pRunnable, "JWildfire-MovieFrame-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  // pFromFrame and pToFrame are 1-based and inclusive
+  public OrderedFrameRenderer(MovieFrameRenderer pRenderer, FlameMovie pMovie, int pFromFrame, int pToFrame, int pConcurrentFrames) {
+    this(pRenderer, pMovie, frameRange(pFromFrame, pToFrame), pConcurrentFrames);
+  }
+
+  // renders the given (1-based) frames in the given order
+  public OrderedFrameRenderer(MovieFrameRenderer pRenderer, FlameMovie pMovie, int pFrames[], int pConcurrentFrames) {
+    renderer = pRenderer;
+    movie = pMovie;
+    frames = pFrames;
+    concurrentFrames = pConcurrentFrames < 1 ? 1 : pConcurrentFrames;
+    executor = Executors.newFixedThreadPool(concurrentFrames, new FrameThreadFactory());
+  }
+
+  private static int[] frameRange(int pFromFrame, int pToFrame) {
+    int res[] = new int[pToFrame >= pFromFrame ? pToFrame - pFromFrame + 1 : 0];
+    for (int i = 0; i < res.length; i++) {
+      res[i] = pFromFrame + i;
+    }
+    return res;
+  }
+
+  // the number of frames which are rendered at the same time: the preferences, limited by the free memory
+  public static int calcConcurrentFrames(Prefs pPrefs, int pFrameWidth, int pFrameHeight) {
+    int res = pPrefs.getTinaRenderMovieConcurrentFrames();
+    long frameMemory = FlameRenderer.estimateRenderMemory(pPrefs, pFrameWidth, pFrameHeight);
+    Runtime runtime = Runtime.getRuntime();
+    long availMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+    // keep half of the memory for everything else
+    long maxFrames = frameMemory > 0 ? (availMemory / 2) / frameMemory : res;
+    if (res > maxFrames) {
+      res = (int) maxFrames;
+    }
+    return res < 1 ? 1 : res;
+  }
+
+  // called by a worker thread before a frame is rendered
+  protected void frameStarted(int pFrame) {
+  }
+
+  // called by a worker thread after a frame was rendered, e. g. to encode or save it, the result is passed with the frame
+  protected Object prepareFrame(int pFrame, SimpleImage pImage) throws Exception {
+    return null;
+  }
+
+  public boolean hasNext() {
+    return !cancelled && nextIdx < frames.length;
+  }
+
+  // the frame which is returned by the next call of next()
+  public int getNextFrame() {
+    return frames[nextIdx];
+  }
+
+  // waits for the next frame, if it failed its error is thrown, and the following call returns the frame after it
+  public MovieFrame next() throws Exception {
+    if (!hasNext()) {
+      throw new IllegalStateException();
+    }
+    submitFrames();
+    Future<MovieFrame> future = pending.removeFirst();
+    nextIdx++;
+    try {
+      return future.get();
+    }
+    catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    finally {
+      submitFrames();
+    }
+  }
+
+  private void submitFrames() {
+    while (!cancelled && nextSubmitIdx < frames.length && pending.size() < concurrentFrames) {
+      final int frame = frames[nextSubmitIdx++];
+      pending.add(executor.submit(new Callable<MovieFrame>() {
+
+        @Override
+        public MovieFrame call() throws Exception {
+          frameStarted(frame);
+          long t0 = System.currentTimeMillis();
+          FlameRenderSession session = obtainSession();
+          SimpleImage image;
+          try {
+            image = renderer.renderMovieFrame(movie, frame, session);
+          }
+          finally {
+            releaseSession(session);
+          }
+          Object data = prepareFrame(frame, image);
+          return new MovieFrame(frame, image, data, System.currentTimeMillis() - t0);
+        }
+
+      }));
+    }
+  }
+
+  private FlameRenderSession obtainSession() {
+    synchronized (idleSessions) {
+      return idleSessions.size() > 0 ? idleSessions.removeFirst() : new FlameRenderSession();
+    }
+  }
+
+  private void releaseSession(FlameRenderSession pSession) {
+    synchronized (idleSessions) {
+      if (!closed) {
+        idleSessions.addFirst(pSession);
+      }
+    }
+  }
+
+  // frames which are already rendering are finished in the background, but not returned
+  public void cancel() {
+    cancelled = true;
+    close();
+  }
+
+  public void close() {
+    for (Future<MovieFrame> future : pending) {
+      future.cancel(false);
+    }
+    pending.clear();
+    executor.shutdown();
+    synchronized (idleSessions) {
+      closed = true;
+      idleSessions.clear();
+    }
+  }
+
+  public int getConcurrentFrames() {
+    return concurrentFrames;
+  }
+
+}
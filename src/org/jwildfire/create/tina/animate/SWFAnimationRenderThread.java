@@ -20,9 +20,7 @@ import java.io.File;
 
 import javax.imageio.ImageIO;
 
-import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.image.SimpleImage;
-import org.jwildfire.io.ImageWriter;
 
 import com.flagstone.transform.Background;
 import com.flagstone.transform.Movie;
@@ -41,7 +39,8 @@ import com.flagstone.transform.util.sound.SoundFactory;
 public class SWFAnimationRenderThread implements Runnable {
   private final SWFAnimationRenderThreadController controller;
   private final String outputFilename;
-  private boolean cancelSignalled;
+  private final MovieFrameRenderer frameRenderer;
+  private volatile boolean cancelSignalled;
   private final int fromFrame, toFrame;
   private FlameMovie flameMovie;
   private SoundFactory soundFactory;
@@ -49,8 +48,9 @@ public class SWFAnimationRenderThread implements Runnable {
   private int uid;
   private Throwable lastError;
 
-  public SWFAnimationRenderThread(SWFAnimationRenderThreadController pController, FlameMovie pAnimation, String pOutputFilename, int pFromFrame, int pToFrame) {
+  public SWFAnimationRenderThread(SWFAnimationRenderThreadController pController, MovieFrameRenderer pFrameRenderer, FlameMovie pAnimation, String pOutputFilename, int pFromFrame, int pToFrame) {
     controller = pController;
+    frameRenderer = pFrameRenderer;
     flameMovie = pAnimation;
     outputFilename = pOutputFilename;
     fromFrame = pFromFrame;
@@ -80,25 +80,45 @@ public class SWFAnimationRenderThread implements Runnable {
         if (endFrame < 1 || endFrame > frameCount)
           endFrame = frameCount;
 
-        for (int i = startFrame; i <= endFrame; i++) {
-          if (cancelSignalled) {
-            break;
+        // frames are rendered concurrently, but added to the movie in order
+        final OutputFormat outputFormat = flameMovie.getOutputFormat();
+        int concurrentFrames = OrderedFrameRenderer.calcConcurrentFrames(controller.getPrefs(), flameMovie.getFrameWidth(), flameMovie.getFrameHeight());
+        OrderedFrameRenderer orderedRenderer = new OrderedFrameRenderer(frameRenderer, flameMovie, startFrame, endFrame, concurrentFrames) {
+
+          @Override
+          protected Object prepareFrame(int pFrame, SimpleImage pImage) throws Exception {
+            switch (outputFormat) {
+              case SWF:
+                return createImageFactory(pImage);
+              case SWF_AND_PNG:
+                saveFrame(pImage, pFrame);
+                return createImageFactory(pImage);
+              case PNG:
+                saveFrame(pImage, pFrame);
+                break;
+            }
+            return null;
           }
-          SimpleImage image = renderImage(i);
 
-          switch (flameMovie.getOutputFormat()) {
-            case SWF:
-              addImageToMovie(image, i);
-              break;
-            case SWF_AND_PNG:
-              addImageToMovie(image, i);
-              saveFrame(image, i);
-              break;
-            case PNG:
-              saveFrame(image, i);
+        };
+        try {
+          while (orderedRenderer.hasNext()) {
+            if (cancelSignalled) {
+              orderedRenderer.cancel();
               break;
+            }
+            OrderedFrameRenderer.MovieFrame frame = orderedRenderer.next();
+            switch (outputFormat) {
+              case SWF:
+              case SWF_AND_PNG:
+                addImageToMovie((JWFImageFactory) frame.getData(), frame.getFrame());
+                break;
+            }
+            controller.getProgressUpdater().updateProgress(frame.getFrame());
           }
-          controller.getProgressUpdater().updateProgress(i);
+        }
+        finally {
+          orderedRenderer.close();
         }
         // Finalize SWF  
         switch (flameMovie.getOutputFormat()) {
@@ -118,44 +138,13 @@ public class SWFAnimationRenderThread implements Runnable {
     }
   }
 
-  private void prepareFlame(Flame pFlame) {
-    pFlame.setSpatialFilterRadius(1.0);
-    pFlame.setSampleDensity(flameMovie.getQuality());
-
-  }
-
-  private SimpleImage renderImage(int pFrame) throws Exception {
-    Flame flame1 = flameMovie.getFlame(pFrame);
-    prepareFlame(flame1);
-    return AnimationService.renderFrame(pFrame, flameMovie.getFrameCount(), flame1, flameMovie.getGlobalScript(), MotionSpeed.S1_1, flameMovie.getxFormScript(), MotionSpeed.S1_1, flameMovie.getFrameWidth(), flameMovie.getFrameHeight(), controller.getPrefs());
-  }
-
   private void saveFrame(SimpleImage pImage, int pFrame) throws Exception {
-    String filename = outputFilename;
-    {
-      int pSlash = filename.lastIndexOf("/");
-      int pSlash2 = filename.lastIndexOf("\\");
-      if (pSlash2 > pSlash) {
-        pSlash = pSlash2;
-      }
-      int pDot = filename.lastIndexOf(".");
-      if (pDot > pSlash) {
-        filename = filename.substring(0, pDot);
-      }
-    }
-    String hs = String.valueOf(pFrame);
-    int length = flameMovie.getFrameCount() > 9999 ? 5 : 4;
-    while (hs.length() < length) {
-      hs = "0" + hs;
-    }
-    filename += hs + ".png";
     ImageIO.setUseCache(false);
-    new ImageWriter().saveImage(pImage, filename, true);
+    frameRenderer.saveMovieFrame(pImage, flameMovie, pFrame, outputFilename);
   }
 
-  private void addImageToMovie(SimpleImage pImage, int pFrame) throws Exception {
-    final JWFImageFactory factory = createImageFactory(pImage);
-    final ImageTag image = factory.defineImage(uid++);
+  private void addImageToMovie(JWFImageFactory pFactory, int pFrame) throws Exception {
+    final ImageTag image = pFactory.defineImage(uid++);
     final int xOrigin = -image.getWidth() / 2;
     final int yOrigin = -image.getHeight() / 2;
     final int width = 20;
@@ -94,32 +94,14 @@ public class Layer implements Assignable<Layer>, Serializable {
         var.getFunc().init(pFlameTransformationContext, this, xForm, var.getAmount());
       }
     }
+    XForm xForms[] = getXForms().toArray(new XForm[n]);
     for (int k = 0; k < n; k++) {
-      XForm xform = getXForms().get(k);
-      double totValue = 0;
+      XForm xform = xForms[k];
+      double modifiedWeights[] = xform.getModifiedWeights();
       for (int i = 0; i < n; i++) {
-        tp[i] = getXForms().get(i).getWeight() * getXForms().get(k).getModifiedWeights()[i];
-        totValue = totValue + tp[i];
-      }
-      if (totValue > 0) {
-        double loopValue = 0;
-        for (int i = 0; i < xform.getNextAppliedXFormTable().length; i++) {
-          double totalProb = 0;
-          int j = -1;
-          do {
-            j++;
-            totalProb = totalProb + tp[j];
-          }
-          while (!((totalProb > loopValue) || (j == n - 1)));
-          xform.getNextAppliedXFormTable()[i] = getXForms().get(j);
-          loopValue = loopValue + totValue / (double) xform.getNextAppliedXFormTable().length;
-        }
-      }
-      else {
-        for (int i = 0; i < xform.getNextAppliedXFormTable().length; i++) {
-          xform.getNextAppliedXFormTable()[i] = null;
-        }
+        tp[i] = xForms[i].getWeight() * modifiedWeights[i];
       }
+      xform.getNextAppliedXForms().init(xForms, tp, n);
     }
   }
 
@@ -26,7 +26,7 @@ import java.util.List;
 import org.jwildfire.base.mathlib.MathLib;
 import org.jwildfire.create.tina.animate.AnimAware;
 import org.jwildfire.create.tina.edit.Assignable;
-import org.jwildfire.create.tina.random.AbstractRandomGenerator.RandGenStatus;
+import org.jwildfire.create.tina.render.XFormStatistics;
 import org.jwildfire.create.tina.variation.FlameTransformationContext;
 import org.jwildfire.create.tina.variation.Variation;
 import org.jwildfire.create.tina.variation.VariationFunc;
@@ -70,11 +70,42 @@ public final class XForm implements Assignable<XForm>, Serializable {
   private final double modifiedWeights[] = new double[Constants.MAX_MOD_WEIGHT_COUNT]; // the same like "xaos" in Apophysis
   @AnimAware
   private double opacity = 0.0;
-  private final XForm[] nextAppliedXFormTable = new XForm[Constants.NEXT_APPLIED_XFORM_TABLE_SIZE];
+  private final XFormAliasTable nextAppliedXForms = new XFormAliasTable();
   private DrawMode drawMode = DrawMode.NORMAL;
   private double antialiasAmount = 0.0;
   private double antialiasRadius = 0.5;
   private String name = "";
+  // only set while rendering with statistics enabled
+  private transient XFormStatistics statistics;
+  // built by initTransform(), reset when the list of variations changes
+  private transient VariationPipeline pipeline;
+
+  // the variations, sorted by priority (pre, normal, post), so the hot loop iterates them only once
+  private static final class VariationPipeline {
+    private final Variation[] stages;
+    private final int preStageCount;
+
+    public VariationPipeline(List<Variation> pVariations) {
+      List<Variation> sorted = new ArrayList<Variation>(pVariations.size());
+      for (Variation variation : pVariations) {
+        if (variation.getFunc().getPriority() < 0) {
+          sorted.add(variation);
+        }
+      }
+      preStageCount = sorted.size();
+      for (Variation variation : pVariations) {
+        if (variation.getFunc().getPriority() == 0) {
+          sorted.add(variation);
+        }
+      }
+      for (Variation variation : pVariations) {
+        if (variation.getFunc().getPriority() > 0) {
+          sorted.add(variation);
+        }
+      }
+      stages = sorted.toArray(new Variation[sorted.size()]);
+    }
+  }
 
   public XForm() {
     coeff00 = 1;
@@ -179,19 +210,23 @@ public final class XForm implements Assignable<XForm>, Serializable {
     variation.setAmount(pAmount);
     variation.setFunc(pVariationFunc);
     variations.add(variation);
+    pipeline = null;
     return variation;
   }
 
   public void addVariation(Variation pVariation) {
     variations.add(pVariation);
+    pipeline = null;
   }
 
   public void removeVariation(Variation pVariation) {
     variations.remove(pVariation);
+    pipeline = null;
   }
 
   public void clearVariations() {
     variations.clear();
+    pipeline = null;
   }
 
   public double getColorSymmetry() {
@@ -219,6 +254,7 @@ public final class XForm implements Assignable<XForm>, Serializable {
     c2 = color * (1 - colorSymmetry) * 0.5;
     updateHasCoeffs();
     updateHasPostCoeffs();
+    pipeline = new VariationPipeline(variations);
   }
 
   private void updateHasPostCoeffs() {
@@ -240,7 +276,15 @@ public final class XForm implements Assignable<XForm>, Serializable {
   }
 
   public void transformPoint(FlameTransformationContext pContext, XYZPoint pAffineT, XYZPoint pVarT, XYZPoint pSrcPoint, XYZPoint pDstPoint) {
-    pAffineT.clear();
+    long t0 = statistics != null ? System.nanoTime() : 0L;
+    VariationPipeline currPipeline = pipeline;
+    if (currPipeline == null) {
+      currPipeline = pipeline = new VariationPipeline(variations);
+    }
+    // x, y, z and color are assigned below, so only the color mode and the cached values must be reset
+    pAffineT.rgbColor = false;
+    pAffineT.redColor = pAffineT.greenColor = pAffineT.blueColor = 0.0;
+    pAffineT.invalidate();
     //    pAffineT.color = pSrcPoint.color * c1 + c2;
 
     //pAffineT.color = (pSrcPoint.color + color) * 0.5 * (1 - colorSymmetry) + colorSymmetry * pSrcPoint.color;
@@ -277,22 +321,14 @@ public final class XForm implements Assignable<XForm>, Serializable {
     pVarT.greenColor = pAffineT.greenColor;
     pVarT.blueColor = pAffineT.blueColor;
 
-    for (Variation variation : variations) {
-      if (variation.getFunc().getPriority() < 0) {
-        variation.transform(pContext, this, pAffineT, pVarT);
+    Variation[] stages = currPipeline.stages;
+    int preStageCount = currPipeline.preStageCount;
+    for (int i = 0; i < stages.length; i++) {
+      stages[i].transform(pContext, this, pAffineT, pVarT);
+      if (i < preStageCount) {
         pAffineT.invalidate();
       }
     }
-    for (Variation variation : variations) {
-      if (variation.getFunc().getPriority() == 0) {
-        variation.transform(pContext, this, pAffineT, pVarT);
-      }
-    }
-    for (Variation variation : variations) {
-      if (variation.getFunc().getPriority() > 0) {
-        variation.transform(pContext, this, pAffineT, pVarT);
-      }
-    }
 
     pDstPoint.color = pVarT.color;
     pDstPoint.rgbColor = pVarT.rgbColor;
@@ -310,59 +346,62 @@ public final class XForm implements Assignable<XForm>, Serializable {
     pDstPoint.x = pVarT.x;
     pDstPoint.y = pVarT.y;
     pDstPoint.z = pVarT.z;
+    if (statistics != null) {
+      statistics.addCall(System.nanoTime() - t0);
+    }
   }
 
+  public XFormStatistics getStatistics() {
+    return statistics;
+  }
+
+  public void setStatistics(XFormStatistics pStatistics) {
+    statistics = pStatistics;
+  }
+
+  // transforms all points of pSrcPoint in one pass, the variations see the same random numbers for each point
   public void transformPoints(FlameTransformationContext pContext, XYZPoint[] pAffineT, XYZPoint[] pVarT, XYZPoint[] pSrcPoint, XYZPoint[] pDstPoint) {
-    try {
-      for (int i = 0; i < 3; i++) {
-        switch (i) {
-          case 0:
-            pContext.setRandGenStatus(RandGenStatus.RECORDING);
-            break;
-          default:
-            pContext.setRandGenStatus(RandGenStatus.REPLAY);
-            break;
-        }
-        pAffineT[i].clear();
-        pAffineT[i].color = pSrcPoint[i].color * c1 + c2;
-        pAffineT[i].x = coeff00 * pSrcPoint[i].x + coeff10 * pSrcPoint[i].y + coeff20;
-        pAffineT[i].y = coeff01 * pSrcPoint[i].x + coeff11 * pSrcPoint[i].y + coeff21;
-        pAffineT[i].z = pSrcPoint[i].z;
-        pVarT[i].clear();
-        pVarT[i].color = pAffineT[i].color;
-        for (Variation variation : variations) {
-          if (variation.getFunc().getPriority() < 0) {
-            variation.transform(pContext, this, pAffineT[i], pVarT[i]);
-            pAffineT[i].invalidate();
-          }
-        }
-        for (Variation variation : variations) {
-          if (variation.getFunc().getPriority() == 0) {
-            variation.transform(pContext, this, pAffineT[i], pVarT[i]);
-          }
-        }
-        for (Variation variation : variations) {
-          if (variation.getFunc().getPriority() > 0) {
-            variation.transform(pContext, this, pAffineT[i], pVarT[i]);
-          }
-        }
-        pDstPoint[i].color = pVarT[i].color;
-        if (isHasPostCoeffs()) {
-          double px = postCoeff00 * pVarT[i].x + postCoeff10 * pVarT[i].y + postCoeff20;
-          double py = postCoeff01 * pVarT[i].x + postCoeff11 * pVarT[i].y + postCoeff21;
-          double pz = pVarT[i].z;
-          pVarT[i].x = px;
-          pVarT[i].y = py;
-          pVarT[i].z = pz;
+    long t0 = statistics != null ? System.nanoTime() : 0L;
+    VariationPipeline currPipeline = pipeline;
+    if (currPipeline == null) {
+      currPipeline = pipeline = new VariationPipeline(variations);
+    }
+    int count = pSrcPoint.length;
+    for (int i = 0; i < count; i++) {
+      pAffineT[i].clear();
+      pAffineT[i].color = pSrcPoint[i].color * c1 + c2;
+      pAffineT[i].x = coeff00 * pSrcPoint[i].x + coeff10 * pSrcPoint[i].y + coeff20;
+      pAffineT[i].y = coeff01 * pSrcPoint[i].x + coeff11 * pSrcPoint[i].y + coeff21;
+      pAffineT[i].z = pSrcPoint[i].z;
+      pVarT[i].clear();
+      pVarT[i].color = pAffineT[i].color;
+    }
+    Variation[] stages = currPipeline.stages;
+    for (int j = 0; j < stages.length; j++) {
+      stages[j].transformPoints(pContext, this, pAffineT, pVarT, count);
+      if (j < currPipeline.preStageCount) {
+        for (int i = 0; i < count; i++) {
+          pAffineT[i].invalidate();
         }
-
-        pDstPoint[i].x = pVarT[i].x;
-        pDstPoint[i].y = pVarT[i].y;
-        pDstPoint[i].z = pVarT[i].z;
       }
     }
-    finally {
-      pContext.setRandGenStatus(RandGenStatus.DEFAULT);
+    for (int i = 0; i < count; i++) {
+      pDstPoint[i].color = pVarT[i].color;
+      if (isHasPostCoeffs()) {
+        double px = postCoeff00 * pVarT[i].x + postCoeff10 * pVarT[i].y + postCoeff20;
+        double py = postCoeff01 * pVarT[i].x + postCoeff11 * pVarT[i].y + postCoeff21;
+        double pz = pVarT[i].z;
+        pVarT[i].x = px;
+        pVarT[i].y = py;
+        pVarT[i].z = pz;
+      }
+
+      pDstPoint[i].x = pVarT[i].x;
+      pDstPoint[i].y = pVarT[i].y;
+      pDstPoint[i].z = pVarT[i].z;
+    }
+    if (statistics != null) {
+      statistics.addCall(System.nanoTime() - t0);
     }
   }
 
@@ -378,8 +417,8 @@ public final class XForm implements Assignable<XForm>, Serializable {
     return modifiedWeights;
   }
 
-  public XForm[] getNextAppliedXFormTable() {
-    return nextAppliedXFormTable;
+  public XFormAliasTable getNextAppliedXForms() {
+    return nextAppliedXForms;
   }
 
   public DrawMode getDrawMode() {
@@ -415,6 +454,7 @@ public final class XForm implements Assignable<XForm>, Serializable {
       newVar.assign(var);
       variations.add(newVar);
     }
+    pipeline = null;
     System.arraycopy(pXForm.modifiedWeights, 0, modifiedWeights, 0, pXForm.modifiedWeights.length);
     opacity = pXForm.opacity;
     drawMode = pXForm.drawMode;
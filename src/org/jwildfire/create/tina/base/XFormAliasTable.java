@@ -0,0 +1,109 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.base;
+
+import java.io.Serializable;
+
+// Chooses the next xForm with the alias method (Walker/Vose): O(1) per sample with the exact probabilities, and
+// O(n) to build. The arrays are reused, so rebuilding the table for changed weights does not allocate memory.
+public final class XFormAliasTable implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private XForm xForms[] = new XForm[0];
+  private double prob[] = new double[0];
+  private int alias[] = new int[0];
+  private int small[] = new int[0];
+  private int large[] = new int[0];
+  private int size;
+
+  // pWeights are relative, xForms with a weight <= 0 are never chosen
+  public void init(XForm pXForms[], double pWeights[], int pCount) {
+    double total = 0.0;
+    for (int i = 0; i < pCount; i++) {
+      if (pWeights[i] > 0.0) {
+        total += pWeights[i];
+      }
+    }
+    if (!(total > 0.0) || Double.isInfinite(total)) {
+      size = 0;
+      return;
+    }
+    if (xForms.length < pCount) {
+      xForms = new XForm[pCount];
+      prob = new double[pCount];
+      alias = new int[pCount];
+      small = new int[pCount];
+      large = new int[pCount];
+    }
+    int smallCount = 0, largeCount = 0;
+    double scale = pCount / total;
+    for (int i = 0; i < pCount; i++) {
+      xForms[i] = pXForms[i];
+      alias[i] = i;
+      prob[i] = pWeights[i] > 0.0 ? pWeights[i] * scale : 0.0;
+      if (prob[i] < 1.0) {
+        small[smallCount++] = i;
+      }
+      else {
+        large[largeCount++] = i;
+      }
+    }
+    while (smallCount > 0 && largeCount > 0) {
+      int s = small[--smallCount];
+      int l = large[--largeCount];
+      alias[s] = l;
+      prob[l] = (prob[l] + prob[s]) - 1.0;
+      if (prob[l] < 1.0) {
+        small[smallCount++] = l;
+      }
+      else {
+        large[largeCount++] = l;
+      }
+    }
+    // the remaining entries are only off by rounding errors
+    while (largeCount > 0) {
+      prob[large[--largeCount]] = 1.0;
+    }
+    while (smallCount > 0) {
+      prob[small[--smallCount]] = 1.0;
+    }
+    size = pCount;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  // pRandom is uniformly distributed in [0, 1), its integer part selects the column and the fraction the entry in it.
+  // Returns null if all weights are 0.
+  public XForm next(double pRandom) {
+    if (size == 0) {
+      return null;
+    }
+    double u = pRandom * size;
+    int i = (int) u;
+    if (i >= size) {
+      i = size - 1;
+    }
+    return (u - i) < prob[i] ? xForms[i] : xForms[alias[i]];
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+  JWildfire - an image and animation processor written in Java 
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser 
+  General Public License as published by the Free Software Foundation; either version 2.1 of the 
+  License, or (at your option) any later version.
+ 
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without 
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software; 
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.base.raster;
+
+// Histogram of the render process, the channels are stored in flat primitive arrays (one per channel),
+// which are indexed by y * rasterWidth + x
+public interface AbstractRaster {
+
+  public void allocRaster(int pWidth, int pHeight);
+
+  // resets all points, the raster keeps its size
+  public void clearRaster();
+
+  public int getRasterWidth();
+
+  public int getRasterHeight();
+
+  public void addSample(int pX, int pY, double pRed, double pGreen, double pBlue);
+
+  public void addRasterPoint(int pX, int pY, double pRed, double pGreen, double pBlue, long pCount);
+
+  public void incCount(int pX, int pY);
+
+  public long getCount(int pX, int pY);
+
+  public void readRasterPoint(int pX, int pY, RasterPoint pDestRasterPoint);
+
+  public void clearRasterPoint(int pX, int pY);
+
+  public void addRaster(AbstractRaster pRaster);
+
+}
@@ -0,0 +1,124 @@
+/*
+  JWildfire - an image and animation processor written in Java 
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser 
+  General Public License as published by the Free Software Foundation; either version 2.1 of the 
+  License, or (at your option) any later version.
+ 
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without 
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software; 
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.base.raster;
+
+// Thread-local raster of a progressive render, which remembers the tiles (see StripedRaster.TILE_SHIFT) which were
+// changed since their samples were moved into the shared raster. Must only be accessed by the thread which owns it.
+public class DirtyTileRaster implements AbstractRaster {
+  private final AbstractRaster raster;
+  private boolean[] dirtyTiles;
+  private int tilesX, tilesY;
+
+  public DirtyTileRaster(AbstractRaster pRaster) {
+    raster = pRaster;
+    initTiles();
+  }
+
+  private void initTiles() {
+    int tileSize = 1 << StripedRaster.TILE_SHIFT;
+    tilesX = (getRasterWidth() + tileSize - 1) >> StripedRaster.TILE_SHIFT;
+    tilesY = (getRasterHeight() + tileSize - 1) >> StripedRaster.TILE_SHIFT;
+    dirtyTiles = new boolean[tilesX * tilesY];
+  }
+
+  public AbstractRaster getRaster() {
+    return raster;
+  }
+
+  @Override
+  public void allocRaster(int pWidth, int pHeight) {
+    raster.allocRaster(pWidth, pHeight);
+    initTiles();
+  }
+
+  @Override
+  public void clearRaster() {
+    raster.clearRaster();
+    for (int i = 0; i < dirtyTiles.length; i++) {
+      dirtyTiles[i] = false;
+    }
+  }
+
+  @Override
+  public int getRasterWidth() {
+    return raster.getRasterWidth();
+  }
+
+  @Override
+  public int getRasterHeight() {
+    return raster.getRasterHeight();
+  }
+
+  @Override
+  public void addSample(int pX, int pY, double pRed, double pGreen, double pBlue) {
+    raster.addSample(pX, pY, pRed, pGreen, pBlue);
+    dirtyTiles[(pY >> StripedRaster.TILE_SHIFT) * tilesX + (pX >> StripedRaster.TILE_SHIFT)] = true;
+  }
+
+  @Override
+  public void addRasterPoint(int pX, int pY, double pRed, double pGreen, double pBlue, long pCount) {
+    raster.addRasterPoint(pX, pY, pRed, pGreen, pBlue, pCount);
+    dirtyTiles[(pY >> StripedRaster.TILE_SHIFT) * tilesX + (pX >> StripedRaster.TILE_SHIFT)] = true;
+  }
+
+  @Override
+  public void incCount(int pX, int pY) {
+    raster.incCount(pX, pY);
+    dirtyTiles[(pY >> StripedRaster.TILE_SHIFT) * tilesX + (pX >> StripedRaster.TILE_SHIFT)] = true;
+  }
+
+  @Override
+  public long getCount(int pX, int pY) {
+    return raster.getCount(pX, pY);
+  }
+
+  @Override
+  public void readRasterPoint(int pX, int pY, RasterPoint pDestRasterPoint) {
+    raster.readRasterPoint(pX, pY, pDestRasterPoint);
+  }
+
+  @Override
+  public void clearRasterPoint(int pX, int pY) {
+    raster.clearRasterPoint(pX, pY);
+  }
+
+  @Override
+  public void addRaster(AbstractRaster pRaster) {
+    raster.addRaster(pRaster);
+    for (int i = 0; i < dirtyTiles.length; i++) {
+      dirtyTiles[i] = true;
+    }
+  }
+
+  public int getTilesX() {
+    return tilesX;
+  }
+
+  public int getTilesY() {
+    return tilesY;
+  }
+
+  public boolean clearDirtyTile(int pTileX, int pTileY) {
+    int idx = pTileY * tilesX + pTileX;
+    if (dirtyTiles[idx]) {
+      dirtyTiles[idx] = false;
+      return true;
+    }
+    return false;
+  }
+
+}
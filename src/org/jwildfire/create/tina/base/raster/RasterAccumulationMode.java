@@ -16,25 +16,14 @@
 */
 package org.jwildfire.create.tina.base.raster;
 
-public interface AbstractRasterPoint {
+public enum RasterAccumulationMode {
+  // each render thread accumulates into a private raster, the rasters are merged after iteration
+  THREAD_LOCAL,
+  // all render threads share one raster, writes are guarded by row-striped locks (needs less memory) 
+  STRIPED;
 
-  public double getRed();
+  public static RasterAccumulationMode getDefaultValue() {
+    return THREAD_LOCAL;
+  }
 
-  public void setRed(double red);
-
-  public double getGreen();
-
-  public void setGreen(double green);
-
-  public double getBlue();
-
-  public void setBlue(double blue);
-
-  public long getCount();
-
-  public void setCount(long count);
-
-  public void incCount();
-
-  public AbstractRasterPoint[][] allocRaster(int pWidth, int pHeight);
 }
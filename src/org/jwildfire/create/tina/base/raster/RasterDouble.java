@@ -0,0 +1,143 @@
+/*
+  JWildfire - an image and animation processor written in Java 
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser 
+  General Public License as published by the Free Software Foundation; either version 2.1 of the 
+  License, or (at your option) any later version.
+ 
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without 
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software; 
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.base.raster;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+public class RasterDouble implements AbstractRaster, Serializable {
+  private static final long serialVersionUID = 1L;
+  private int rasterWidth;
+  private int rasterHeight;
+  private double[] red;
+  private double[] green;
+  private double[] blue;
+  private long[] count;
+
+  @Override
+  public void allocRaster(int pWidth, int pHeight) {
+    rasterWidth = pWidth;
+    rasterHeight = pHeight;
+    int size = pWidth * pHeight;
+    red = new double[size];
+    green = new double[size];
+    blue = new double[size];
+    count = new long[size];
+  }
+
+  @Override
+  public void clearRaster() {
+    Arrays.fill(red, 0);
+    Arrays.fill(green, 0);
+    Arrays.fill(blue, 0);
+    Arrays.fill(count, 0);
+  }
+
+  @Override
+  public int getRasterWidth() {
+    return rasterWidth;
+  }
+
+  @Override
+  public int getRasterHeight() {
+    return rasterHeight;
+  }
+
+  @Override
+  public void addSample(int pX, int pY, double pRed, double pGreen, double pBlue) {
+    int idx = pY * rasterWidth + pX;
+    red[idx] += pRed;
+    green[idx] += pGreen;
+    blue[idx] += pBlue;
+    count[idx]++;
+  }
+
+  @Override
+  public void addRasterPoint(int pX, int pY, double pRed, double pGreen, double pBlue, long pCount) {
+    int idx = pY * rasterWidth + pX;
+    red[idx] += pRed;
+    green[idx] += pGreen;
+    blue[idx] += pBlue;
+    count[idx] += pCount;
+  }
+
+  @Override
+  public void incCount(int pX, int pY) {
+    count[pY * rasterWidth + pX]++;
+  }
+
+  @Override
+  public long getCount(int pX, int pY) {
+    return count[pY * rasterWidth + pX];
+  }
+
+  @Override
+  public void readRasterPoint(int pX, int pY, RasterPoint pDestRasterPoint) {
+    int idx = pY * rasterWidth + pX;
+    pDestRasterPoint.red = red[idx];
+    pDestRasterPoint.green = green[idx];
+    pDestRasterPoint.blue = blue[idx];
+    pDestRasterPoint.count = count[idx];
+  }
+
+  @Override
+  public void clearRasterPoint(int pX, int pY) {
+    int idx = pY * rasterWidth + pX;
+    red[idx] = green[idx] = blue[idx] = 0.0;
+    count[idx] = 0;
+  }
+
+  @Override
+  public void addRaster(AbstractRaster pRaster) {
+    if (pRaster instanceof RasterDouble) {
+      RasterDouble src = (RasterDouble) pRaster;
+      for (int i = 0; i < count.length; i++) {
+        red[i] += src.red[i];
+        green[i] += src.green[i];
+        blue[i] += src.blue[i];
+        count[i] += src.count[i];
+      }
+    }
+    else {
+      RasterPoint point = new RasterPoint();
+      for (int i = 0; i < rasterHeight; i++) {
+        for (int j = 0; j < rasterWidth; j++) {
+          pRaster.readRasterPoint(j, i, point);
+          addRasterPoint(j, i, point.red, point.green, point.blue, point.count);
+        }
+      }
+    }
+  }
+
+  // the channels are stored row by row, for bulk access (e. g. JWFRenderCheckpoint)
+  public double[] getRedChannel() {
+    return red;
+  }
+
+  public double[] getGreenChannel() {
+    return green;
+  }
+
+  public double[] getBlueChannel() {
+    return blue;
+  }
+
+  public long[] getCountChannel() {
+    return count;
+  }
+
+}
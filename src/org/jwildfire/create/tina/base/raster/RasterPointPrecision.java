@@ -19,18 +19,30 @@ package org.jwildfire.create.tina.base.raster;
 public enum RasterPointPrecision {
   SINGLE_PRECISION {
     @Override
-    public Class<? extends AbstractRasterPoint> getRasterPointClass() {
-      return RasterPointFloat.class;
+    public Class<? extends AbstractRaster> getRasterClass() {
+      return RasterFloat.class;
+    }
+
+    @Override
+    public int getBytesPerRasterPoint() {
+      return 3 * 4 + 8;
     }
   },
   DOUBLE_PRECISION {
     @Override
-    public Class<? extends AbstractRasterPoint> getRasterPointClass() {
-      return RasterPoint.class;
+    public Class<? extends AbstractRaster> getRasterClass() {
+      return RasterDouble.class;
+    }
+
+    @Override
+    public int getBytesPerRasterPoint() {
+      return 3 * 8 + 8;
     }
   };
 
-  public abstract Class<? extends AbstractRasterPoint> getRasterPointClass();
+  public abstract Class<? extends AbstractRaster> getRasterClass();
+
+  public abstract int getBytesPerRasterPoint();
 
   public static RasterPointPrecision getDefaultValue() {
     return SINGLE_PRECISION;
@@ -0,0 +1,187 @@
+/*
+  JWildfire - an image and animation processor written in Java 
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser 
+  General Public License as published by the Free Software Foundation; either version 2.1 of the 
+  License, or (at your option) any later version.
+ 
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without 
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software; 
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.base.raster;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Raster which may be shared by several render threads, concurrent writes to the same row are serialized
+// by a lock which is chosen by the row index, so that threads hitting different rows do not block each other 
+public class StripedRaster implements AbstractRaster, Serializable {
+  private static final long serialVersionUID = 1L;
+  private static final int STRIPE_COUNT = 256;
+  private final AbstractRaster raster;
+  private transient Object[] locks;
+  // optional, marks the tiles which were changed since they were last read by a progressive preview. The flags are
+  // atomic, so the preview sees all samples which were added before a flag was set.
+  public static final int TILE_SHIFT = 5;
+  private transient AtomicIntegerArray dirtyTiles;
+  private transient int dirtyTilesX;
+
+  public StripedRaster(AbstractRaster pRaster) {
+    raster = pRaster;
+    initLocks();
+  }
+
+  private void initLocks() {
+    locks = new Object[STRIPE_COUNT];
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      locks[i] = new Object();
+    }
+  }
+
+  private void readObject(ObjectInputStream pIn) throws IOException, ClassNotFoundException {
+    pIn.defaultReadObject();
+    initLocks();
+  }
+
+  public AbstractRaster getRaster() {
+    return raster;
+  }
+
+  @Override
+  public void allocRaster(int pWidth, int pHeight) {
+    raster.allocRaster(pWidth, pHeight);
+  }
+
+  @Override
+  public void clearRaster() {
+    raster.clearRaster();
+  }
+
+  @Override
+  public int getRasterWidth() {
+    return raster.getRasterWidth();
+  }
+
+  @Override
+  public int getRasterHeight() {
+    return raster.getRasterHeight();
+  }
+
+  @Override
+  public void addSample(int pX, int pY, double pRed, double pGreen, double pBlue) {
+    synchronized (locks[pY & (STRIPE_COUNT - 1)]) {
+      raster.addSample(pX, pY, pRed, pGreen, pBlue);
+      markDirtyTile(pX >> TILE_SHIFT, pY >> TILE_SHIFT);
+    }
+  }
+
+  @Override
+  public void addRasterPoint(int pX, int pY, double pRed, double pGreen, double pBlue, long pCount) {
+    synchronized (locks[pY & (STRIPE_COUNT - 1)]) {
+      raster.addRasterPoint(pX, pY, pRed, pGreen, pBlue, pCount);
+      markDirtyTile(pX >> TILE_SHIFT, pY >> TILE_SHIFT);
+    }
+  }
+
+  @Override
+  public void incCount(int pX, int pY) {
+    synchronized (locks[pY & (STRIPE_COUNT - 1)]) {
+      raster.incCount(pX, pY);
+      markDirtyTile(pX >> TILE_SHIFT, pY >> TILE_SHIFT);
+    }
+  }
+
+  @Override
+  public long getCount(int pX, int pY) {
+    return raster.getCount(pX, pY);
+  }
+
+  @Override
+  public void readRasterPoint(int pX, int pY, RasterPoint pDestRasterPoint) {
+    raster.readRasterPoint(pX, pY, pDestRasterPoint);
+  }
+
+  @Override
+  public void clearRasterPoint(int pX, int pY) {
+    synchronized (locks[pY & (STRIPE_COUNT - 1)]) {
+      raster.clearRasterPoint(pX, pY);
+    }
+  }
+
+  @Override
+  public void addRaster(AbstractRaster pRaster) {
+    raster.addRaster(pRaster);
+  }
+
+  // Moves the changed tiles of a thread-local raster into this raster, must be called by the thread which writes into
+  // pRaster. Only one lock per row of a tile is taken, instead of one per sample.
+  public void addDirtyTiles(DirtyTileRaster pRaster) {
+    int tileSize = 1 << TILE_SHIFT;
+    int width = getRasterWidth();
+    int height = getRasterHeight();
+    AbstractRaster src = pRaster.getRaster();
+    RasterPoint point = new RasterPoint();
+    for (int i = 0; i < pRaster.getTilesY(); i++) {
+      for (int j = 0; j < pRaster.getTilesX(); j++) {
+        if (pRaster.clearDirtyTile(j, i)) {
+          int x1 = Math.min((j + 1) * tileSize, width);
+          int y1 = Math.min((i + 1) * tileSize, height);
+          for (int y = i * tileSize; y < y1; y++) {
+            synchronized (locks[y & (STRIPE_COUNT - 1)]) {
+              for (int x = j * tileSize; x < x1; x++) {
+                src.readRasterPoint(x, y, point);
+                if (point.count > 0) {
+                  raster.addRasterPoint(x, y, point.red, point.green, point.blue, point.count);
+                  src.clearRasterPoint(x, y);
+                }
+              }
+            }
+          }
+          markDirtyTile(j, i);
+        }
+      }
+    }
+  }
+
+  // must be called before the render threads are started
+  public void trackDirtyTiles() {
+    dirtyTilesX = getTilesX();
+    dirtyTiles = new AtomicIntegerArray(dirtyTilesX * getTilesY());
+  }
+
+  public int getTilesX() {
+    return (getRasterWidth() + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+  }
+
+  public int getTilesY() {
+    return (getRasterHeight() + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+  }
+
+  private void markDirtyTile(int pTileX, int pTileY) {
+    if (dirtyTiles != null) {
+      int idx = pTileY * dirtyTilesX + pTileX;
+      // most samples hit a tile which is already marked, they do not need to write the flag
+      if (dirtyTiles.get(idx) == 0) {
+        dirtyTiles.set(idx, 1);
+      }
+    }
+  }
+
+  // A sample which is added concurrently either sets the flag again or is already visible to the caller, who reads the
+  // tile after clearing the flag.
+  public boolean clearDirtyTile(int pTileX, int pTileY) {
+    if (dirtyTiles == null) {
+      return true;
+    }
+    return dirtyTiles.getAndSet(pTileY * dirtyTilesX + pTileX, 0) != 0;
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.batch;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.QualityProfile;
+import org.jwildfire.base.ResolutionProfile;
+import org.jwildfire.create.tina.animate.AnimationService;
+import org.jwildfire.create.tina.animate.FlameMovie;
+import org.jwildfire.create.tina.animate.MovieFrameRenderer;
+import org.jwildfire.create.tina.animate.MotionSpeed;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.io.FlameReader;
+import org.jwildfire.create.tina.io.FlameWriter;
+import org.jwildfire.create.tina.random.RandomGeneratorType;
+import org.jwildfire.create.tina.render.FlameRenderSession;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.create.tina.render.ProgressUpdater;
+import org.jwildfire.create.tina.render.RenderInfo;
+import org.jwildfire.create.tina.render.RenderedFlame;
+import org.jwildfire.image.SimpleImage;
+import org.jwildfire.io.ImageWriter;
+
+// Renders flames and movie frames without any UI, used by the batch renderer and the command line renderer
+public class HeadlessRenderer implements MovieFrameRenderer {
+  private final Prefs prefs;
+  private final ResolutionProfile resolutionProfile;
+  private final QualityProfile qualityProfile;
+  // null: random seed
+  private Long randomSeed;
+  private final Random frameSeedRandom = new Random();
+  // 0: the render threads of the prefs
+  private int renderThreads;
+  // 0: no checkpoints
+  private long checkpointInterval;
+  private boolean resume;
+
+  // a null resolution or quality profile means to use the settings of the flame (or movie)
+  public HeadlessRenderer(Prefs pPrefs, ResolutionProfile pResolutionProfile, QualityProfile pQualityProfile) {
+    prefs = pPrefs;
+    resolutionProfile = pResolutionProfile;
+    qualityProfile = pQualityProfile;
+  }
+
+  public void renderJob(Job pJob, ProgressUpdater pProgressUpdater) throws Exception {
+    List<Flame> flames = new FlameReader(prefs).readFlames(pJob.getFlameFilename());
+    if (flames.size() == 0) {
+      throw new IllegalArgumentException("File <" + pJob.getFlameFilename() + "> contains no flames");
+    }
+    Flame flame = flames.get(0);
+    int width = resolutionProfile != null ? resolutionProfile.getWidth() : flame.getWidth();
+    int height = resolutionProfile != null ? resolutionProfile.getHeight() : flame.getHeight();
+    RenderInfo info = new RenderInfo(width, height);
+    if (qualityProfile != null) {
+      info.setRenderHDR(qualityProfile.isWithHDR());
+      info.setRenderHDRIntensityMap(qualityProfile.isWithHDRIntensityMap());
+    }
+    double wScl = (double) info.getImageWidth() / (double) flame.getWidth();
+    double hScl = (double) info.getImageHeight() / (double) flame.getHeight();
+    flame.setPixelsPerUnit((wScl + hScl) * 0.5 * flame.getPixelsPerUnit());
+    flame.setWidth(info.getImageWidth());
+    flame.setHeight(info.getImageHeight());
+    double oldSampleDensity = flame.getSampleDensity();
+    double oldFilterRadius = flame.getSpatialFilterRadius();
+    try {
+      if (qualityProfile != null && qualityProfile.getQuality() > 0) {
+        flame.setSampleDensity(qualityProfile.getQuality());
+      }
+      FlameRenderer renderer = new FlameRenderer(flame, prefs, flame.isBGTransparency(), false);
+      renderer.setProgressUpdater(pProgressUpdater);
+      if (renderThreads > 0) {
+        renderer.setRenderThreads(renderThreads);
+      }
+      if (randomSeed != null) {
+        renderer.setRandomSeed(randomSeed.longValue(), RandomGeneratorType.XOROSHIRO);
+      }
+      String checkpointFilename = getCheckpointFilename(pJob.getImageFilename());
+      if (checkpointInterval > 0) {
+        renderer.setCheckpoint(checkpointFilename, checkpointInterval, true);
+      }
+      long t0 = System.currentTimeMillis();
+      RenderedFlame res;
+      if (resume && new File(checkpointFilename).exists()) {
+        res = renderer.renderFlameFromCheckpoint(checkpointFilename);
+      }
+      else {
+        res = renderer.renderFlame(info);
+      }
+      long t1 = System.currentTimeMillis();
+      pJob.setFinished(true);
+      pJob.setElapsedSeconds(((double) (t1 - t0) / 1000.0));
+      pJob.setStatistics(res.getStatistics());
+      new ImageWriter().saveImage(res.getImage(), pJob.getImageFilename(), true);
+      if (res.getHDRImage() != null) {
+        new ImageWriter().saveImage(res.getHDRImage(), pJob.getImageFilename() + ".hdr", true);
+      }
+      if (res.getHDRIntensityMap() != null) {
+        new ImageWriter().saveImage(res.getHDRIntensityMap(), pJob.getImageFilename() + ".intensity.hdr", true);
+      }
+      new File(checkpointFilename).delete();
+    }
+    finally {
+      flame.setSampleDensity(oldSampleDensity);
+      flame.setSpatialFilterRadius(oldFilterRadius);
+    }
+  }
+
+  public SimpleImage renderMovieFrame(FlameMovie pMovie, int pFrame) throws Exception {
+    return renderMovieFrame(pMovie, pFrame, null);
+  }
+
+  @Override
+  public SimpleImage renderMovieFrame(FlameMovie pMovie, int pFrame, FlameRenderSession pSession) throws Exception {
+    Flame flame = createMovieFrameFlame(pMovie, pFrame);
+    List<Flame> motionBlurFlames = null;
+    double times[] = getMotionBlurTimes(pMovie, pFrame);
+    if (times != null) {
+      motionBlurFlames = new ArrayList<Flame>();
+      for (double time : times) {
+        motionBlurFlames.add(createMovieFrameFlame(pMovie, time));
+      }
+    }
+    return AnimationService.renderFrame(flame, motionBlurFlames, prefs, pSession, Long.valueOf(getMovieFrameSeed(pFrame)), renderThreads);
+  }
+
+  // every frame gets its own seed and thus its own random generators, so frames may be rendered concurrently.
+  // With a master seed the frames are reproducible, otherwise each render of a frame gets a new seed.
+  private long getMovieFrameSeed(int pFrame) {
+    long seed = randomSeed != null ? randomSeed.longValue() : frameSeedRandom.nextLong();
+    return seed + pFrame * 0x9E3779B97F4A7C15L;
+  }
+
+  // time steps in the middle of equal parts of the shutter interval, which is centered at the frame, null: no motion blur
+  private double[] getMotionBlurTimes(FlameMovie pMovie, int pFrame) {
+    int timeSteps = pMovie.getMotionBlurTimeSteps();
+    if (pMovie.getMotionBlurLength() <= 0.0 || timeSteps <= 1) {
+      return null;
+    }
+    double res[] = new double[timeSteps];
+    for (int i = 0; i < timeSteps; i++) {
+      double time = pFrame + pMovie.getMotionBlurLength() * ((i + 0.5) / timeSteps - 0.5);
+      res[i] = Math.max(1.0, Math.min(pMovie.getFrameCount(), time));
+    }
+    return res;
+  }
+
+  private Flame createMovieFrameFlame(FlameMovie pMovie, double pFrame) {
+    Flame flame = pMovie.getFlame(pFrame);
+    flame.setSpatialFilterRadius(1.0);
+    flame.setSampleDensity(getMovieQuality(pMovie));
+    return AnimationService.createFrameFlame(pFrame, pMovie.getFrameCount(), flame, pMovie.getGlobalScript(), MotionSpeed.S1_1, pMovie.getxFormScript(), MotionSpeed.S1_1, getMovieFrameWidth(pMovie), getMovieFrameHeight(pMovie), prefs);
+  }
+
+  public int getMovieFrameWidth(FlameMovie pMovie) {
+    return resolutionProfile != null ? resolutionProfile.getWidth() : pMovie.getFrameWidth();
+  }
+
+  public int getMovieFrameHeight(FlameMovie pMovie) {
+    return resolutionProfile != null ? resolutionProfile.getHeight() : pMovie.getFrameHeight();
+  }
+
+  private double getMovieQuality(FlameMovie pMovie) {
+    return qualityProfile != null && qualityProfile.getQuality() > 0 ? qualityProfile.getQuality() : pMovie.getQuality();
+  }
+
+  // hash of everything which determines the image of a movie frame, used to detect frames which must be rendered again
+  public String getMovieFrameHash(FlameMovie pMovie, int pFrame) throws Exception {
+    StringBuilder sb = new StringBuilder();
+    sb.append(new FlameWriter().getFlameXML(pMovie.getFlame(pFrame)));
+    sb.append(pFrame).append(' ').append(pMovie.getFrameCount()).append(' ');
+    sb.append(pMovie.getGlobalScript()).append(' ').append(pMovie.getxFormScript()).append(' ');
+    sb.append(getMovieFrameWidth(pMovie)).append('x').append(getMovieFrameHeight(pMovie)).append(' ').append(getMovieQuality(pMovie));
+    double times[] = getMotionBlurTimes(pMovie, pFrame);
+    if (times != null) {
+      // the shutter interval may reach into the neighbouring parts of the movie
+      sb.append(' ').append(pMovie.getMotionBlurLength()).append(' ').append(pMovie.getMotionBlurTimeSteps());
+      for (double time : times) {
+        sb.append(' ').append(time).append(' ').append(new FlameWriter().getFlameXML(pMovie.getFlame(time)));
+      }
+    }
+    byte digest[] = MessageDigest.getInstance("MD5").digest(sb.toString().getBytes("UTF-8"));
+    StringBuilder res = new StringBuilder();
+    for (byte b : digest) {
+      res.append(Character.forDigit((b >> 4) & 0x0f, 16)).append(Character.forDigit(b & 0x0f, 16));
+    }
+    return res.toString();
+  }
+
+  @Override
+  public void saveMovieFrame(SimpleImage pImage, FlameMovie pMovie, int pFrame, String pOutputFilename) throws Exception {
+    new ImageWriter().saveImage(pImage, getMovieFrameFilename(pMovie, pFrame, pOutputFilename), true);
+  }
+
+  public Long getRandomSeed() {
+    return randomSeed;
+  }
+
+  // makes the rendered flames reproducible (for a fixed number of render threads), seeded renders always use xoroshiro128+
+  public void setRandomSeed(Long pRandomSeed) {
+    randomSeed = pRandomSeed;
+  }
+
+  public int getRenderThreads() {
+    return renderThreads;
+  }
+
+  // overrides the number of render threads of the prefs (for this renderer only), if greater than 0
+  public void setRenderThreads(int pRenderThreads) {
+    renderThreads = pRenderThreads;
+  }
+
+  public long getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  // writes a checkpoint of every flame render periodically (see getCheckpointFilename), 0 disables the checkpoints
+  public void setCheckpointInterval(long pIntervalMillis) {
+    checkpointInterval = pIntervalMillis;
+  }
+
+  public boolean isResume() {
+    return resume;
+  }
+
+  // continues the render of a flame from its checkpoint, if there is one
+  public void setResume(boolean pResume) {
+    resume = pResume;
+  }
+
+  // the checkpoint is removed when the image was written
+  public static String getCheckpointFilename(String pImageFilename) {
+    return pImageFilename + ".jwfcheckpoint";
+  }
+
+  public static String getMovieFrameFilename(FlameMovie pMovie, int pFrame, String pOutputFilename) {
+    String filename = pOutputFilename;
+    {
+      int pSlash = filename.lastIndexOf("/");
+      int pSlash2 = filename.lastIndexOf("\\");
+      if (pSlash2 > pSlash) {
+        pSlash = pSlash2;
+      }
+      int pDot = filename.lastIndexOf(".");
+      if (pDot > pSlash) {
+        filename = filename.substring(0, pDot);
+      }
+    }
+    String hs = String.valueOf(pFrame);
+    int length = pMovie.getFrameCount() > 9999 ? 5 : 4;
+    while (hs.length() < length) {
+      hs = "0" + hs;
+    }
+    return filename + hs + ".png";
+  }
+
+}
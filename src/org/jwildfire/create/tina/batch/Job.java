@@ -16,12 +16,15 @@
 */
 package org.jwildfire.create.tina.batch;
 
+import org.jwildfire.create.tina.render.RenderStatistics;
+
 public class Job {
   private String flameFilename;
   private boolean finished;
   private double elapsedSeconds;
   private String imageFilename;
   private Throwable lastError;
+  private RenderStatistics statistics;
 
   public String getFlameFilename() {
     return flameFilename;
@@ -51,6 +54,10 @@ public class Job {
     return imageFilename;
   }
 
+  public void setImageFilename(String pImageFilename) {
+    imageFilename = pImageFilename;
+  }
+
   public void setLastError(Throwable pLastError) {
     lastError = pLastError;
   }
@@ -74,4 +81,13 @@ public class Job {
     this.elapsedSeconds = elapsedSeconds;
   }
 
+  // only available if the render statistics are enabled
+  public RenderStatistics getStatistics() {
+    return statistics;
+  }
+
+  public void setStatistics(RenderStatistics pStatistics) {
+    statistics = pStatistics;
+  }
+
 }
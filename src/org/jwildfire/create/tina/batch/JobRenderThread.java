@@ -17,17 +17,10 @@
 package org.jwildfire.create.tina.batch;
 
 import java.awt.Graphics;
-import java.util.Calendar;
 import java.util.List;
 
 import org.jwildfire.base.QualityProfile;
 import org.jwildfire.base.ResolutionProfile;
-import org.jwildfire.create.tina.base.Flame;
-import org.jwildfire.create.tina.io.FlameReader;
-import org.jwildfire.create.tina.render.FlameRenderer;
-import org.jwildfire.create.tina.render.RenderInfo;
-import org.jwildfire.create.tina.render.RenderedFlame;
-import org.jwildfire.io.ImageWriter;
 
 public class JobRenderThread implements Runnable {
   private final List<Job> activeJobList;
@@ -57,63 +50,29 @@ public class JobRenderThread implements Runnable {
             break;
           }
           try {
-            int width = resolutionProfile.getWidth();
-            int height = resolutionProfile.getHeight();
-            RenderInfo info = new RenderInfo(width, height);
-            info.setRenderHDR(qualityProfile.isWithHDR());
-            info.setRenderHDRIntensityMap(qualityProfile.isWithHDRIntensityMap());
-            List<Flame> flames = new FlameReader(controller.getPrefs()).readFlames(job.getFlameFilename());
-            Flame flame = flames.get(0);
-            double wScl = (double) info.getImageWidth() / (double) flame.getWidth();
-            double hScl = (double) info.getImageHeight() / (double) flame.getHeight();
-            flame.setPixelsPerUnit((wScl + hScl) * 0.5 * flame.getPixelsPerUnit());
-            flame.setWidth(info.getImageWidth());
-            flame.setHeight(info.getImageHeight());
-            double oldSampleDensity = flame.getSampleDensity();
-            double oldFilterRadius = flame.getSpatialFilterRadius();
+            new HeadlessRenderer(controller.getPrefs(), resolutionProfile, qualityProfile).renderJob(job, controller.getJobProgressUpdater());
             try {
-              flame.setSampleDensity(qualityProfile.getQuality());
-              FlameRenderer renderer = new FlameRenderer(flame, controller.getPrefs(), flame.isBGTransparency(), false);
-              renderer.setProgressUpdater(controller.getJobProgressUpdater());
-              long t0 = Calendar.getInstance().getTimeInMillis();
-              RenderedFlame res = renderer.renderFlame(info);
-              long t1 = Calendar.getInstance().getTimeInMillis();
-              job.setFinished(true);
-              job.setElapsedSeconds(((double) (t1 - t0) / 1000.0));
-              new ImageWriter().saveImage(res.getImage(), job.getImageFilename());
-              if (res.getHDRImage() != null) {
-                new ImageWriter().saveImage(res.getHDRImage(), job.getImageFilename() + ".hdr");
-              }
-              if (res.getHDRIntensityMap() != null) {
-                new ImageWriter().saveImage(res.getHDRIntensityMap(), job.getImageFilename() + ".intensity.hdr");
-              }
-              try {
-                {
-                  controller.refreshRenderBatchJobsTable();
-                  controller.getRenderBatchJobsTable().invalidate();
-                  controller.getRenderBatchJobsTable().validate();
-                  Graphics g = controller.getRenderBatchJobsTable().getParent().getGraphics();
-                  if (g != null) {
-                    controller.getRenderBatchJobsTable().getParent().paint(g);
-                  }
-                }
-                {
-                  controller.getTotalProgressBar().setValue(controller.getTotalProgressBar().getValue() + 1);
-                  controller.getTotalProgressBar().invalidate();
-                  controller.getTotalProgressBar().validate();
-                  Graphics g = controller.getTotalProgressBar().getGraphics();
-                  if (g != null) {
-                    controller.getTotalProgressBar().paint(g);
-                  }
+              {
+                controller.refreshRenderBatchJobsTable();
+                controller.getRenderBatchJobsTable().invalidate();
+                controller.getRenderBatchJobsTable().validate();
+                Graphics g = controller.getRenderBatchJobsTable().getParent().getGraphics();
+                if (g != null) {
+                  controller.getRenderBatchJobsTable().getParent().paint(g);
                 }
               }
-              catch (Throwable ex) {
-                //                ex.printStackTrace();
+              {
+                controller.getTotalProgressBar().setValue(controller.getTotalProgressBar().getValue() + 1);
+                controller.getTotalProgressBar().invalidate();
+                controller.getTotalProgressBar().validate();
+                Graphics g = controller.getTotalProgressBar().getGraphics();
+                if (g != null) {
+                  controller.getTotalProgressBar().paint(g);
+                }
               }
             }
-            finally {
-              flame.setSampleDensity(oldSampleDensity);
-              flame.setSpatialFilterRadius(oldFilterRadius);
+            catch (Throwable ex) {
+              //              ex.printStackTrace();
             }
           }
           catch (Throwable ex) {
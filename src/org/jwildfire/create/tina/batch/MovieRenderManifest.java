@@ -0,0 +1,206 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Completion records of a sharded movie render, stored next to the output in the directory <output>.jwfshards:
+//   frames-<from>-<to>.lock      claim of a work unit by a worker process, refreshed while the worker is alive
+//   frames-<from>-<to>.manifest  one line per finished frame of the unit: <frame> <frame hash>
+//   frames-<from>-<to>.manifest.bak  previous manifest, only exists while the manifest is replaced
+// Only the worker which holds the lock of a unit writes its manifest, so several worker processes (even on different
+// machines) can share the directory. All workers must use the same unit size.
+public class MovieRenderManifest {
+  // interval in which a worker refreshes its locks
+  public static final long HEARTBEAT_INTERVAL = 60 * 1000L;
+  private final File directory;
+  private final long staleLockMillis;
+  private final String workerId;
+
+  // the stale timeout must leave room for a missed heartbeat, otherwise the locks of living workers are taken over
+  public MovieRenderManifest(String pOutputFilename, long pStaleLockMillis) throws IOException {
+    if (pStaleLockMillis <= 2 * HEARTBEAT_INTERVAL) {
+      throw new IllegalArgumentException("Stale lock timeout must be greater than " + (2 * HEARTBEAT_INTERVAL / 1000L) + "s");
+    }
+    directory = new File(pOutputFilename + ".jwfshards");
+    if (!directory.exists() && !directory.mkdirs() && !directory.exists()) {
+      throw new IOException("Could not create directory <" + directory.getAbsolutePath() + ">");
+    }
+    staleLockMillis = pStaleLockMillis;
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    }
+    catch (Exception ex) {
+      host = "unknown";
+    }
+    workerId = host + "-" + Long.toHexString(System.nanoTime()) + "-" + Integer.toHexString(System.identityHashCode(this));
+  }
+
+  private File getFile(int pFromFrame, int pToFrame, String pExt) {
+    return new File(directory, "frames-" + pFromFrame + "-" + pToFrame + pExt);
+  }
+
+  // frame -> hash of all frames which were recorded as finished
+  public Map<Integer, String> readUnit(int pFromFrame, int pToFrame) throws IOException {
+    Map<Integer, String> res = new TreeMap<Integer, String>();
+    File file = getFile(pFromFrame, pToFrame, ".manifest");
+    if (!file.exists()) {
+      // the owner crashed while replacing the manifest
+      file = getFile(pFromFrame, pToFrame, ".manifest.bak");
+    }
+    if (file.exists()) {
+      BufferedReader reader = new BufferedReader(new FileReader(file));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String fields[] = line.trim().split("\\s+");
+          if (fields.length == 2) {
+            try {
+              res.put(Integer.valueOf(fields[0]), fields[1]);
+            }
+            catch (NumberFormatException ex) {
+              // ignore broken lines
+            }
+          }
+        }
+      }
+      finally {
+        reader.close();
+      }
+    }
+    return res;
+  }
+
+  // only done by the owner of the lock, returns false if the lock was taken over by another worker
+  public boolean writeUnit(int pFromFrame, int pToFrame, Map<Integer, String> pFrames) throws IOException {
+    if (!isLockOwner(pFromFrame, pToFrame)) {
+      return false;
+    }
+    File file = getFile(pFromFrame, pToFrame, ".manifest");
+    File tmpFile = getFile(pFromFrame, pToFrame, ".manifest." + workerId);
+    Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+    try {
+      for (Map.Entry<Integer, String> entry : pFrames.entrySet()) {
+        writer.write(entry.getKey() + " " + entry.getValue() + "\n");
+      }
+    }
+    finally {
+      writer.close();
+    }
+    replaceFile(tmpFile, file, getFile(pFromFrame, pToFrame, ".manifest.bak"));
+    return true;
+  }
+
+  // Replaces pFile by pNewFile. Rename does not replace an existing file on every platform, so pFile is renamed to
+  // pBackupFile first and only removed after the rename of pNewFile succeeded. If there is no pFile, but a backup of
+  // an interrupted replace, the backup is kept until then.
+  static void replaceFile(File pNewFile, File pFile, File pBackupFile) throws IOException {
+    if (pFile.exists()) {
+      if (pBackupFile.exists() && !pBackupFile.delete()) {
+        pNewFile.delete();
+        throw new IOException("Could not delete file <" + pBackupFile.getAbsolutePath() + ">");
+      }
+      if (!pFile.renameTo(pBackupFile)) {
+        pNewFile.delete();
+        throw new IOException("Could not replace file <" + pFile.getAbsolutePath() + ">");
+      }
+    }
+    if (!pNewFile.renameTo(pFile)) {
+      throw new IOException("Could not rename file <" + pNewFile.getAbsolutePath() + ">");
+    }
+    pBackupFile.delete();
+  }
+
+  // claims a work unit, a lock which was not refreshed within the stale timeout is taken over
+  public boolean tryLock(int pFromFrame, int pToFrame) throws IOException {
+    File lockFile = getFile(pFromFrame, pToFrame, ".lock");
+    if (!lockFile.createNewFile()) {
+      if (System.currentTimeMillis() - lockFile.lastModified() < staleLockMillis) {
+        return false;
+      }
+      // only one of the workers which detect the stale lock succeeds to rename it
+      File staleFile = getFile(pFromFrame, pToFrame, ".stale." + workerId);
+      if (!lockFile.renameTo(staleFile)) {
+        return false;
+      }
+      staleFile.delete();
+      if (!lockFile.createNewFile()) {
+        return false;
+      }
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(lockFile), "UTF-8");
+    try {
+      writer.write(workerId + "\n");
+    }
+    finally {
+      writer.close();
+    }
+    return true;
+  }
+
+  // a worker whose lock was taken over (e.g. after it was suspended longer than the stale timeout) must not touch it
+  public boolean isLockOwner(int pFromFrame, int pToFrame) {
+    File lockFile = getFile(pFromFrame, pToFrame, ".lock");
+    try {
+      BufferedReader reader = new BufferedReader(new FileReader(lockFile));
+      try {
+        String line = reader.readLine();
+        return line != null && line.trim().equals(workerId);
+      }
+      finally {
+        reader.close();
+      }
+    }
+    catch (IOException ex) {
+      // the lock was removed
+      return false;
+    }
+  }
+
+  // returns false if the lock is not owned by this worker (anymore)
+  public boolean refreshLock(int pFromFrame, int pToFrame) {
+    if (!isLockOwner(pFromFrame, pToFrame)) {
+      return false;
+    }
+    getFile(pFromFrame, pToFrame, ".lock").setLastModified(System.currentTimeMillis());
+    return true;
+  }
+
+  public void unlock(int pFromFrame, int pToFrame) {
+    if (isLockOwner(pFromFrame, pToFrame)) {
+      getFile(pFromFrame, pToFrame, ".lock").delete();
+    }
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public String getWorkerId() {
+    return workerId;
+  }
+}
@@ -0,0 +1,443 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.QualityProfile;
+import org.jwildfire.base.ResolutionProfile;
+import org.jwildfire.create.tina.animate.FlameMovie;
+import org.jwildfire.create.tina.animate.OrderedFrameRenderer;
+import org.jwildfire.create.tina.io.JWFMovieReader;
+import org.jwildfire.create.tina.render.ProgressUpdater;
+import org.jwildfire.create.tina.render.RenderStatistics;
+import org.jwildfire.image.SimpleImage;
+
+// Command line renderer for headless batch and server use. Every line written to stdout is a tab-separated record:
+//   START <input>
+//   PROGRESS <input> <percent>
+//   DONE <input> <output> <milliseconds>
+//   SKIP <input> <output>
+//   STATS <input> <samples> <samples per second> <out of frame ratio> <NaN/Inf resets> (if render statistics are enabled)
+//   ERROR <input> <message>
+//   SUMMARY <finished> <failed> <milliseconds>
+// Movie frames are rendered concurrently, so several START records may precede the DONE records, which are in frame order.
+public class RenderCLI {
+  public static final int EXIT_OK = 0;
+  public static final int EXIT_USAGE = 1;
+  public static final int EXIT_RENDER_FAILED = 2;
+  public static final int EXIT_FATAL = 3;
+  private static final int DEFAULT_STALE_LOCK_MINUTES = 10;
+
+  private final PrintStream out;
+  private final List<String> flameFilenames = new ArrayList<String>();
+  private String outputFilename;
+  private String outputDirectory;
+  private String movieFilename;
+  private int fromFrame = 1, toFrame = -1;
+  private int width = -1, height = -1;
+  private int quality = -1;
+  private String qualityProfileCaption;
+  private boolean withHDR;
+  private int threads = -1;
+  private Long seed;
+  private boolean sharded;
+  private int unitSize = ShardedMovieRenderer.DEFAULT_UNIT_SIZE;
+  private int staleLockMinutes = DEFAULT_STALE_LOCK_MINUTES;
+  private int checkpointMinutes;
+  private boolean resume;
+
+  public RenderCLI(PrintStream pOut) {
+    out = pOut;
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    RenderCLI cli = new RenderCLI(System.out);
+    int exitCode;
+    try {
+      if (!cli.parseArgs(args)) {
+        printUsage(System.err);
+        exitCode = EXIT_USAGE;
+      }
+      else {
+        exitCode = cli.run();
+      }
+    }
+    catch (Throwable ex) {
+      ex.printStackTrace();
+      exitCode = EXIT_FATAL;
+    }
+    System.exit(exitCode);
+  }
+
+  private static void printUsage(PrintStream pOut) {
+    pOut.println("Usage: RenderCLI [options] <flame file>...");
+    pOut.println("  -o <file>                output image (only for a single flame), default: <flame file>.png");
+    pOut.println("  -outdir <dir>            output directory");
+    pOut.println("  -batch <file>            text file with one flame file per line");
+    pOut.println("  -movie <file>            render the frames of a movie (*.jwfmovie) as png images");
+    pOut.println("  -frames <from>-<to>      frame range of the movie (1-based, inclusive)");
+    pOut.println("  -size <width>x<height>   output resolution, default: the size of the flame or movie");
+    pOut.println("  -quality <n>             render quality, default: the quality of the flame or movie");
+    pOut.println("  -qualityprofile <name>   use a quality profile of the preferences");
+    pOut.println("  -hdr                     also write a HDR image");
+    pOut.println("  -threads <n>             number of render threads");
+    pOut.println("  -seed <n>                master seed of the random generators, makes renders reproducible");
+    pOut.println("  -shard                   render the movie in work units which are shared with other workers using the");
+    pOut.println("                           same output, frames which are already finished are skipped (resume)");
+    pOut.println("  -unitsize <n>            frames per work unit, must be the same for all workers, default: " + ShardedMovieRenderer.DEFAULT_UNIT_SIZE);
+    pOut.println("  -stalelock <minutes>     time after which the work unit of a dead worker is taken over, at least 3, default: " + DEFAULT_STALE_LOCK_MINUTES);
+    pOut.println("  -checkpoint <minutes>    periodically save the state of a flame render to <output>.jwfcheckpoint");
+    pOut.println("  -resume                  continue the flame renders from their checkpoints, if there are any");
+  }
+
+  public boolean parseArgs(String[] pArgs) throws Exception {
+    int i = 0;
+    while (i < pArgs.length) {
+      String arg = pArgs[i++];
+      if (arg.startsWith("-")) {
+        if (arg.equals("-hdr")) {
+          withHDR = true;
+          continue;
+        }
+        if (arg.equals("-shard")) {
+          sharded = true;
+          continue;
+        }
+        if (arg.equals("-resume")) {
+          resume = true;
+          continue;
+        }
+        if (i >= pArgs.length) {
+          return false;
+        }
+        String value = pArgs[i++];
+        // an invalid number is a usage error, like an unknown option
+        try {
+          if (arg.equals("-o")) {
+            outputFilename = value;
+          }
+          else if (arg.equals("-outdir")) {
+            outputDirectory = value;
+          }
+          else if (arg.equals("-batch")) {
+            readBatchFile(value);
+          }
+          else if (arg.equals("-movie")) {
+            movieFilename = value;
+          }
+          else if (arg.equals("-frames")) {
+            String range[] = value.split("-");
+            if (range.length != 2) {
+              return false;
+            }
+            fromFrame = Integer.parseInt(range[0].trim());
+            toFrame = Integer.parseInt(range[1].trim());
+          }
+          else if (arg.equals("-size")) {
+            String size[] = value.toLowerCase().split("x");
+            if (size.length != 2) {
+              return false;
+            }
+            width = Integer.parseInt(size[0].trim());
+            height = Integer.parseInt(size[1].trim());
+          }
+          else if (arg.equals("-quality")) {
+            quality = Integer.parseInt(value);
+          }
+          else if (arg.equals("-qualityprofile")) {
+            qualityProfileCaption = value;
+          }
+          else if (arg.equals("-threads")) {
+            threads = Integer.parseInt(value);
+          }
+          else if (arg.equals("-seed")) {
+            seed = Long.valueOf(value);
+          }
+          else if (arg.equals("-unitsize")) {
+            unitSize = Integer.parseInt(value);
+          }
+          else if (arg.equals("-stalelock")) {
+            staleLockMinutes = Integer.parseInt(value);
+            // see MovieRenderManifest
+            if (staleLockMinutes * 60 * 1000L <= 2 * MovieRenderManifest.HEARTBEAT_INTERVAL) {
+              return false;
+            }
+          }
+          else if (arg.equals("-checkpoint")) {
+            checkpointMinutes = Integer.parseInt(value);
+            if (checkpointMinutes <= 0) {
+              return false;
+            }
+          }
+          else {
+            return false;
+          }
+        }
+        catch (NumberFormatException ex) {
+          return false;
+        }
+      }
+      else {
+        flameFilenames.add(arg);
+      }
+    }
+    if (movieFilename != null) {
+      // checkpoints are only written for flame renders, movies resume by frames (-shard)
+      return flameFilenames.size() == 0 && checkpointMinutes == 0 && !resume;
+    }
+    if (sharded) {
+      return false;
+    }
+    return flameFilenames.size() > 0 && (outputFilename == null || flameFilenames.size() == 1);
+  }
+
+  private void readBatchFile(String pFilename) throws Exception {
+    BufferedReader reader = new BufferedReader(new FileReader(pFilename));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0 && !line.startsWith("#")) {
+          flameFilenames.add(line);
+        }
+      }
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  public int run() throws Exception {
+    Prefs prefs = new Prefs();
+    prefs.loadFromFile();
+    ResolutionProfile resolutionProfile = width > 0 && height > 0 ? new ResolutionProfile(false, width, height) : null;
+    QualityProfile qualityProfile = null;
+    if (qualityProfileCaption != null) {
+      for (QualityProfile profile : prefs.getQualityProfiles()) {
+        if (profile.getCaption().equalsIgnoreCase(qualityProfileCaption)) {
+          qualityProfile = profile.makeCopy();
+          break;
+        }
+      }
+      if (qualityProfile == null) {
+        System.err.println("Unknown quality profile <" + qualityProfileCaption + ">");
+        return EXIT_USAGE;
+      }
+    }
+    if (quality > 0 || withHDR) {
+      if (qualityProfile == null) {
+        qualityProfile = new QualityProfile(false, "cli", quality, false, false);
+      }
+      if (quality > 0) {
+        qualityProfile.setQuality(quality);
+      }
+      if (withHDR) {
+        qualityProfile.setWithHDR(true);
+      }
+    }
+    HeadlessRenderer renderer = new HeadlessRenderer(prefs, resolutionProfile, qualityProfile);
+    renderer.setRandomSeed(seed);
+    renderer.setRenderThreads(threads);
+    renderer.setCheckpointInterval(checkpointMinutes * 60 * 1000L);
+    renderer.setResume(resume);
+    if (movieFilename != null) {
+      return sharded ? renderShardedMovie(prefs, renderer) : renderMovie(prefs, renderer);
+    }
+    return renderFlames(renderer);
+  }
+
+  private int renderFlames(HeadlessRenderer pRenderer) {
+    long t0 = System.currentTimeMillis();
+    int finished = 0, failed = 0;
+    for (String filename : flameFilenames) {
+      Job job = new Job();
+      job.setFlameFilename(filename);
+      if (outputFilename != null) {
+        job.setImageFilename(outputFilename);
+      }
+      if (outputDirectory != null) {
+        job.setImageFilename(new File(outputDirectory, new File(job.getImageFilename()).getName()).getPath());
+      }
+      print("START", filename);
+      try {
+        long t1 = System.currentTimeMillis();
+        pRenderer.renderJob(job, new CLIProgressUpdater(filename));
+        print("DONE", filename, job.getImageFilename(), String.valueOf(System.currentTimeMillis() - t1));
+        RenderStatistics statistics = job.getStatistics();
+        if (statistics != null) {
+          print("STATS", filename, String.valueOf(statistics.getSamples()), String.format(Locale.US, "%.0f", statistics.getSamplesPerSecond()),
+              String.format(Locale.US, "%.4f", statistics.getOutOfFrameRatio()), String.valueOf(statistics.getInvalidResets()));
+        }
+        finished++;
+      }
+      catch (Throwable ex) {
+        job.setLastError(ex);
+        print("ERROR", filename, job.getLastErrorMsg());
+        failed++;
+      }
+    }
+    print("SUMMARY", String.valueOf(finished), String.valueOf(failed), String.valueOf(System.currentTimeMillis() - t0));
+    return failed > 0 ? EXIT_RENDER_FAILED : EXIT_OK;
+  }
+
+  private int renderMovie(Prefs pPrefs, final HeadlessRenderer pRenderer) {
+    long t0 = System.currentTimeMillis();
+    FlameMovie movie = new JWFMovieReader(pPrefs).readMovie(movieFilename);
+    String output = outputFilename != null ? outputFilename : movieFilename;
+    if (outputDirectory != null) {
+      output = new File(outputDirectory, new File(output).getName()).getPath();
+    }
+    int startFrame = fromFrame < 1 ? 1 : fromFrame;
+    int endFrame = (toFrame < 1 || toFrame > movie.getFrameCount()) ? movie.getFrameCount() : toFrame;
+    int width = this.width > 0 ? this.width : movie.getFrameWidth();
+    int height = this.height > 0 ? this.height : movie.getFrameHeight();
+    final String outputPrefix = output;
+    final FlameMovie flameMovie = movie;
+    // the frames are rendered and saved concurrently, the results are reported in frame order
+    OrderedFrameRenderer frameRenderer = new OrderedFrameRenderer(pRenderer, movie, startFrame, endFrame, OrderedFrameRenderer.calcConcurrentFrames(pPrefs, width, height)) {
+
+      @Override
+      protected void frameStarted(int pFrame) {
+        print("START", movieFilename + "#" + pFrame);
+      }
+
+      @Override
+      protected Object prepareFrame(int pFrame, SimpleImage pImage) throws Exception {
+        pRenderer.saveMovieFrame(pImage, flameMovie, pFrame, outputPrefix);
+        return null;
+      }
+
+    };
+    int finished = 0, failed = 0;
+    try {
+      while (frameRenderer.hasNext()) {
+        int frame = frameRenderer.getNextFrame();
+        String frameName = movieFilename + "#" + frame;
+        try {
+          OrderedFrameRenderer.MovieFrame movieFrame = frameRenderer.next();
+          print("DONE", frameName, HeadlessRenderer.getMovieFrameFilename(movie, frame, output), String.valueOf(movieFrame.getElapsedMillis()));
+          finished++;
+        }
+        catch (Throwable ex) {
+          String msg = ex.getMessage() != null && ex.getMessage().length() > 0 ? ex.getMessage() : ex.toString();
+          print("ERROR", frameName, msg);
+          failed++;
+        }
+      }
+    }
+    finally {
+      frameRenderer.close();
+    }
+    print("SUMMARY", String.valueOf(finished), String.valueOf(failed), String.valueOf(System.currentTimeMillis() - t0));
+    return failed > 0 ? EXIT_RENDER_FAILED : EXIT_OK;
+  }
+
+  private int renderShardedMovie(Prefs pPrefs, final HeadlessRenderer pRenderer) throws Exception {
+    long t0 = System.currentTimeMillis();
+    final FlameMovie movie = new JWFMovieReader(pPrefs).readMovie(movieFilename);
+    String output = outputFilename != null ? outputFilename : movieFilename;
+    if (outputDirectory != null) {
+      output = new File(outputDirectory, new File(output).getName()).getPath();
+    }
+    final String outputPrefix = output;
+    int startFrame = fromFrame < 1 ? 1 : fromFrame;
+    int endFrame = (toFrame < 1 || toFrame > movie.getFrameCount()) ? movie.getFrameCount() : toFrame;
+    MovieRenderManifest manifest = new MovieRenderManifest(output, staleLockMinutes * 60 * 1000L);
+    int concurrentFrames = OrderedFrameRenderer.calcConcurrentFrames(pPrefs, pRenderer.getMovieFrameWidth(movie), pRenderer.getMovieFrameHeight(movie));
+    final int counts[] = new int[2];
+    ShardedMovieRenderer shardedRenderer = new ShardedMovieRenderer(pRenderer, movie, output, manifest, unitSize, concurrentFrames) {
+
+      @Override
+      protected void frameStarted(int pFrame) {
+        print("START", movieFilename + "#" + pFrame);
+      }
+
+      @Override
+      protected void frameSkipped(int pFrame) {
+        print("SKIP", movieFilename + "#" + pFrame, HeadlessRenderer.getMovieFrameFilename(movie, pFrame, outputPrefix));
+      }
+
+      @Override
+      protected void frameFinished(OrderedFrameRenderer.MovieFrame pFrame) {
+        print("DONE", movieFilename + "#" + pFrame.getFrame(), HeadlessRenderer.getMovieFrameFilename(movie, pFrame.getFrame(), outputPrefix), String.valueOf(pFrame.getElapsedMillis()));
+        counts[0]++;
+      }
+
+      @Override
+      protected void frameFailed(int pFrame, Throwable pError) {
+        String msg = pError.getMessage() != null && pError.getMessage().length() > 0 ? pError.getMessage() : pError.toString();
+        print("ERROR", movieFilename + "#" + pFrame, msg);
+        counts[1]++;
+      }
+
+    };
+    shardedRenderer.render(startFrame, endFrame);
+    // frames of units which are locked by other workers are neither finished nor failed
+    print("SUMMARY", String.valueOf(counts[0]), String.valueOf(counts[1]), String.valueOf(System.currentTimeMillis() - t0));
+    return counts[1] > 0 ? EXIT_RENDER_FAILED : EXIT_OK;
+  }
+
+  private synchronized void print(String... pFields) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < pFields.length; i++) {
+      if (i > 0) {
+        sb.append('\t');
+      }
+      // keep the records on one line
+      sb.append(pFields[i].replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+    }
+    out.println(sb.toString());
+    out.flush();
+  }
+
+  private class CLIProgressUpdater implements ProgressUpdater {
+    private final String name;
+    private int maxSteps;
+    private int lastPercent = -1;
+
+    public CLIProgressUpdater(String pName) {
+      name = pName;
+    }
+
+    @Override
+    public void initProgress(int pMaxSteps) {
+      maxSteps = pMaxSteps;
+    }
+
+    @Override
+    public void updateProgress(int pStep) {
+      if (maxSteps > 0) {
+        int percent = Math.min(100, (int) (100L * pStep / maxSteps));
+        if (percent != lastPercent) {
+          lastPercent = percent;
+          print("PROGRESS", name, String.valueOf(percent));
+        }
+      }
+    }
+
+  }
+
+}
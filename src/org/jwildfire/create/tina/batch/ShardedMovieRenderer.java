@@ -0,0 +1,216 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jwildfire.create.tina.animate.FlameMovie;
+import org.jwildfire.create.tina.animate.OrderedFrameRenderer;
+import org.jwildfire.image.SimpleImage;
+import org.jwildfire.io.ImageWriter;
+
+// Renders the frames of a movie as png images in work units of a fixed number of frames, the completion of the frames
+// is recorded in a MovieRenderManifest. Frames whose image exists and whose recorded hash matches the current frame
+// are skipped, so an interrupted render can be resumed, and several worker processes which share the output directory
+// can render the same movie at the same time (each one renders the units which are not locked by another worker).
+public class ShardedMovieRenderer {
+  public static final int DEFAULT_UNIT_SIZE = 10;
+
+  private final HeadlessRenderer renderer;
+  private final FlameMovie movie;
+  private final String outputFilename;
+  private final MovieRenderManifest manifest;
+  private final int unitSize;
+  private final int concurrentFrames;
+  private volatile boolean cancelSignalled;
+
+  public ShardedMovieRenderer(HeadlessRenderer pRenderer, FlameMovie pMovie, String pOutputFilename, MovieRenderManifest pManifest, int pUnitSize, int pConcurrentFrames) {
+    renderer = pRenderer;
+    movie = pMovie;
+    outputFilename = pOutputFilename;
+    manifest = pManifest;
+    unitSize = pUnitSize > 0 ? pUnitSize : DEFAULT_UNIT_SIZE;
+    concurrentFrames = pConcurrentFrames;
+  }
+
+  // called by a render thread
+  protected void frameStarted(int pFrame) {
+  }
+
+  // the image of the frame is up to date
+  protected void frameSkipped(int pFrame) {
+  }
+
+  protected void frameFinished(OrderedFrameRenderer.MovieFrame pFrame) {
+  }
+
+  protected void frameFailed(int pFrame, Throwable pError) {
+  }
+
+  // renders the missing frames of all units between pFromFrame and pToFrame (1-based, inclusive) which are not
+  // locked by other workers, returns the number of frames which are still missing (rendered by others or failed)
+  public int render(int pFromFrame, int pToFrame) throws Exception {
+    Timer heartbeat = new Timer("JWildfire-ShardHeartbeat", true);
+    try {
+      int missing = 0;
+      // units are aligned to the frame numbers, so workers with different frame ranges share them
+      for (int unitFrom = ((pFromFrame - 1) / unitSize) * unitSize + 1; unitFrom <= pToFrame && !cancelSignalled; unitFrom += unitSize) {
+        missing += renderUnit(unitFrom, unitFrom + unitSize - 1, Math.max(pFromFrame, unitFrom), Math.min(pToFrame, unitFrom + unitSize - 1), heartbeat);
+      }
+      return missing;
+    }
+    finally {
+      heartbeat.cancel();
+    }
+  }
+
+  private int renderUnit(final int pUnitFrom, final int pUnitTo, int pFromFrame, int pToFrame, Timer pHeartbeat) throws Exception {
+    Map<Integer, String> hashes = new HashMap<Integer, String>();
+    for (int frame = pFromFrame; frame <= pToFrame; frame++) {
+      hashes.put(frame, renderer.getMovieFrameHash(movie, frame));
+    }
+    if (getMissingFrames(manifest.readUnit(pUnitFrom, pUnitTo), hashes, pFromFrame, pToFrame).size() == 0) {
+      for (int frame = pFromFrame; frame <= pToFrame; frame++) {
+        frameSkipped(frame);
+      }
+      return 0;
+    }
+    if (!manifest.tryLock(pUnitFrom, pUnitTo)) {
+      return getMissingFrames(manifest.readUnit(pUnitFrom, pUnitTo), hashes, pFromFrame, pToFrame).size();
+    }
+    // set if another worker took over the lock, the rest of the unit is left to it
+    final AtomicBoolean lockLost = new AtomicBoolean();
+    TimerTask refreshLock = new TimerTask() {
+
+      @Override
+      public void run() {
+        if (!manifest.refreshLock(pUnitFrom, pUnitTo)) {
+          lockLost.set(true);
+          cancel();
+        }
+      }
+
+    };
+    pHeartbeat.schedule(refreshLock, MovieRenderManifest.HEARTBEAT_INTERVAL, MovieRenderManifest.HEARTBEAT_INTERVAL);
+    try {
+      // read again, the previous owner of the lock may have finished in the meantime
+      Map<Integer, String> finished = manifest.readUnit(pUnitFrom, pUnitTo);
+      List<Integer> missingFrames = getMissingFrames(finished, hashes, pFromFrame, pToFrame);
+      int frames[] = new int[missingFrames.size()];
+      for (int frame = pFromFrame; frame <= pToFrame; frame++) {
+        if (!missingFrames.contains(frame)) {
+          frameSkipped(frame);
+        }
+      }
+      for (int i = 0; i < frames.length; i++) {
+        frames[i] = missingFrames.get(i);
+        finished.remove(frames[i]);
+      }
+      OrderedFrameRenderer frameRenderer = new OrderedFrameRenderer(renderer, movie, frames, concurrentFrames) {
+
+        @Override
+        protected void frameStarted(int pFrame) {
+          ShardedMovieRenderer.this.frameStarted(pFrame);
+        }
+
+        // returns false if the lock was lost while the frame was rendered
+        @Override
+        protected Object prepareFrame(int pFrame, SimpleImage pImage) throws Exception {
+          // the image is only moved into place while this worker owns the unit, so a worker whose lock was taken over
+          // (e.g. after a long GC pause) does not overwrite the images of the new owner
+          File file = new File(HeadlessRenderer.getMovieFrameFilename(movie, pFrame, outputFilename));
+          File tmpFile = new File(manifest.getDirectory(), "frame-" + pFrame + "." + manifest.getWorkerId() + ".png");
+          new ImageWriter().saveImage(pImage, tmpFile.getAbsolutePath(), true);
+          if (!manifest.isLockOwner(pUnitFrom, pUnitTo)) {
+            tmpFile.delete();
+            lockLost.set(true);
+            return Boolean.FALSE;
+          }
+          MovieRenderManifest.replaceFile(tmpFile, file, new File(manifest.getDirectory(), "frame-" + pFrame + "." + manifest.getWorkerId() + ".bak.png"));
+          return Boolean.TRUE;
+        }
+
+      };
+      int missing = 0;
+      int done = 0;
+      try {
+        while (frameRenderer.hasNext()) {
+          if (cancelSignalled || lockLost.get()) {
+            frameRenderer.cancel();
+            missing += frames.length - done;
+            break;
+          }
+          int frame = frameRenderer.getNextFrame();
+          done++;
+          try {
+            OrderedFrameRenderer.MovieFrame movieFrame = frameRenderer.next();
+            if (!Boolean.TRUE.equals(movieFrame.getData())) {
+              missing++;
+              continue;
+            }
+            finished.put(frame, hashes.get(frame));
+            if (!manifest.writeUnit(pUnitFrom, pUnitTo, finished)) {
+              // not recorded, so the new owner of the unit renders the frame again
+              lockLost.set(true);
+              missing++;
+              continue;
+            }
+            frameFinished(movieFrame);
+          }
+          catch (Throwable ex) {
+            missing++;
+            frameFailed(frame, ex);
+          }
+        }
+      }
+      finally {
+        frameRenderer.close();
+      }
+      return missing;
+    }
+    finally {
+      refreshLock.cancel();
+      manifest.unlock(pUnitFrom, pUnitTo);
+    }
+  }
+
+  private List<Integer> getMissingFrames(Map<Integer, String> pFinished, Map<Integer, String> pHashes, int pFromFrame, int pToFrame) {
+    List<Integer> res = new ArrayList<Integer>();
+    for (int frame = pFromFrame; frame <= pToFrame; frame++) {
+      String hash = pFinished.get(frame);
+      if (hash == null || !hash.equals(pHashes.get(frame)) || !new File(HeadlessRenderer.getMovieFrameFilename(movie, frame, outputFilename)).exists()) {
+        res.add(frame);
+      }
+    }
+    return res;
+  }
+
+  public void setCancelSignalled(boolean pCancelSignalled) {
+    cancelSignalled = pCancelSignalled;
+  }
+
+  public boolean isCancelSignalled() {
+    return cancelSignalled;
+  }
+}
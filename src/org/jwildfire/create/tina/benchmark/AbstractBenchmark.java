@@ -0,0 +1,95 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.io.FlameReader;
+
+public abstract class AbstractBenchmark {
+  protected Prefs prefs;
+
+  // name used in the report, must not contain whitespace
+  public abstract String getName();
+
+  // unit of the operations returned by runIteration, e.g. "samples" or "pixels"
+  public abstract String getUnit();
+
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    prefs = pPrefs;
+  }
+
+  // called before each (warmup or measured) iteration, not included in the measured time
+  public void prepareIteration() throws Exception {
+  }
+
+  // performs the measured work and returns the number of operations done
+  public abstract long runIteration() throws Exception;
+
+  // time of the measured work of the last runIteration, if only a part of it is measured, -1: the whole runIteration
+  public long getMeasuredNanos() {
+    return -1;
+  }
+
+  public void tearDown() throws Exception {
+  }
+
+  protected static List<String> getFlameFilenames(BenchmarkOptions pOptions) {
+    List<String> res = new ArrayList<String>();
+    File dir = new File(pOptions.getFlamesDirectory());
+    File files[] = dir.listFiles();
+    if (files != null) {
+      Arrays.sort(files);
+      for (File file : files) {
+        if (file.isFile() && file.getName().toLowerCase().endsWith(".flame")) {
+          res.add(file.getAbsolutePath());
+          if (pOptions.getMaxFlames() > 0 && res.size() >= pOptions.getMaxFlames()) {
+            break;
+          }
+        }
+      }
+    }
+    if (res.size() == 0) {
+      throw new IllegalArgumentException("No flames found in <" + dir.getAbsolutePath() + ">");
+    }
+    return res;
+  }
+
+  protected List<Flame> loadFlames(BenchmarkOptions pOptions) {
+    List<Flame> res = new ArrayList<Flame>();
+    for (String filename : getFlameFilenames(pOptions)) {
+      List<Flame> flames = new FlameReader(prefs).readFlames(filename);
+      if (flames.size() > 0) {
+        res.add(flames.get(0));
+      }
+    }
+    return res;
+  }
+
+  protected static void prepareFlame(Flame pFlame, int pWidth, int pHeight) {
+    double wScl = (double) pWidth / (double) pFlame.getWidth();
+    double hScl = (double) pHeight / (double) pFlame.getHeight();
+    pFlame.setPixelsPerUnit((wScl + hScl) * 0.5 * pFlame.getPixelsPerUnit());
+    pFlame.setWidth(pWidth);
+    pFlame.setHeight(pHeight);
+  }
+}
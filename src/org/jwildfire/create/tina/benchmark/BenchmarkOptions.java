@@ -0,0 +1,85 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+public class BenchmarkOptions {
+  private String flamesDirectory = "resources/flames";
+  private int maxFlames = 0;
+  private int warmupIterations = 3;
+  private int iterations = 5;
+  private int width = 640;
+  private int height = 480;
+  // samples per flame of the render benchmarks
+  private long samples = 2000000;
+
+  public String getFlamesDirectory() {
+    return flamesDirectory;
+  }
+
+  public void setFlamesDirectory(String pFlamesDirectory) {
+    flamesDirectory = pFlamesDirectory;
+  }
+
+  public int getMaxFlames() {
+    return maxFlames;
+  }
+
+  public void setMaxFlames(int pMaxFlames) {
+    maxFlames = pMaxFlames;
+  }
+
+  public int getWarmupIterations() {
+    return warmupIterations;
+  }
+
+  public void setWarmupIterations(int pWarmupIterations) {
+    warmupIterations = pWarmupIterations;
+  }
+
+  public int getIterations() {
+    return iterations;
+  }
+
+  public void setIterations(int pIterations) {
+    iterations = pIterations;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public void setWidth(int pWidth) {
+    width = pWidth;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public void setHeight(int pHeight) {
+    height = pHeight;
+  }
+
+  // number of samples each flame is iterated by the iteration benchmarks, a fixed amount of work per measurement
+  public long getSamples() {
+    return samples;
+  }
+
+  public void setSamples(long pSamples) {
+    samples = pSamples;
+  }
+}
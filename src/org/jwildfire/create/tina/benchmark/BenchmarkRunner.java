@@ -0,0 +1,236 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.BaseMathLibType;
+import org.jwildfire.base.mathlib.MathLib;
+import org.jwildfire.create.tina.base.Shading;
+
+// Runs the benchmarks headless and writes a tab-separated report, which may be used as baseline of later runs:
+//   java -cp ... org.jwildfire.create.tina.benchmark.BenchmarkRunner [-report <file>] [-baseline <file>] [-flames <dir>] [-maxflames <n>] 
+//        [-warmup <n>] [-iterations <n>] [-size <width>x<height>] [-samples <n>] [-threads <n>] [benchmark name]...
+public class BenchmarkRunner {
+  private final BenchmarkOptions options = new BenchmarkOptions();
+  private final List<String> selectedBenchmarks = new ArrayList<String>();
+  private final PrintStream out;
+  private String reportFilename;
+  private String baselineFilename;
+  private int threads = -1;
+
+  public BenchmarkRunner(PrintStream pOut) {
+    out = pOut;
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    try {
+      BenchmarkRunner runner = new BenchmarkRunner(System.out);
+      runner.parseArgs(args);
+      runner.run();
+      System.exit(0);
+    }
+    catch (Throwable ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  public static List<AbstractBenchmark> createBenchmarks() {
+    List<AbstractBenchmark> res = new ArrayList<AbstractBenchmark>();
+    res.add(new XFormTransformBenchmark());
+    res.add(new FlameIterationBenchmark(Shading.FLAT));
+    res.add(new FlameIterationBenchmark(Shading.PSEUDO3D));
+    res.add(new FlameIterationBenchmark(Shading.BLUR));
+    res.add(new PostProcessingBenchmark(false));
+    res.add(new PostProcessingBenchmark(true));
+    res.add(new FlameReaderBenchmark());
+    res.add(new MathLibBenchmark(BaseMathLibType.FAST_MATH));
+    res.add(new MathLibBenchmark(BaseMathLibType.JAVA_MATH));
+    res.add(new MathLibBenchmark(BaseMathLibType.TABLE_MATH));
+    res.add(new MathLibDispatchBenchmark(true));
+    res.add(new MathLibDispatchBenchmark(false));
+    return res;
+  }
+
+  public void parseArgs(String[] pArgs) {
+    int i = 0;
+    while (i < pArgs.length) {
+      String arg = pArgs[i++];
+      if (arg.startsWith("-")) {
+        if (i >= pArgs.length) {
+          throw new IllegalArgumentException("Missing value of option <" + arg + ">");
+        }
+        String value = pArgs[i++];
+        if (arg.equals("-report")) {
+          reportFilename = value;
+        }
+        else if (arg.equals("-baseline")) {
+          baselineFilename = value;
+        }
+        else if (arg.equals("-flames")) {
+          options.setFlamesDirectory(value);
+        }
+        else if (arg.equals("-maxflames")) {
+          options.setMaxFlames(Integer.parseInt(value));
+        }
+        else if (arg.equals("-warmup")) {
+          options.setWarmupIterations(Integer.parseInt(value));
+        }
+        else if (arg.equals("-iterations")) {
+          options.setIterations(Integer.parseInt(value));
+        }
+        else if (arg.equals("-size")) {
+          String size[] = value.toLowerCase().split("x");
+          options.setWidth(Integer.parseInt(size[0].trim()));
+          options.setHeight(Integer.parseInt(size[1].trim()));
+        }
+        else if (arg.equals("-samples")) {
+          options.setSamples(Long.parseLong(value));
+        }
+        else if (arg.equals("-threads")) {
+          threads = Integer.parseInt(value);
+        }
+        else {
+          throw new IllegalArgumentException("Unknown option <" + arg + ">");
+        }
+      }
+      else {
+        selectedBenchmarks.add(arg);
+      }
+    }
+  }
+
+  public void run() throws Exception {
+    Prefs prefs = new Prefs();
+    prefs.loadFromFile();
+    if (threads > 0) {
+      prefs.setTinaRenderThreads(threads);
+    }
+    List<String> report = new ArrayList<String>();
+    report.add("# JWildfire benchmark report");
+    report.add("# java=" + System.getProperty("java.version") + " vm=" + System.getProperty("java.vm.name") + " os=" + System.getProperty("os.name") + " cpus=" + Runtime.getRuntime().availableProcessors());
+    report.add("# threads=" + prefs.getTinaRenderThreads() + " precision=" + prefs.getTinaRasterPointPrecision() + " random=" + prefs.getTinaRandomNumberGenerator() + " mathlib=" + MathLib.getBaseMathLibType());
+    report.add("# size=" + options.getWidth() + "x" + options.getHeight() + " warmup=" + options.getWarmupIterations() + " iterations=" + options.getIterations() + " samples=" + options.getSamples());
+    report.add("# name\tunit\tmedian/s\tmin/s\tmax/s\tstddev%");
+    for (String line : report) {
+      out.println(line);
+    }
+    Map<String, Double> baseline = baselineFilename != null ? readReport(baselineFilename) : null;
+
+    for (AbstractBenchmark benchmark : createBenchmarks()) {
+      if (selectedBenchmarks.size() > 0 && !selectedBenchmarks.contains(benchmark.getName())) {
+        continue;
+      }
+      benchmark.setUp(prefs, options);
+      try {
+        for (int i = 0; i < options.getWarmupIterations(); i++) {
+          benchmark.prepareIteration();
+          benchmark.runIteration();
+        }
+        double opsPerSec[] = new double[options.getIterations()];
+        for (int i = 0; i < options.getIterations(); i++) {
+          benchmark.prepareIteration();
+          long t0 = System.nanoTime();
+          long ops = benchmark.runIteration();
+          long t1 = System.nanoTime();
+          long nanos = benchmark.getMeasuredNanos() >= 0 ? benchmark.getMeasuredNanos() : t1 - t0;
+          opsPerSec[i] = (double) ops * 1.0e9 / (double) Math.max(nanos, 1);
+        }
+        String line = formatResult(benchmark, opsPerSec);
+        report.add(line);
+        if (baseline != null && baseline.containsKey(benchmark.getName())) {
+          double base = baseline.get(benchmark.getName());
+          double median = median(opsPerSec);
+          line += "\t" + String.format(Locale.US, "%+.1f%%", (median - base) / base * 100.0) + " vs. baseline";
+        }
+        out.println(line);
+      }
+      finally {
+        benchmark.tearDown();
+      }
+    }
+
+    if (reportFilename != null) {
+      PrintWriter writer = new PrintWriter(new FileWriter(reportFilename));
+      try {
+        for (String line : report) {
+          writer.println(line);
+        }
+      }
+      finally {
+        writer.close();
+      }
+    }
+  }
+
+  private String formatResult(AbstractBenchmark pBenchmark, double pOpsPerSec[]) {
+    double min = Double.MAX_VALUE, max = 0.0, sum = 0.0;
+    for (double value : pOpsPerSec) {
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+      sum += value;
+    }
+    double mean = sum / pOpsPerSec.length;
+    double var = 0.0;
+    for (double value : pOpsPerSec) {
+      var += (value - mean) * (value - mean);
+    }
+    double stddev = pOpsPerSec.length > 1 ? Math.sqrt(var / (pOpsPerSec.length - 1)) : 0.0;
+    return pBenchmark.getName() + "\t" + pBenchmark.getUnit() + "\t" + String.format(Locale.US, "%.1f", median(pOpsPerSec)) + "\t" + String.format(Locale.US, "%.1f", min) + "\t" + String.format(Locale.US, "%.1f", max) + "\t" + String.format(Locale.US, "%.1f", mean > 0 ? stddev / mean * 100.0 : 0.0);
+  }
+
+  private static double median(double pValues[]) {
+    double sorted[] = pValues.clone();
+    Arrays.sort(sorted);
+    int n = sorted.length;
+    return n % 2 == 1 ? sorted[n / 2] : 0.5 * (sorted[n / 2 - 1] + sorted[n / 2]);
+  }
+
+  private static Map<String, Double> readReport(String pFilename) throws Exception {
+    Map<String, Double> res = new HashMap<String, Double>();
+    BufferedReader reader = new BufferedReader(new FileReader(pFilename));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#")) {
+          continue;
+        }
+        String fields[] = line.split("\t");
+        if (fields.length >= 3) {
+          res.put(fields[0], Double.parseDouble(fields[2]));
+        }
+      }
+    }
+    finally {
+      reader.close();
+    }
+    return res;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.util.List;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.Shading;
+import org.jwildfire.create.tina.base.raster.RasterAccumulationMode;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.create.tina.render.RenderInfo;
+
+// Iteration throughput of the render threads (samples/sec), each flame is rendered with a fixed number of samples by a
+// batch render (thread-local rasters) and only the time of the render threads is measured, not the filtering.
+// The flames are rendered with the given shading, so the shading threads can be compared against the flat one.
+public class FlameIterationBenchmark extends AbstractBenchmark {
+  private final Shading shading;
+  private List<Flame> flames;
+  private BenchmarkOptions options;
+  private long measuredNanos;
+
+  public FlameIterationBenchmark(Shading pShading) {
+    shading = pShading;
+  }
+
+  @Override
+  public String getName() {
+    return shading == Shading.FLAT ? "FlameRenderer.iterate" : "FlameRenderer.iterate." + shading.toString().toLowerCase();
+  }
+
+  @Override
+  public String getUnit() {
+    return "samples";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    // the render benchmark must not depend on the accumulation mode of the preferences
+    Prefs renderPrefs = new Prefs();
+    renderPrefs.assign(pPrefs);
+    renderPrefs.setTinaRasterAccumulationMode(RasterAccumulationMode.THREAD_LOCAL);
+    super.setUp(renderPrefs, pOptions);
+    options = pOptions;
+    flames = loadFlames(pOptions);
+    for (Flame flame : flames) {
+      prepareFlame(flame, pOptions.getWidth(), pOptions.getHeight());
+      flame.getShadingInfo().setShading(shading);
+      flame.setSampleDensity((double) pOptions.getSamples() / ((double) pOptions.getWidth() * (double) pOptions.getHeight()));
+    }
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    long samples = 0;
+    measuredNanos = 0;
+    for (Flame flame : flames) {
+      FlameRenderer renderer = new FlameRenderer(flame.makeCopy(), prefs, false, false);
+      renderer.renderFlame(new RenderInfo(options.getWidth(), options.getHeight()));
+      samples += renderer.getIterationSamples();
+      measuredNanos += renderer.getIterationNanos();
+    }
+    return samples;
+  }
+
+  @Override
+  public long getMeasuredNanos() {
+    return measuredNanos;
+  }
+}
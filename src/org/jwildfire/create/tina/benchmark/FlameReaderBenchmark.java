@@ -0,0 +1,65 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.Tools;
+import org.jwildfire.create.tina.io.FlameReader;
+
+// Parsing of the flame files (the files are read into memory once, so only the parsing is measured)
+public class FlameReaderBenchmark extends AbstractBenchmark {
+  private static final int MIN_FLAMES_PER_ITERATION = 200;
+  private final List<String> flameXMLs = new ArrayList<String>();
+
+  @Override
+  public String getName() {
+    return "FlameReader.readFlames";
+  }
+
+  @Override
+  public String getUnit() {
+    return "flames";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    super.setUp(pPrefs, pOptions);
+    for (String filename : getFlameFilenames(pOptions)) {
+      flameXMLs.add(Tools.readUTF8Textfile(filename));
+    }
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    long res = 0;
+    FlameReader reader = new FlameReader(prefs);
+    while (res < MIN_FLAMES_PER_ITERATION) {
+      long count = 0;
+      for (String xml : flameXMLs) {
+        count += reader.readFlamesfromXML(xml).size();
+      }
+      if (count == 0) {
+        throw new IllegalStateException("No flames could be parsed");
+      }
+      res += count;
+    }
+    return res;
+  }
+}
@@ -0,0 +1,251 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.List;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.MathLib;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.io.FlameReader;
+import org.jwildfire.create.tina.random.RandomGeneratorType;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.create.tina.render.RenderInfo;
+import org.jwildfire.create.tina.render.RenderedFlame;
+import org.jwildfire.image.SimpleImage;
+import org.jwildfire.io.ImageReader;
+import org.jwildfire.io.ImageWriter;
+
+// Renders the flames deterministically and compares them with golden images, to detect regressions of optimizations:
+//   java -cp ... org.jwildfire.create.tina.benchmark.GoldenImageRunner [-flames <dir>] [-golden <dir>] [-update]
+//        [-maxflames <n>] [-size <width>x<height>] [-quality <n>] [-seed <n>]
+// For each flame the golden directory (which is part of the source tree) holds <name>.png and <name>.txt (raster
+// checksum and render settings), which are (re)created by -update. A flame passes if the raster is bit-identical,
+// otherwise the images are compared and the differences are reported.
+// Golden images are only comparable for the same number of threads and the same random generator, so both are fixed
+// here and do not depend on the preferences.
+public class GoldenImageRunner {
+  private static final int THREADS = 2;
+  private static final RandomGeneratorType RANDOM_GENERATOR = RandomGeneratorType.XOROSHIRO;
+  private final BenchmarkOptions options = new BenchmarkOptions();
+  private final PrintStream out;
+  private String goldenDirectory = "resources/golden";
+  private boolean update;
+  private double quality = 50.0;
+  private long seed = 1;
+
+  public GoldenImageRunner(PrintStream pOut) {
+    out = pOut;
+    options.setWidth(320);
+    options.setHeight(240);
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    try {
+      GoldenImageRunner runner = new GoldenImageRunner(System.out);
+      runner.parseArgs(args);
+      if (!runner.update && !runner.hasGoldenImages()) {
+        System.err.println("No golden images in <" + new File(runner.goldenDirectory).getAbsolutePath() + ">, create them first with -update "
+            + "(ant regression-update) on a known good build and commit them");
+        System.exit(3);
+      }
+      System.exit(runner.run() ? 0 : 2);
+    }
+    catch (Throwable ex) {
+      ex.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  public void parseArgs(String[] pArgs) {
+    int i = 0;
+    while (i < pArgs.length) {
+      String arg = pArgs[i++];
+      if (arg.equals("-update")) {
+        update = true;
+        continue;
+      }
+      if (i >= pArgs.length) {
+        throw new IllegalArgumentException("Missing value of option <" + arg + ">");
+      }
+      String value = pArgs[i++];
+      if (arg.equals("-flames")) {
+        options.setFlamesDirectory(value);
+      }
+      else if (arg.equals("-golden")) {
+        goldenDirectory = value;
+      }
+      else if (arg.equals("-maxflames")) {
+        options.setMaxFlames(Integer.parseInt(value));
+      }
+      else if (arg.equals("-size")) {
+        String size[] = value.toLowerCase().split("x");
+        options.setWidth(Integer.parseInt(size[0].trim()));
+        options.setHeight(Integer.parseInt(size[1].trim()));
+      }
+      else if (arg.equals("-quality")) {
+        quality = Double.parseDouble(value);
+      }
+      else if (arg.equals("-seed")) {
+        seed = Long.parseLong(value);
+      }
+      else {
+        throw new IllegalArgumentException("Unknown option <" + arg + ">");
+      }
+    }
+  }
+
+  public boolean hasGoldenImages() {
+    File files[] = new File(goldenDirectory).listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (file.isFile() && file.getName().endsWith(".txt") && !file.getName().equals("README.txt")) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // returns true if all flames passed
+  public boolean run() throws Exception {
+    Prefs prefs = new Prefs();
+    prefs.loadFromFile();
+    File goldenDir = new File(goldenDirectory);
+    if (update && !goldenDir.exists() && !goldenDir.mkdirs()) {
+      throw new IllegalArgumentException("Could not create directory <" + goldenDir.getAbsolutePath() + ">");
+    }
+    String settings = getSettings();
+    out.println("# " + settings);
+    int passed = 0, failed = 0, created = 0;
+    for (String filename : AbstractBenchmark.getFlameFilenames(options)) {
+      String name = new File(filename).getName();
+      name = name.substring(0, name.lastIndexOf('.'));
+      File goldenImageFile = new File(goldenDir, name + ".png");
+      File goldenChecksumFile = new File(goldenDir, name + ".txt");
+      try {
+        RenderedFlame res = render(prefs, filename);
+        String checksum = Long.toHexString(res.getRasterChecksum());
+        if (update || !goldenChecksumFile.exists()) {
+          if (!update) {
+            out.println("MISSING\t" + name);
+            failed++;
+            continue;
+          }
+          new ImageWriter().saveImage(res.getImage(), goldenImageFile.getAbsolutePath(), true);
+          writeChecksum(goldenChecksumFile, checksum, settings);
+          out.println("UPDATED\t" + name + "\t" + checksum);
+          created++;
+        }
+        else {
+          String golden[] = readChecksum(goldenChecksumFile);
+          if (!settings.equals(golden[1])) {
+            out.println("FAIL\t" + name + "\tsettings differ: " + golden[1]);
+            failed++;
+          }
+          else if (checksum.equals(golden[0])) {
+            out.println("PASS\t" + name);
+            passed++;
+          }
+          else {
+            out.println("FAIL\t" + name + "\t" + compareImages(res.getImage(), new ImageReader().loadImage(goldenImageFile.getAbsolutePath())));
+            failed++;
+          }
+        }
+      }
+      catch (Throwable ex) {
+        out.println("ERROR\t" + name + "\t" + ex.toString());
+        failed++;
+      }
+    }
+    out.println("SUMMARY\tpassed=" + passed + "\tfailed=" + failed + "\tupdated=" + created);
+    return failed == 0;
+  }
+
+  // the settings which affect the raster, recorded in the golden files
+  private String getSettings() {
+    return "threads=" + THREADS + " random=" + RANDOM_GENERATOR + " mathlib=" + MathLib.getBaseMathLibType() + " seed=" + seed + " size=" + options.getWidth() + "x" + options.getHeight() + " quality=" + quality;
+  }
+
+  private RenderedFlame render(Prefs pPrefs, String pFilename) {
+    List<Flame> flames = new FlameReader(pPrefs).readFlames(pFilename);
+    if (flames.size() == 0) {
+      throw new IllegalArgumentException("File <" + pFilename + "> contains no flames");
+    }
+    Flame flame = flames.get(0);
+    AbstractBenchmark.prepareFlame(flame, options.getWidth(), options.getHeight());
+    flame.setSampleDensity(quality);
+    FlameRenderer renderer = new FlameRenderer(flame, pPrefs, false, false);
+    renderer.setRenderThreads(THREADS);
+    renderer.setDeterministic(seed, RANDOM_GENERATOR);
+    return renderer.renderFlame(new RenderInfo(options.getWidth(), options.getHeight()));
+  }
+
+  private String compareImages(SimpleImage pImage, SimpleImage pGoldenImage) {
+    if (pImage.getImageWidth() != pGoldenImage.getImageWidth() || pImage.getImageHeight() != pGoldenImage.getImageHeight()) {
+      return "size differs: " + pImage.getImageWidth() + "x" + pImage.getImageHeight() + " <> " + pGoldenImage.getImageWidth() + "x" + pGoldenImage.getImageHeight();
+    }
+    int diffPixels = 0, maxDiff = 0;
+    for (int i = 0; i < pImage.getImageHeight(); i++) {
+      for (int j = 0; j < pImage.getImageWidth(); j++) {
+        int argb1 = pImage.getARGBValue(j, i);
+        int argb2 = pGoldenImage.getARGBValue(j, i);
+        if (argb1 != argb2) {
+          diffPixels++;
+          for (int shift = 0; shift < 32; shift += 8) {
+            int diff = Math.abs(((argb1 >> shift) & 0xff) - ((argb2 >> shift) & 0xff));
+            if (diff > maxDiff) {
+              maxDiff = diff;
+            }
+          }
+        }
+      }
+    }
+    return "raster differs, pixels differing: " + diffPixels + ", max channel difference: " + maxDiff;
+  }
+
+  private static void writeChecksum(File pFile, String pChecksum, String pSettings) throws Exception {
+    PrintWriter writer = new PrintWriter(new FileWriter(pFile));
+    try {
+      writer.println(pChecksum);
+      writer.println(pSettings);
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  // returns the checksum and the settings
+  private static String[] readChecksum(File pFile) throws Exception {
+    BufferedReader reader = new BufferedReader(new FileReader(pFile));
+    try {
+      String checksum = reader.readLine();
+      String settings = reader.readLine();
+      return new String[] { checksum != null ? checksum.trim() : "", settings != null ? settings.trim() : "" };
+    }
+    finally {
+      reader.close();
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Random;
+
+import org.jwildfire.base.mathlib.BaseMathLib;
+import org.jwildfire.base.mathlib.BaseMathLibType;
+import org.jwildfire.base.mathlib.SinCos;
+
+// Compares a BaseMathLib implementation with java.lang.Math on random arguments and checks the documented error bounds:
+//   java -cp ... org.jwildfire.create.tina.benchmark.MathLibAccuracyCheck [FAST_MATH|JAVA_MATH|TABLE_MATH] [samples]
+public class MathLibAccuracyCheck {
+  // bounds of TableMathLibImpl, see there
+  // errors of sin/cos and log grow with the argument (resp. the result), those bounds are scaled by (1 + |a|) resp. (1 + |log(value)|)
+  private static final double MAX_TRIG_ERROR = 1.0e-15;
+  private static final double MAX_ATAN_ERROR = 2.0e-15;
+  private static final double MAX_EXP_REL_ERROR = 1.0e-15;
+  private static final double MAX_LOG_ERROR = 1.0e-15;
+  private static final double MAX_POW_REL_ERROR = 1.0e-13;
+
+  private final BaseMathLib lib;
+  private final PrintStream out;
+  private final Random random = new Random(42);
+  private boolean failed;
+
+  public MathLibAccuracyCheck(BaseMathLibType pType, PrintStream pOut) {
+    lib = pType.createInstance();
+    out = pOut;
+  }
+
+  public static void main(String[] args) {
+    BaseMathLibType type = args.length > 0 ? BaseMathLibType.valueOf(args[0]) : BaseMathLibType.TABLE_MATH;
+    int samples = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+    boolean ok = new MathLibAccuracyCheck(type, System.out).run(samples);
+    System.exit(ok ? 0 : 1);
+  }
+
+  // returns true if all errors are within the bounds
+  public boolean run(int pSamples) {
+    failed = false;
+    SinCos sinCos = new SinCos();
+    double sinErr = 0.0, cosErr = 0.0, sinCosErr = 0.0, atan2Err = 0.0, atanErr = 0.0, asinErr = 0.0, acosErr = 0.0;
+    double expErr = 0.0, logErr = 0.0, log10Err = 0.0, powErr = 0.0;
+    for (int i = 0; i < pSamples; i++) {
+      // mostly small angles, as used by the variations, and a few large ones
+      double a = i % 10 == 0 ? randomRange(-1.0e6, 1.0e6) : randomRange(-100.0, 100.0);
+      double trigScale = 1.0 + Math.abs(a);
+      sinErr = Math.max(sinErr, Math.abs(lib.sin(a) - Math.sin(a)) / trigScale);
+      cosErr = Math.max(cosErr, Math.abs(lib.cos(a) - Math.cos(a)) / trigScale);
+      lib.sincos(a, sinCos);
+      sinCosErr = Math.max(sinCosErr, Math.max(Math.abs(sinCos.sin - Math.sin(a)), Math.abs(sinCos.cos - Math.cos(a))) / trigScale);
+
+      double x = randomRange(-10.0, 10.0), y = randomRange(-10.0, 10.0);
+      atan2Err = Math.max(atan2Err, Math.abs(lib.atan2(y, x) - Math.atan2(y, x)));
+      double t = i % 2 == 0 ? randomRange(-2.0, 2.0) : randomRange(-1.0e4, 1.0e4);
+      atanErr = Math.max(atanErr, Math.abs(lib.atan(t) - Math.atan(t)));
+      double s = randomRange(-1.0, 1.0);
+      asinErr = Math.max(asinErr, Math.abs(lib.asin(s) - Math.asin(s)));
+      acosErr = Math.max(acosErr, Math.abs(lib.acos(s) - Math.acos(s)));
+
+      double e = randomRange(-700.0, 700.0);
+      expErr = Math.max(expErr, relError(lib.exp(e), Math.exp(e)));
+      double l = Math.exp(randomRange(-700.0, 700.0));
+      double logScale = 1.0 + Math.abs(Math.log(l));
+      logErr = Math.max(logErr, Math.abs(lib.log(l) - Math.log(l)) / logScale);
+      log10Err = Math.max(log10Err, Math.abs(lib.log10(l) - Math.log10(l)) / logScale);
+
+      double base = randomRange(0.0, 10.0), power = randomRange(-5.0, 5.0);
+      powErr = Math.max(powErr, relError(lib.pow(base, power), Math.pow(base, power)) / (1.0 + Math.abs(power * Math.log(base))));
+    }
+    // signed zeros and the axes, where the sign of the result must match (e.g. atan2(-0.0, -1.0) = -PI)
+    double axes[] = { 0.0, -0.0, 1.0, -1.0 };
+    for (double y : axes) {
+      for (double x : axes) {
+        atan2Err = Math.max(atan2Err, Math.abs(lib.atan2(y, x) - Math.atan2(y, x)));
+      }
+    }
+    out.println("# " + lib.getClass().getSimpleName() + ", " + pSamples + " samples");
+    report("sin (scaled)", sinErr, MAX_TRIG_ERROR);
+    report("cos (scaled)", cosErr, MAX_TRIG_ERROR);
+    report("sincos (scaled)", sinCosErr, MAX_TRIG_ERROR);
+    report("atan2", atan2Err, MAX_ATAN_ERROR);
+    report("atan", atanErr, MAX_ATAN_ERROR);
+    report("asin", asinErr, MAX_ATAN_ERROR);
+    report("acos", acosErr, MAX_ATAN_ERROR);
+    report("exp (relative)", expErr, MAX_EXP_REL_ERROR);
+    report("log (scaled)", logErr, MAX_LOG_ERROR);
+    report("log10 (scaled)", log10Err, MAX_LOG_ERROR);
+    report("pow (relative)", powErr, MAX_POW_REL_ERROR);
+    return !failed;
+  }
+
+  private double randomRange(double pMin, double pMax) {
+    return pMin + (pMax - pMin) * random.nextDouble();
+  }
+
+  private static double relError(double pValue, double pExpected) {
+    return pExpected != 0.0 ? Math.abs((pValue - pExpected) / pExpected) : Math.abs(pValue);
+  }
+
+  private void report(String pName, double pError, double pMaxError) {
+    boolean ok = pError <= pMaxError;
+    if (!ok) {
+      failed = true;
+    }
+    out.println(String.format(Locale.US, "%-16s max error: %.3e, bound: %.1e %s", pName, pError, pMaxError, ok ? "OK" : "FAILED"));
+  }
+}
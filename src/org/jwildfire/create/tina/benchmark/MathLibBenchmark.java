@@ -0,0 +1,75 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.BaseMathLib;
+import org.jwildfire.base.mathlib.BaseMathLibType;
+import org.jwildfire.base.mathlib.SinCos;
+
+// Throughput of a BaseMathLib implementation, each operation calls the functions most used by the variations once
+public class MathLibBenchmark extends AbstractBenchmark {
+  private static final int OPERATIONS_PER_ITERATION = 2000000;
+  private final BaseMathLibType type;
+  private BaseMathLib lib;
+  private final SinCos sinCos = new SinCos();
+  // consumed results, so the JIT can not drop the calls
+  private double checksum;
+
+  public MathLibBenchmark(BaseMathLibType pType) {
+    type = pType;
+  }
+
+  @Override
+  public String getName() {
+    return "MathLib." + type.toString().toLowerCase();
+  }
+
+  @Override
+  public String getUnit() {
+    return "ops";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    super.setUp(pPrefs, pOptions);
+    lib = type.createInstance();
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    double a = 0.1;
+    double sum = 0.0;
+    for (int i = 0; i < OPERATIONS_PER_ITERATION; i++) {
+      a += 0.37;
+      if (a > 50.0) {
+        a -= 100.0;
+      }
+      lib.sincos(a, sinCos);
+      sum += sinCos.sin + sinCos.cos + lib.atan2(a, 1.3) + lib.exp(a * 0.1) + lib.log(a * a + 1.0) + lib.pow(a * a + 1.0, 0.7) + lib.sqrt(a * a);
+    }
+    checksum += sum;
+    return OPERATIONS_PER_ITERATION;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (Double.isNaN(checksum)) {
+      System.err.println(getName() + ": invalid result");
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.BaseMathLib;
+import org.jwildfire.base.mathlib.BaseMathLibType;
+import org.jwildfire.base.mathlib.MathLib;
+
+// The math of a few typical variations (julia, swirl, polar, disc, waves), called either through MathLib (static final
+// implementation) or through a swappable field like MathLib used to do, to measure the cost of the dispatch
+public class MathLibDispatchBenchmark extends AbstractBenchmark {
+  private static final int POINTS_PER_ITERATION = 2000000;
+  private static BaseMathLib swappableLib;
+  private final boolean staticDispatch;
+  // consumed results, so the JIT can not drop the calls
+  private double checksum;
+
+  public MathLibDispatchBenchmark(boolean pStaticDispatch) {
+    staticDispatch = pStaticDispatch;
+  }
+
+  @Override
+  public String getName() {
+    return "MathLibDispatch." + (staticDispatch ? "static" : "field");
+  }
+
+  @Override
+  public String getUnit() {
+    return "points";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    super.setUp(pPrefs, pOptions);
+    if (!staticDispatch) {
+      // the field could be swapped at any time, so the call sites see several implementations
+      for (BaseMathLibType type : BaseMathLibType.values()) {
+        swappableLib = type.createInstance();
+        for (int i = 0; i < 20000; i++) {
+          checksum += transformField(0.1 * i, 0.3);
+        }
+      }
+      swappableLib = MathLib.getBaseMathLibType().createInstance();
+    }
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    double x = 0.1, y = -0.2;
+    double sum = 0.0;
+    for (int i = 0; i < POINTS_PER_ITERATION; i++) {
+      x += 0.0137;
+      if (x > 2.0) {
+        x -= 4.0;
+      }
+      y = 0.9 * y + 0.1 * x;
+      sum += staticDispatch ? transformStatic(x, y) : transformField(x, y);
+    }
+    checksum += sum;
+    return POINTS_PER_ITERATION;
+  }
+
+  private double transformStatic(double x, double y) {
+    double r2 = x * x + y * y;
+    // julia
+    double a = MathLib.atan2(x, y) * 0.5;
+    double r = MathLib.sqrt(MathLib.sqrt(r2));
+    double sum = r * MathLib.cos(a) + r * MathLib.sin(a);
+    // swirl
+    double c1 = MathLib.sin(r2);
+    double c2 = MathLib.cos(r2);
+    sum += c1 * x - c2 * y + c2 * x + c1 * y;
+    // polar
+    double rp = MathLib.sqrt(r2);
+    sum += MathLib.atan2(y, x) * MathLib.M_1_PI + rp - 1.0;
+    // disc
+    double d = MathLib.M_PI * rp;
+    sum += a * MathLib.M_1_PI * (MathLib.sin(d) + MathLib.cos(d));
+    // waves
+    sum += x + 0.3 * MathLib.sin(y * 2.0) + y + 0.2 * MathLib.sin(x * 3.0);
+    // exponential
+    sum += MathLib.exp(x - 1.0) * MathLib.cos(MathLib.M_PI * y) + MathLib.log(r2 + 1.0);
+    return sum;
+  }
+
+  private double transformField(double x, double y) {
+    BaseMathLib lib = swappableLib;
+    double r2 = x * x + y * y;
+    // julia
+    double a = lib.atan2(x, y) * 0.5;
+    double r = lib.sqrt(lib.sqrt(r2));
+    double sum = r * lib.cos(a) + r * lib.sin(a);
+    // swirl
+    double c1 = lib.sin(r2);
+    double c2 = lib.cos(r2);
+    sum += c1 * x - c2 * y + c2 * x + c1 * y;
+    // polar
+    double rp = lib.sqrt(r2);
+    sum += lib.atan2(y, x) * MathLib.M_1_PI + rp - 1.0;
+    // disc
+    double d = MathLib.M_PI * rp;
+    sum += a * MathLib.M_1_PI * (lib.sin(d) + lib.cos(d));
+    // waves
+    sum += x + 0.3 * lib.sin(y * 2.0) + y + 0.2 * lib.sin(x * 3.0);
+    // exponential
+    sum += lib.exp(x - 1.0) * lib.cos(MathLib.M_PI * y) + lib.log(r2 + 1.0);
+    return sum;
+  }
+
+  @Override
+  public void tearDown() throws Exception {
+    if (Double.isNaN(checksum)) {
+      System.err.println(getName() + ": invalid result");
+    }
+  }
+}
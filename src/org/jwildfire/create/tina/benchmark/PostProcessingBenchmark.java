@@ -0,0 +1,77 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import java.util.List;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.render.FlameRenderThread;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.create.tina.render.RenderInfo;
+
+// Log-density filter and gamma correction (optionally preceded by the DE filter) of an iterated raster
+public class PostProcessingBenchmark extends AbstractBenchmark {
+  private static final long ITERATION_TIME = 1000;
+  private final boolean withDEFilter;
+  private Flame flame;
+  private BenchmarkOptions options;
+  private FlameRenderer renderer;
+  private long sampleCount;
+
+  public PostProcessingBenchmark(boolean pWithDEFilter) {
+    withDEFilter = pWithDEFilter;
+  }
+
+  @Override
+  public String getName() {
+    return withDEFilter ? "Flam3DEFilter+LogDensityFilter" : "LogDensityFilter";
+  }
+
+  @Override
+  public String getUnit() {
+    return "pixels";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    super.setUp(pPrefs, pOptions);
+    options = pOptions;
+    flame = loadFlames(pOptions).get(0);
+    prepareFlame(flame, pOptions.getWidth(), pOptions.getHeight());
+    flame.setDeFilterEnabled(withDEFilter);
+    if (withDEFilter && flame.getDeFilterMaxRadius() <= 0) {
+      flame.setDeFilterMaxRadius(0.9);
+    }
+  }
+
+  @Override
+  public void prepareIteration() throws Exception {
+    // the DE filter replaces the raster, so every iteration needs a fresh one
+    renderer = new FlameRenderer(flame.makeCopy(), prefs, false, false);
+    List<FlameRenderThread> threads = renderer.startRenderFlame(new RenderInfo(options.getWidth(), options.getHeight()));
+    Thread.sleep(ITERATION_TIME);
+    renderer.cancelThreads(threads);
+    sampleCount = renderer.calcSampleCount();
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    renderer.finishRenderFlame(sampleCount);
+    return (long) options.getWidth() * (long) options.getHeight();
+  }
+}
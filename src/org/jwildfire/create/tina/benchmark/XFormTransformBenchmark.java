@@ -0,0 +1,102 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.benchmark;
+
+import org.jwildfire.base.Prefs;
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.Layer;
+import org.jwildfire.create.tina.base.XForm;
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+import org.jwildfire.create.tina.random.RandomGeneratorFactory;
+import org.jwildfire.create.tina.render.FlameRenderer;
+import org.jwildfire.create.tina.variation.FlameTransformationContext;
+import org.jwildfire.create.tina.variation.VariationFuncList;
+
+// XForm.transformPoint with a few representative variation mixes
+public class XFormTransformBenchmark extends AbstractBenchmark {
+  private static final String VARIATION_MIXES[][] = {
+      { "linear3D" },
+      { "spherical", "julia" },
+      { "swirl", "horseshoe", "polar" },
+      { "bubble", "eyefish", "cylinder", "sinusoidal" },
+      { "julian", "juliascope", "waves2", "curl" } };
+  private static final int POINTS_PER_ITERATION = 2000000;
+
+  private FlameTransformationContext ctx;
+  private XForm xForms[];
+  private final XYZPoint affineT = new XYZPoint();
+  private final XYZPoint varT = new XYZPoint();
+  private final XYZPoint p = new XYZPoint();
+
+  @Override
+  public String getName() {
+    return "XForm.transformPoint";
+  }
+
+  @Override
+  public String getUnit() {
+    return "points";
+  }
+
+  @Override
+  public void setUp(Prefs pPrefs, BenchmarkOptions pOptions) throws Exception {
+    super.setUp(pPrefs, pOptions);
+    Flame flame = new Flame();
+    Layer layer = flame.getFirstLayer();
+    AbstractRandomGenerator randGen = RandomGeneratorFactory.getInstance(pPrefs.getTinaRandomNumberGenerator(), 0);
+    ctx = new FlameTransformationContext(new FlameRenderer(flame, pPrefs, false, false), randGen);
+    xForms = new XForm[VARIATION_MIXES.length];
+    for (int i = 0; i < VARIATION_MIXES.length; i++) {
+      XForm xForm = new XForm();
+      xForm.setWeight(1.0);
+      xForm.setCoeff00(0.7);
+      xForm.setCoeff11(0.7);
+      xForm.setCoeff20(0.1 * i);
+      for (String name : VARIATION_MIXES[i]) {
+        xForm.addVariation(1.0 / VARIATION_MIXES[i].length, VariationFuncList.getVariationFuncInstance(name, true));
+      }
+      layer.getXForms().add(xForm);
+      xForms[i] = xForm;
+    }
+    layer.refreshModWeightTables(ctx);
+  }
+
+  @Override
+  public void prepareIteration() throws Exception {
+    p.clear();
+    p.x = 0.3;
+    p.y = -0.2;
+    p.color = 0.5;
+  }
+
+  @Override
+  public long runIteration() throws Exception {
+    int pointsPerXForm = POINTS_PER_ITERATION / xForms.length;
+    for (XForm xForm : xForms) {
+      for (int i = 0; i < pointsPerXForm; i++) {
+        xForm.transformPoint(ctx, affineT, varT, p, p);
+        // keep the point inside a sane range, so all xForms do comparable work
+        if (Double.isNaN(p.x) || Double.isNaN(p.y) || p.x * p.x + p.y * p.y > 1.0e6) {
+          p.x = 0.3;
+          p.y = -0.2;
+        }
+      }
+    }
+    return (long) pointsPerXForm * (long) xForms.length;
+  }
+}
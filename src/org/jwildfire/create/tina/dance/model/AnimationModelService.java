@@ -19,11 +19,13 @@ package org.jwildfire.create.tina.dance.model;
 import java.lang.reflect.Field;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jwildfire.base.Tools;
 import org.jwildfire.create.tina.animate.AnimAware;
 import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.Layer;
 import org.jwildfire.create.tina.base.ShadingInfo;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.palette.RGBPalette;
@@ -312,36 +314,29 @@ public class AnimationModelService {
     return res;
   }
 
-  private enum ModifyPropMode {
-    SET, ADD
-  }
-
-  private static class ModifyPropertyVisitor implements PropertyVisitor {
+  // finds the owner of the property (by identity, in the resolved flame) and its field or name
+  private static class ResolvePropertyVisitor implements PropertyVisitor {
     private final List<String> path;
-    protected double value;
-    private boolean hasFound = false;
-    protected ModifyPropMode mode = ModifyPropMode.SET;
+    private Object owner;
+    private Field field;
+    private String propName;
 
-    public ModifyPropertyVisitor(FlamePropertyPath pPath, double pValue) {
+    public ResolvePropertyVisitor(FlamePropertyPath pPath) {
       path = pPath.getPathComponents();
-      value = pValue;
     }
 
-    public boolean accept(PlainProperty pProperty) {
+    private boolean accept(PlainProperty pProperty) {
       AbstractProperty currNode = pProperty;
-      hasFound = currNode.getDepth() == path.size();
-      for (int i = path.size() - 1; hasFound && i >= 0; i--) {
+      if (currNode.getDepth() != path.size()) {
+        return false;
+      }
+      for (int i = path.size() - 1; i >= 0; i--) {
         if (!currNode.getName().equals(path.get(i))) {
-          hasFound = false;
-          break;
+          return false;
         }
         currNode = currNode.getParent();
       }
-      return hasFound;
-    }
-
-    public boolean isHasFound() {
-      return hasFound;
+      return true;
     }
 
     @Override
@@ -353,71 +348,8 @@ public class AnimationModelService {
     public boolean accept(Object pOwner, Field pField, PlainProperty pProperty) {
       boolean accepted = accept(pProperty);
       if (accepted) {
-        if (pField.getType() == Double.class || pField.getType() == double.class) {
-          try {
-            switch (mode) {
-              case SET:
-                pField.setDouble(pOwner, value);
-                break;
-              case ADD:
-                Double o = pField.getDouble(pOwner);
-                if (o == null) {
-                  o = 0.0;
-                }
-                o += value;
-                pField.setDouble(pOwner, o);
-                break;
-            }
-          }
-          catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
-          }
-          catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-          }
-        }
-        else if (pField.getType() == Integer.class || pField.getType() == int.class) {
-          try {
-            switch (mode) {
-              case SET:
-                pField.setInt(pOwner, Tools.FTOI(value));
-                break;
-              case ADD:
-                Integer o = pField.getInt(pOwner);
-                if (o == null) {
-                  o = 0;
-                }
-                o += Tools.FTOI(value);
-                System.out.println(o);
-                pField.setInt(pOwner, o);
-                break;
-            }
-          }
-          catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
-          }
-          catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-          }
-        }
-        else if (pField.getType() == Boolean.class || pField.getType() == boolean.class) {
-          try {
-            switch (mode) {
-              case SET:
-                pField.setBoolean(pOwner, Tools.FTOI(value) != 0);
-                break;
-            }
-          }
-          catch (IllegalArgumentException e) {
-            throw new RuntimeException(e);
-          }
-          catch (IllegalAccessException e) {
-            throw new RuntimeException(e);
-          }
-        }
-        else {
-          throw new RuntimeException("Unsupporded property type <" + pField.getType() + ">");
-        }
+        owner = pOwner;
+        field = pField;
       }
       return accepted;
     }
@@ -426,7 +358,8 @@ public class AnimationModelService {
     public boolean accept(VariationFunc pVarFunc, PlainProperty pProperty) {
       boolean accepted = accept(pProperty);
       if (accepted) {
-        pVarFunc.setParameter(pProperty.getName(), value);
+        owner = pVarFunc;
+        propName = pProperty.getName();
       }
       return accepted;
     }
@@ -435,46 +368,209 @@ public class AnimationModelService {
     public boolean accept(XForm pXForm, String pPropName, PlainProperty pProperty) {
       boolean accepted = accept(pProperty);
       if (accepted) {
-        if (pPropName.equals(PROPNAME_ORIGIN_X)) {
-          XFormTransformService.localTranslate(pXForm, value, 0, false);
-        }
-        else if (pPropName.equals(PROPNAME_ORIGIN_Y)) {
-          XFormTransformService.localTranslate(pXForm, 0, value, false);
-        }
-        else if (pPropName.equals(PROPNAME_ANGLE)) {
-          XFormTransformService.rotate(pXForm, value, false);
-        }
-        else if (pPropName.equals(PROPNAME_ZOOM)) {
-          XFormTransformService.scale(pXForm, value, true, true, false);
+        owner = pXForm;
+        propName = pPropName;
+      }
+      return accepted;
+    }
+
+  }
+
+  // locates an object of the flame structure by its position, so it can be found in copies of the flame
+  private static class OwnerLocator {
+    private static final int FLAME = 0;
+    private static final int SHADING = 1;
+    private static final int GRADIENT = 2;
+    private static final int XFORM = 3;
+    private static final int VARIATION = 4;
+    private static final int VARIATION_FUNC = 5;
+    private final int kind;
+    private final int layerIdx;
+    private final boolean finalXForm;
+    private final int xFormIdx;
+    private final int variationIdx;
+
+    private OwnerLocator(int pKind, int pLayerIdx, boolean pFinalXForm, int pXFormIdx, int pVariationIdx) {
+      kind = pKind;
+      layerIdx = pLayerIdx;
+      finalXForm = pFinalXForm;
+      xFormIdx = pXFormIdx;
+      variationIdx = pVariationIdx;
+    }
+
+    public static OwnerLocator create(Flame pFlame, Object pOwner) {
+      if (pOwner == pFlame) {
+        return new OwnerLocator(FLAME, -1, false, -1, -1);
+      }
+      if (pOwner == pFlame.getShadingInfo()) {
+        return new OwnerLocator(SHADING, -1, false, -1, -1);
+      }
+      for (int i = 0; i < pFlame.getLayers().size(); i++) {
+        Layer layer = pFlame.getLayers().get(i);
+        if (pOwner == layer.getPalette()) {
+          return new OwnerLocator(GRADIENT, i, false, -1, -1);
         }
-        else if (pPropName.equals(PROPNAME_POST_ORIGIN_X)) {
-          XFormTransformService.localTranslate(pXForm, value, 0, true);
+        for (int f = 0; f < 2; f++) {
+          List<XForm> xForms = f == 0 ? layer.getXForms() : layer.getFinalXForms();
+          for (int j = 0; j < xForms.size(); j++) {
+            XForm xForm = xForms.get(j);
+            if (pOwner == xForm) {
+              return new OwnerLocator(XFORM, i, f > 0, j, -1);
+            }
+            for (int k = 0; k < xForm.getVariationCount(); k++) {
+              Variation variation = xForm.getVariation(k);
+              if (pOwner == variation) {
+                return new OwnerLocator(VARIATION, i, f > 0, j, k);
+              }
+              else if (pOwner == variation.getFunc()) {
+                return new OwnerLocator(VARIATION_FUNC, i, f > 0, j, k);
+              }
+            }
+          }
         }
-        else if (pPropName.equals(PROPNAME_POST_ORIGIN_Y)) {
-          XFormTransformService.localTranslate(pXForm, 0, value, true);
+      }
+      throw new RuntimeException("Owner <" + pOwner + "> not found");
+    }
+
+    public Object locate(Flame pFlame) {
+      switch (kind) {
+        case FLAME:
+          return pFlame;
+        case SHADING:
+          return pFlame.getShadingInfo();
+        case GRADIENT:
+          return pFlame.getLayers().get(layerIdx).getPalette();
+        default: {
+          Layer layer = pFlame.getLayers().get(layerIdx);
+          XForm xForm = (finalXForm ? layer.getFinalXForms() : layer.getXForms()).get(xFormIdx);
+          switch (kind) {
+            case XFORM:
+              return xForm;
+            case VARIATION:
+              return xForm.getVariation(variationIdx);
+            default:
+              return xForm.getVariation(variationIdx).getFunc();
+          }
         }
-        else if (pPropName.equals(PROPNAME_POST_ANGLE)) {
-          XFormTransformService.rotate(pXForm, value, true);
+      }
+    }
+  }
+
+  private static class FieldSetter extends FlamePropertySetter {
+    private final OwnerLocator locator;
+    private final Field field;
+    private final Class<?> type;
+
+    public FieldSetter(OwnerLocator pLocator, Field pField) {
+      locator = pLocator;
+      field = pField;
+      type = pField.getType();
+      if (type != Double.class && type != double.class && type != Integer.class && type != int.class && type != Boolean.class && type != boolean.class) {
+        throw new RuntimeException("Unsupporded property type <" + type + ">");
+      }
+    }
+
+    @Override
+    public void setValue(Flame pFlame, double pValue) {
+      Object owner = locator.locate(pFlame);
+      try {
+        if (type == Double.class || type == double.class) {
+          field.setDouble(owner, pValue);
         }
-        else if (pPropName.equals(PROPNAME_POST_ZOOM)) {
-          XFormTransformService.scale(pXForm, value, true, true, true);
+        else if (type == Integer.class || type == int.class) {
+          field.setInt(owner, Tools.FTOI(pValue));
         }
         else {
-          throw new RuntimeException("Virtual property <" + pPropName + "> not supported");
+          field.setBoolean(owner, Tools.FTOI(pValue) != 0);
         }
       }
-      return accepted;
+      catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      }
     }
+  }
+
+  private static class VariationParamSetter extends FlamePropertySetter {
+    private final OwnerLocator locator;
+    private final String name;
 
+    public VariationParamSetter(OwnerLocator pLocator, String pName) {
+      locator = pLocator;
+      name = pName;
+    }
+
+    @Override
+    public void setValue(Flame pFlame, double pValue) {
+      ((VariationFunc) locator.locate(pFlame)).setParameter(name, pValue);
+    }
   }
 
-  public static void setFlameProperty(Flame pFlame, FlamePropertyPath pPath, double pValue) {
+  private static class XFormPropertySetter extends FlamePropertySetter {
+    private final OwnerLocator locator;
+    private final int propIdx;
+
+    public XFormPropertySetter(OwnerLocator pLocator, String pPropName) {
+      locator = pLocator;
+      propIdx = Arrays.asList(ADD_XFORM_PROPS).indexOf(pPropName);
+      if (propIdx < 0) {
+        throw new RuntimeException("Virtual property <" + pPropName + "> not supported");
+      }
+    }
+
+    @Override
+    public void setValue(Flame pFlame, double pValue) {
+      XForm xForm = (XForm) locator.locate(pFlame);
+      // same order as ADD_XFORM_PROPS
+      switch (propIdx) {
+        case 0:
+          XFormTransformService.localTranslate(xForm, pValue, 0, false);
+          break;
+        case 1:
+          XFormTransformService.localTranslate(xForm, 0, pValue, false);
+          break;
+        case 2:
+          XFormTransformService.rotate(xForm, pValue, false);
+          break;
+        case 3:
+          XFormTransformService.scale(xForm, pValue, true, true, false);
+          break;
+        case 4:
+          XFormTransformService.localTranslate(xForm, pValue, 0, true);
+          break;
+        case 5:
+          XFormTransformService.localTranslate(xForm, 0, pValue, true);
+          break;
+        case 6:
+          XFormTransformService.rotate(xForm, pValue, true);
+          break;
+        default:
+          XFormTransformService.scale(xForm, pValue, true, true, true);
+      }
+    }
+  }
+
+  // resolves the property once, the setter may be applied to all flames with the structure of pFlame
+  public static FlamePropertySetter createPropertySetter(Flame pFlame, FlamePropertyPath pPath) {
     PropertyModel res = new PropertyModel(null, "flame", pFlame.getClass());
-    ModifyPropertyVisitor visitor = new ModifyPropertyVisitor(pPath, pValue);
+    ResolvePropertyVisitor visitor = new ResolvePropertyVisitor(pPath);
     visitModel(res, pFlame, visitor);
-    if (!visitor.isHasFound()) {
+    if (visitor.owner == null) {
       throw new RuntimeException("Property <" + pPath.getPath() + "> not found");
     }
+    OwnerLocator locator = OwnerLocator.create(pFlame, visitor.owner);
+    if (visitor.field != null) {
+      return new FieldSetter(locator, visitor.field);
+    }
+    else if (visitor.owner instanceof VariationFunc) {
+      return new VariationParamSetter(locator, visitor.propName);
+    }
+    else {
+      return new XFormPropertySetter(locator, visitor.propName);
+    }
+  }
+
+  public static void setFlameProperty(Flame pFlame, FlamePropertyPath pPath, double pValue) {
+    createPropertySetter(pFlame, pPath).setValue(pFlame, pValue);
   }
 
 }
@@ -0,0 +1,27 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.dance.model;
+
+import org.jwildfire.create.tina.base.Flame;
+
+// Sets one animated property of a flame. It is resolved once for a flame by AnimationModelService.createPropertySetter(),
+// and may be applied to any flame of the same structure (e. g. copies of it), so no reflective search is needed per frame.
+public abstract class FlamePropertySetter {
+
+  public abstract void setValue(Flame pFlame, double pValue);
+
+}
@@ -16,31 +16,122 @@
 */
 package org.jwildfire.create.tina.dance.motion;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.dance.DancingFlame;
 import org.jwildfire.create.tina.dance.DancingFlameProject;
 import org.jwildfire.create.tina.dance.model.AnimationModelService;
+import org.jwildfire.create.tina.dance.model.FlamePropertySetter;
 
 public class DanceFlameTransformer {
+  private static final int MAX_COMPILED_FLAMES = 64;
   private final DancingFlameProject project;
+  // compiled motion links of the flames of the project, by identity
+  private final Map<Flame, CompiledFlame> compiledFlames = new IdentityHashMap<Flame, CompiledFlame>();
+
+  // the motions of a flame and the setters of the links which refer to it, valid as long as neither the flame
+  // (compared with a snapshot) nor the motion links of the project change
+  private static class CompiledFlame {
+    private final Flame snapshot;
+    private final List<Object> linkSignature;
+    private final List<Motion> motions;
+    private final Map<MotionLink, FlamePropertySetter> setters = new HashMap<MotionLink, FlamePropertySetter>();
+
+    public CompiledFlame(DancingFlameProject pProject, Flame pFlame, List<Object> pLinkSignature) {
+      snapshot = pFlame.makeCopy();
+      linkSignature = pLinkSignature;
+      motions = pProject.getMotions(pFlame);
+      for (Motion motion : pProject.getMotions()) {
+        for (MotionLink link : motion.getMotionLinks()) {
+          if (link.getProperyPath().getFlame().isEqual(pFlame)) {
+            setters.put(link, AnimationModelService.createPropertySetter(pFlame, link.getProperyPath()));
+          }
+        }
+      }
+    }
+
+    public boolean isValid(Flame pFlame, List<Object> pLinkSignature) {
+      return linkSignature.equals(pLinkSignature) && pFlame.isEqual(snapshot);
+    }
+  }
 
   public DanceFlameTransformer(DancingFlameProject pProject) {
     project = pProject;
   }
 
+  // identities of all motions, links and linked flames, cheap to compare each frame
+  private List<Object> createLinkSignature() {
+    List<Object> res = new ArrayList<Object>();
+    for (Motion motion : project.getMotions()) {
+      res.add(new IdentityKey(motion));
+      for (MotionLink link : motion.getMotionLinks()) {
+        res.add(new IdentityKey(link));
+        res.add(new IdentityKey(link.getProperyPath().getFlame()));
+      }
+    }
+    return res;
+  }
+
+  private static class IdentityKey {
+    private final Object object;
+
+    public IdentityKey(Object pObject) {
+      object = pObject;
+    }
+
+    @Override
+    public boolean equals(Object pOther) {
+      return pOther instanceof IdentityKey && ((IdentityKey) pOther).object == object;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(object);
+    }
+  }
+
+  private CompiledFlame getCompiledFlame(Flame pFlame, List<Object> pLinkSignature) {
+    CompiledFlame res = compiledFlames.get(pFlame);
+    if (res == null || !res.isValid(pFlame, pLinkSignature)) {
+      // flames which were removed from the project are not tracked, so just start again
+      if (compiledFlames.size() >= MAX_COMPILED_FLAMES) {
+        compiledFlames.clear();
+      }
+      res = new CompiledFlame(project, pFlame, pLinkSignature);
+      compiledFlames.put(pFlame, res);
+    }
+    return res;
+  }
+
   public Flame createTransformedFlame(DancingFlame pFlame, short pFFTData[], long pTime, int pFPS) {
-    Flame res = pFlame.getFlame().makeCopy();
-    List<Motion> motions = project.getMotions(res);
-    Flame refFlame = res.makeCopy();
+    List<Object> linkSignature = createLinkSignature();
+    // the flame (of the project) which res is a copy of, only those are compiled
+    Flame source = pFlame.getFlame();
+    Flame compiledSource = source;
+    CompiledFlame compiled = getCompiledFlame(source, linkSignature);
+    Flame res = source.makeCopy();
+    List<Motion> motions = compiled.motions;
 
     for (FlamePreprocessor preprocessor : project.getPreprocessors()) {
       if (preprocessor.isActive(pTime, pFPS)) {
-        res = preprocessor.preprocessFlame(project, res).makeCopy();
+        Flame preprocessed = preprocessor.preprocessFlame(project, res);
+        // the result may be shared (e. g. a flame of the project), so it must not be modified
+        if (preprocessed != res) {
+          source = preprocessed;
+          res = preprocessed.makeCopy();
+        }
         if (preprocessor instanceof FlameMotionPreprocessor) {
           motions = ((FlameMotionPreprocessor) preprocessor).preprocessMotions(project, motions);
-          refFlame = res.makeCopy();
+          // a preprocessor which returns its input (e. g. an invalid flame index) keeps the compiled source flame
+          if (source != compiledSource) {
+            compiled = getCompiledFlame(source, linkSignature);
+            compiledSource = source;
+          }
         }
       }
     }
@@ -66,8 +157,9 @@ public class DanceFlameTransformer {
           }
         }
         for (MotionLink link : motion.getMotionLinks()) {
-          if (link.getProperyPath().getFlame().isEqual(refFlame)) {
-            AnimationModelService.setFlameProperty(res, link.getProperyPath(), value);
+          FlamePropertySetter setter = compiled.setters.get(link);
+          if (setter != null) {
+            setter.setValue(res, value);
           }
         }
       }
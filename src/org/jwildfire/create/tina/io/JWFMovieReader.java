@@ -22,6 +22,8 @@ import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_FRAME_COUNT;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_FRAME_HEIGHT;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_FRAME_MORPH_COUNT;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_FRAME_WIDTH;
+import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_MOTION_BLUR_LENGTH;
+import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_MOTION_BLUR_TIME_STEPS;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_OUTPUT_FORMAT;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_QUALITY;
 import static org.jwildfire.create.tina.io.JWFMovieWriter.ATTR_SCRIPT_GLOBAL;
@@ -175,5 +177,11 @@ public class JWFMovieReader {
     if ((hs = atts.get(ATTR_QUALITY)) != null) {
       pMovie.setQuality(Integer.parseInt(hs));
     }
+    if ((hs = atts.get(ATTR_MOTION_BLUR_LENGTH)) != null) {
+      pMovie.setMotionBlurLength(Double.parseDouble(hs));
+    }
+    if ((hs = atts.get(ATTR_MOTION_BLUR_TIME_STEPS)) != null) {
+      pMovie.setMotionBlurTimeSteps(Integer.parseInt(hs));
+    }
   }
 }
@@ -41,6 +41,8 @@ public class JWFMovieWriter {
   public static final String ATTR_FRAME_MORPH_COUNT = "frame_morph_count";
   public static final String ATTR_FRAME_WIDTH = "frame_width";
   public static final String ATTR_MOVIE_VERSION = "movie_version";
+  public static final String ATTR_MOTION_BLUR_LENGTH = "motion_blur_length";
+  public static final String ATTR_MOTION_BLUR_TIME_STEPS = "motion_blur_time_steps";
   public static final String ATTR_OUTPUT_FORMAT = "output_format";
   public static final String ATTR_SCRIPT_GLOBAL = "script_global";
   public static final String ATTR_SCRIPT_XFORM = "script_xform";
@@ -66,6 +68,8 @@ public class JWFMovieWriter {
     attrList.add(xb.createAttr(ATTR_COLOR_OVERSAMPLING, pMovie.getColorOversampling()));
     attrList.add(xb.createAttr(ATTR_SPATIAL_OVERSAMPLING, pMovie.getSpatialOversampling()));
     attrList.add(xb.createAttr(ATTR_QUALITY, pMovie.getQuality()));
+    attrList.add(xb.createAttr(ATTR_MOTION_BLUR_LENGTH, pMovie.getMotionBlurLength()));
+    attrList.add(xb.createAttr(ATTR_MOTION_BLUR_TIME_STEPS, pMovie.getMotionBlurTimeSteps()));
     xb.beginElement(TAG_JWF_MOVIE, attrList);
     for (FlameMoviePart part : pMovie.getParts()) {
       addPart(xb, part);
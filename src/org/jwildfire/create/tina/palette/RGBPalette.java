@@ -101,6 +101,18 @@ public class RGBPalette implements Assignable<RGBPalette>, Serializable {
     return res != null ? res : BLACK;
   }
 
+  // palettes with equal keys create equal render palettes
+  public int[] createRenderPaletteKey(int pWhiteLevel) {
+    transformColors();
+    int res[] = new int[PALETTE_SIZE + 1];
+    for (int i = 0; i < PALETTE_SIZE; i++) {
+      RGBColor color = transformedColors.get(i);
+      res[i] = color != null ? (color.getRed() << 16) | (color.getGreen() << 8) | color.getBlue() : -1;
+    }
+    res[PALETTE_SIZE] = pWhiteLevel;
+    return res;
+  }
+
   public RenderColor[] createRenderPalette(int pWhiteLevel) {
     transformColors();
     RenderColor res[] = new RenderColor[PALETTE_SIZE];
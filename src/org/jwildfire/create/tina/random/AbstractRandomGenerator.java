@@ -22,11 +22,14 @@ public abstract class AbstractRandomGenerator {
   private double buffer[] = new double[40960];
   private int bufferIdx;
 
+  protected static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
   public double random() {
+    // keep the default path free of the switch
+    if (status == RandGenStatus.DEFAULT) {
+      return getNext();
+    }
     switch (status) {
-      case DEFAULT: {
-        return getNext();
-      }
       case RECORDING: {
         double res = getNext();
         buffer[bufferIdx++] = res;
@@ -57,4 +60,17 @@ public abstract class AbstractRandomGenerator {
 
   public abstract void randomize(long pSeed);
 
+  // seeds the pStreamIdx-th stream derived from pSeed, equal arguments always give the same sequence
+  public void randomize(long pSeed, int pStreamIdx) {
+    randomize(mixSeed(pSeed + pStreamIdx * GOLDEN_GAMMA));
+  }
+
+  // SplitMix64 finalizer, turns similar seeds (e.g. consecutive numbers) into unrelated ones
+  protected static long mixSeed(long pSeed) {
+    long z = pSeed;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
 }
@@ -22,7 +22,7 @@ import java.util.Map;
 public class RandomGeneratorFactory {
   private static Map<String, AbstractRandomGenerator> generatorMap = new HashMap<String, AbstractRandomGenerator>();
 
-  public static AbstractRandomGenerator getInstance(RandomGeneratorType pType, int pThreadId) {
+  public static synchronized AbstractRandomGenerator getInstance(RandomGeneratorType pType, int pThreadId) {
     String key = pType.toString() + "#" + pThreadId;
     AbstractRandomGenerator res = generatorMap.get(key);
     if (res == null) {
@@ -37,4 +37,9 @@ public class RandomGeneratorFactory {
   public static AbstractRandomGenerator getInstance(RandomGeneratorType pType) {
     return getInstance(pType, 0);
   }
+
+  // creates a new (not shared) generator, the stream is determined by the master seed and the stream index only
+  public static AbstractRandomGenerator getInstance(RandomGeneratorType pType, long pMasterSeed, int pStreamIdx) {
+    return pType.createInstance(pMasterSeed, pStreamIdx);
+  }
 }
@@ -50,14 +50,34 @@ public enum RandomGeneratorType {
       return JavaInternalRandomGenerator.class;
     }
 
+  },
+
+  XOROSHIRO {
+
+    @Override
+    protected Class<? extends AbstractRandomGenerator> getGeneratorClass() {
+      return XoroshiroRandomGenerator.class;
+    }
+
   };
 
   protected abstract Class<? extends AbstractRandomGenerator> getGeneratorClass();
 
   public AbstractRandomGenerator createInstance() {
-    AbstractRandomGenerator res;
+    AbstractRandomGenerator res = newInstance();
+    res.randomize((long) (Integer.MAX_VALUE * Math.random()));
+    return res;
+  }
+
+  public AbstractRandomGenerator createInstance(long pSeed, int pStreamIdx) {
+    AbstractRandomGenerator res = newInstance();
+    res.randomize(pSeed, pStreamIdx);
+    return res;
+  }
+
+  private AbstractRandomGenerator newInstance() {
     try {
-      res = getGeneratorClass().newInstance();
+      return getGeneratorClass().newInstance();
     }
     catch (InstantiationException e) {
       throw new RuntimeException(e);
@@ -65,8 +85,6 @@ public enum RandomGeneratorType {
     catch (IllegalAccessException e) {
       throw new RuntimeException(e);
     }
-    res.randomize((long) (Integer.MAX_VALUE * Math.random()));
-    return res;
   }
 
   public static RandomGeneratorType getDefaultValue() {
@@ -0,0 +1,72 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.random;
+
+// xoroshiro128+ by David Blackman and Sebastiano Vigna, http://xoroshiro.di.unimi.it/, seeded by SplitMix64.
+// Streams of different threads are derived from a common seed by jumping 2^64 steps ahead, so they never overlap.
+public class XoroshiroRandomGenerator extends AbstractRandomGenerator {
+  private static final double DOUBLE_UNIT = 1.0 / (double) (1L << 53);
+  private static final long JUMP[] = { 0xbeac0467eba5facbL, 0xd86b048b86aa9922L };
+  private long s0 = 0x9e3779b97f4a7c15L;
+  private long s1 = 0xbf58476d1ce4e5b9L;
+
+  @Override
+  public void randomize(long pSeed) {
+    s0 = mixSeed(pSeed);
+    s1 = mixSeed(pSeed + GOLDEN_GAMMA);
+    if (s0 == 0 && s1 == 0) {
+      s1 = GOLDEN_GAMMA;
+    }
+  }
+
+  @Override
+  public void randomize(long pSeed, int pStreamIdx) {
+    randomize(pSeed);
+    for (int i = 0; i < pStreamIdx; i++) {
+      jump();
+    }
+  }
+
+  @Override
+  public double getNext() {
+    long t0 = s0;
+    long t1 = s1;
+    long res = t0 + t1;
+    t1 ^= t0;
+    s0 = Long.rotateLeft(t0, 55) ^ t1 ^ (t1 << 14);
+    s1 = Long.rotateLeft(t1, 36);
+    return (res >>> 11) * DOUBLE_UNIT;
+  }
+
+  // equivalent to 2^64 calls of getNext()
+  private void jump() {
+    long t0 = 0;
+    long t1 = 0;
+    for (int i = 0; i < JUMP.length; i++) {
+      for (int b = 0; b < 64; b++) {
+        if ((JUMP[i] & (1L << b)) != 0) {
+          t0 ^= s0;
+          t1 ^= s1;
+        }
+        getNext();
+      }
+    }
+    s0 = t0;
+    s1 = t1;
+  }
+
+}
@@ -21,6 +21,7 @@ import java.util.List;
 
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.Layer;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
 import org.jwildfire.create.tina.palette.RenderColor;
 import org.jwildfire.create.tina.random.AbstractRandomGenerator;
 import org.jwildfire.create.tina.variation.FlameTransformationContext;
@@ -30,22 +31,26 @@ public class AbstractIterationState implements Serializable {
 
   protected final FlameRenderThread renderThread;
   protected final FlameRenderer renderer;
+  protected final AbstractRaster raster;
   protected final Layer layer;
   protected final FlameTransformationContext ctx;
   protected final AbstractRandomGenerator randGen;
   protected final List<IterationObserver> observers;
   protected final RenderColor[] colorMap;
   protected final double paletteIdxScl;
+  protected final transient RenderStatistics statistics;
 
   public AbstractIterationState(FlameRenderThread pRenderThread, FlameRenderer pRenderer, Flame pFlame, Layer pLayer, FlameTransformationContext pCtx, AbstractRandomGenerator pRandGen) {
     renderThread = pRenderThread;
     renderer = pRenderer;
+    raster = pRenderThread.getRaster();
     layer = pLayer;
     ctx = pCtx;
     randGen = pRandGen;
     observers = renderer.getIterationObservers();
-    colorMap = pLayer.getPalette().createRenderPalette(pFlame.getWhiteLevel());
+    colorMap = renderer.createRenderPalette(pLayer.getPalette(), pFlame.getWhiteLevel());
     paletteIdxScl = colorMap.length - 2;
+    statistics = pRenderThread.getStatistics();
   }
 
 }
@@ -0,0 +1,54 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+
+// Maps points to the camera view. FlameRenderer.initView() chooses the implementation once per render, so the
+// projection does not need to check the camera settings for each sample. Instances are shared by all render threads
+// and must not have any mutable state.
+public abstract class AbstractProjection {
+  private final double cosa, sina;
+  private final double rcX, rcY;
+  private final double camW, camH;
+
+  protected AbstractProjection(FlameRenderer pRenderer) {
+    cosa = pRenderer.cosa;
+    sina = pRenderer.sina;
+    rcX = pRenderer.rcX;
+    rcY = pRenderer.rcY;
+    camW = pRenderer.camW;
+    camH = pRenderer.camH;
+  }
+
+  // may change the x and y coordinate of pPoint, returns false if the point is outside the view
+  public abstract boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen);
+
+  // rotates the point by the camera roll and checks the bounds of the view
+  protected final boolean projectView(double pX, double pY, XYZProjectedPoint pProjectedPoint) {
+    pProjectedPoint.x = pX * cosa + pY * sina + rcX;
+    if ((pProjectedPoint.x < 0) || (pProjectedPoint.x > camW))
+      return false;
+    pProjectedPoint.y = pY * cosa - pX * sina + rcY;
+    if ((pProjectedPoint.y < 0) || (pProjectedPoint.y > camH))
+      return false;
+    return true;
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import static org.jwildfire.base.mathlib.MathLib.EPSILON;
+import static org.jwildfire.base.mathlib.MathLib.exp;
+
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+
+// camera settings of the 3D projections, the camera matrix is flattened into fields (the third row is always 0)
+public abstract class AbstractProjection3D extends AbstractProjection {
+  protected final double m00, m10;
+  protected final double m01, m11, m21;
+  protected final double m02, m12, m22;
+  protected final double camPerspective;
+  protected final double camZ;
+  protected final boolean dimishZ;
+  private final double dimishZAmount;
+
+  protected AbstractProjection3D(FlameRenderer pRenderer) {
+    super(pRenderer);
+    double matrix[][] = pRenderer.cameraMatrix;
+    m00 = matrix[0][0];
+    m10 = matrix[1][0];
+    m01 = matrix[0][1];
+    m11 = matrix[1][1];
+    m21 = matrix[2][1];
+    m02 = matrix[0][2];
+    m12 = matrix[1][2];
+    m22 = matrix[2][2];
+    Flame flame = pRenderer.viewFlame;
+    camPerspective = flame.getCamPerspective();
+    camZ = flame.getCamZ();
+    dimishZAmount = flame.getDimishZ();
+    dimishZ = dimishZAmount > EPSILON;
+  }
+
+  // fades points behind the camera z
+  protected final void calcIntensity(double pZDist, XYZProjectedPoint pProjectedPoint) {
+    if (dimishZ && pZDist > 0.0) {
+      pProjectedPoint.intensity = exp(-pZDist * pZDist * dimishZAmount);
+    }
+    else {
+      pProjectedPoint.intensity = 1.0;
+    }
+  }
+
+}
@@ -6,6 +6,7 @@ import org.jwildfire.base.Prefs;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XYZPoint;
 import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
 
 public class DrawFocusPointFlameRenderer extends FlameRenderer {
 
@@ -14,35 +15,44 @@ public class DrawFocusPointFlameRenderer extends FlameRenderer {
   }
 
   @Override
-  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint) {
-    double z = pPoint.z;
-    double px = cameraMatrix[0][0] * pPoint.x + cameraMatrix[1][0] * pPoint.y /*+ cameraMatrix[2][0] * z*/;
-    double py = cameraMatrix[0][1] * pPoint.x + cameraMatrix[1][1] * pPoint.y + cameraMatrix[2][1] * z;
-    double pz = cameraMatrix[0][2] * pPoint.x + cameraMatrix[1][2] * pPoint.y + cameraMatrix[2][2] * z;
-    double zr = 1.0 - flame.getCamPerspective() * pz;
-
-    double xdist = (px - flame.getFocusX());
-    double ydist = (py - flame.getFocusY());
-    double zdist = (pz - flame.getFocusZ());
-    double dist = sqrt(xdist * xdist + ydist * ydist + zdist * zdist);
-
-    if (dist > 0.12 + flame.getCamDOFArea()) {
-      // dont draw outer points
-      pPoint.x = 10000 + 10000 * Math.random();
-      pPoint.y = 10000 + 10000 * Math.random();
+  protected AbstractProjection createProjection() {
+    return new FocusPointProjection(this);
+  }
+
+  private static final class FocusPointProjection extends AbstractProjection3D {
+    private final double focusX, focusY, focusZ;
+    private final double maxDist;
+
+    public FocusPointProjection(FlameRenderer pRenderer) {
+      super(pRenderer);
+      focusX = pRenderer.viewFlame.getFocusX();
+      focusY = pRenderer.viewFlame.getFocusY();
+      focusZ = pRenderer.viewFlame.getFocusZ();
+      maxDist = 0.12 + pRenderer.viewFlame.getCamDOFArea();
     }
-    else {
+
+    @Override
+    public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+      double z = pPoint.z;
+      double px = m00 * pPoint.x + m10 * pPoint.y;
+      double py = m01 * pPoint.x + m11 * pPoint.y + m21 * z;
+      double pz = m02 * pPoint.x + m12 * pPoint.y + m22 * z;
+      double zr = 1.0 - camPerspective * pz;
+
+      double xdist = (px - focusX);
+      double ydist = (py - focusY);
+      double zdist = (pz - focusZ);
+      double dist = sqrt(xdist * xdist + ydist * ydist + zdist * zdist);
+
+      if (dist > maxDist) {
+        // dont draw outer points
+        return false;
+      }
       pPoint.x = px / zr;
       pPoint.y = py / zr;
+      pProjectedPoint.intensity = 1.0;
+      return projectView(pPoint.x, pPoint.y, pProjectedPoint);
     }
-    pProjectedPoint.intensity = 1.0;
-    pProjectedPoint.x = pPoint.x * cosa + pPoint.y * sina + rcX;
-    if ((pProjectedPoint.x < 0) || (pProjectedPoint.x > camW))
-      return false;
-    pProjectedPoint.y = pPoint.y * cosa - pPoint.x * sina + rcY;
-    if ((pProjectedPoint.y < 0) || (pProjectedPoint.y > camH))
-      return false;
-    return true;
   }
 
 }
@@ -23,7 +23,7 @@ import static org.jwildfire.base.mathlib.MathLib.pow;
 import static org.jwildfire.base.mathlib.MathLib.sqrt;
 
 import org.jwildfire.create.tina.base.Flame;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
 import org.jwildfire.create.tina.base.raster.RasterPoint;
 import org.jwildfire.create.tina.render.filter.FilterKernel;
 
@@ -170,20 +170,26 @@ public class Flam3DEFilter {
   }
 
   private double k1, k2;
-  private AbstractRasterPoint[][] raster;
-  private AbstractRasterPoint[][] accumRaster;
+  private AbstractRaster raster;
+  private AbstractRaster accumRaster;
   private int rasterWidth, rasterHeight;
 
-  private AbstractRasterPoint emptyRasterPoint = new RasterPoint();
+  private RasterPoint getRasterPoint(int pX, int pY, RasterPoint pRasterPoint) {
+    if (pX < 0 || pX >= rasterWidth || pY < 0 || pY >= rasterHeight) {
+      pRasterPoint.clear();
+    }
+    else {
+      raster.readRasterPoint(pX, pY, pRasterPoint);
+    }
+    return pRasterPoint;
+  }
 
-  private AbstractRasterPoint getRasterPoint(int pX, int pY) {
-    if (pX < 0 || pX >= rasterWidth || pY < 0 || pY >= rasterHeight)
-      return emptyRasterPoint;
-    else
-      return raster[pY][pX];
+  // maximum distance (in pixels) from the filtered point which may be written to by transformPoint 
+  public int getMaxFilterRadius() {
+    return (int) ceil(this.filter_widths[0]);
   }
 
-  public void setRaster(AbstractRasterPoint[][] pAccumRaster, AbstractRasterPoint[][] pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
+  public void setRaster(AbstractRaster pAccumRaster, AbstractRaster pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
     accumRaster = pAccumRaster;
     raster = pRaster;
     rasterWidth = pRasterWidth;
@@ -194,7 +200,8 @@ public class Flam3DEFilter {
     k2 = 1.0 / (flame.getContrast() * area * (double) flame.getWhiteLevel() * flame.getSampleDensity());
   }
 
-  public void transformPoint(int pX, int pY) {
+  // pRasterPoint is a scratch object, so that the filter may be shared by several threads (which must work on disjoint areas)
+  public void transformPoint(RasterPoint pRasterPoint, int pX, int pY) {
     int ii, jj;
     double f_select = 0.0;
     int f_select_int, f_coef_idx;
@@ -209,14 +216,14 @@ public class Flam3DEFilter {
     double blue = 0;
     double intensity = 0;
 
-    AbstractRasterPoint point = getRasterPoint(pX, pY);
+    RasterPoint point = getRasterPoint(pX, pY, pRasterPoint);
 
     /* Don't do anything if there's no hits here */
-    if (point.getCount() == 0 || point.getBlue() == 0)
+    if (point.count == 0 || point.blue == 0)
       return;
 
     /* Count density in ssxss area   */
-    f_select += point.getCount() / 255.0;
+    f_select += point.count / 255.0;
 
     if (scf)
       f_select *= scfact;
@@ -247,10 +254,10 @@ public class Flam3DEFilter {
           continue;
         }
 
-        red = point.getRed();
-        green = point.getGreen();
-        blue = point.getBlue();
-        intensity = point.getCount();
+        red = point.red;
+        green = point.green;
+        blue = point.blue;
+        intensity = point.count;
 
         ls = filter_coefs[f_coef_idx] * (k1 * log(1.0 + intensity * k2)) / intensity;
 
@@ -291,11 +298,7 @@ public class Flam3DEFilter {
 
   private void addToAccum(int i, int ii, int j, int jj, double red, double green, double blue, double intensity) {
     if ((j) + (jj) >= 0 && (j) + (jj) < (rasterHeight) && (i) + (ii) >= 0 && (i) + (ii) < (rasterWidth)) {
-      AbstractRasterPoint a = accumRaster[j + jj][i + ii];
-      a.setRed(a.getRed() + red);
-      a.setGreen(a.getGreen() + green);
-      a.setBlue(a.getBlue() + blue);
-      a.setCount((long) ((double) a.getCount() + intensity + 0.5));
+      accumRaster.addRasterPoint(i + ii, j + jj, red, green, blue, (long) (intensity + 0.5));
     }
   }
 }
@@ -32,7 +32,6 @@ import org.jwildfire.create.tina.base.DrawMode;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
 import org.jwildfire.create.tina.palette.RenderColor;
 
 public final class FlameRenderBlurThread extends FlameRenderThread {
@@ -43,6 +42,8 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
   private XForm xf;
   private long iter;
   private long startIter;
+  // scratch color, reused for every sample
+  private final RenderColor color = new RenderColor();
 
   public FlameRenderBlurThread(Prefs pPrefs, int pThreadId, FlameRenderer pRenderer, Flame pFlame, long pSamples) {
     super(pPrefs, pThreadId, pRenderer, pFlame, pSamples);
@@ -79,12 +80,13 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
       }
       if (iter % 100 == 0) {
         currSample = iter;
+        flushRaster();
         if (Double.isInfinite(p.x) || Double.isInfinite(p.y) || Double.isInfinite(p.z) || Double.isNaN(p.x) || Double.isNaN(p.y) || Double.isNaN(p.z)) {
           //          System.out.println(Tools.TimeToString(new Date()) + ": recovering...");
           preFuseIter();
         }
       }
-      xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
@@ -103,7 +105,7 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
         for (int i = 1; i < finalXForms.size(); i++) {
           finalXForms.get(i).transformPoint(ctx, affineT, varT, q, q);
         }
-        if (!renderer.project(q, prj))
+        if (!renderer.project(q, prj, randGen))
           continue;
         XForm finalXForm = finalXForms.get(finalXForms.size() - 1);
         if ((finalXForm.getAntialiasAmount() > EPSILON) && (finalXForm.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - finalXForm.getAntialiasAmount())) {
@@ -123,7 +125,7 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
       }
       else {
         q.assign(p);
-        if (!renderer.project(q, prj))
+        if (!renderer.project(q, prj, randGen))
           continue;
 
         if ((xf.getAntialiasAmount() > EPSILON) && (xf.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - xf.getAntialiasAmount())) {
@@ -142,9 +144,7 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
       if (yIdx < 0 || yIdx >= renderer.rasterHeight)
         continue;
 
-      RenderColor color;
       if (p.rgbColor) {
-        color = new RenderColor();
         color.red = p.redColor;
         color.green = p.greenColor;
         color.blue = p.blueColor;
@@ -161,14 +161,11 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
             for (int l = xIdx - blurRadius, xk = 0; l <= xIdx + blurRadius; l++, xk++) {
               if (l >= 0 && l < rasterWidth) {
                 // y, x
-                AbstractRasterPoint rp = renderer.raster[k][l];
                 double scl = blurKernel[yk][xk];
                 // TODO
 
-                ////                rp.setRed(rp.getRed() + color.red * scl * prj.intensity);
-                ////                rp.setGreen(rp.getGreen() + color.green * scl * prj.intensity);
-                ////                rp.setBlue(rp.getBlue() + color.blue * scl * prj.intensity);
-                rp.incCount();
+                ////                raster.addSample(l, k, color.red * scl * prj.intensity, color.green * scl * prj.intensity, color.blue * scl * prj.intensity);
+                raster.incCount(l, k);
                 if (observers != null && observers.size() > 0) {
                   for (IterationObserver observer : observers) {
                     observer.notifyIterationFinished(this, k, l);
@@ -180,12 +177,9 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
         }
       }
       else {
-        AbstractRasterPoint rp = renderer.raster[yIdx][xIdx];
         // TODO
-        ////        rp.setRed(rp.getRed() + color.red * prj.intensity);
-        ////        rp.setGreen(rp.getGreen() + color.green * prj.intensity);
-        ////        rp.setBlue(rp.getBlue() + color.blue * prj.intensity);
-        rp.incCount();
+        ////        raster.addSample(xIdx, yIdx, color.red * prj.intensity, color.green * prj.intensity, color.blue * prj.intensity);
+        raster.incCount(xIdx, yIdx);
         if (observers != null && observers.size() > 0) {
           for (IterationObserver observer : observers) {
             observer.notifyIterationFinished(this, xIdx, yIdx);
@@ -220,12 +214,21 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
     q = state.q != null ? state.q.makeCopy() : null;
   }
 
+  private XYZPoint resetXYZPoint(XYZPoint pPoint) {
+    if (pPoint == null) {
+      return new XYZPoint();
+    }
+    pPoint.clear();
+    return pPoint;
+  }
+
   @Override
   protected void preFuseIter() {
-    affineT = new XYZPoint(); // affine part of the transformation
-    varT = new XYZPoint(); // complete transformation
-    p = new XYZPoint();
-    q = new XYZPoint();
+    // reuse the points of the previous run
+    affineT = resetXYZPoint(affineT); // affine part of the transformation
+    varT = resetXYZPoint(varT); // complete transformation
+    p = resetXYZPoint(p);
+    q = resetXYZPoint(q);
     p.x = 2.0 * randGen.random() - 1.0;
     p.y = 2.0 * randGen.random() - 1.0;
     p.z = 0.0;
@@ -234,7 +237,7 @@ public final class FlameRenderBlurThread extends FlameRenderThread {
     xf = flame.getXForms().get(0);
     xf.transformPoint(ctx, affineT, varT, p, p);
     for (int i = 0; i <= Constants.INITIAL_ITERATIONS; i++) {
-      xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
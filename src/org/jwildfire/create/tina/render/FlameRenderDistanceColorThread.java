@@ -34,7 +34,6 @@ import org.jwildfire.create.tina.base.DrawMode;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
 
 public final class FlameRenderDistanceColorThread extends FlameRenderThread {
   private XYZPoint affineT;
@@ -82,7 +81,7 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
     xf = flame.getXForms().get(0);
     xf.transformPoint(ctx, affineT, varT, p, p);
     for (int i = 0; i <= Constants.INITIAL_ITERATIONS; i++) {
-      xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
@@ -109,13 +108,13 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
       }
       else if (iter % 100 == 0) {
         currSample = iter;
+        flushRaster();
         if (Double.isInfinite(p.x) || Double.isInfinite(p.y) || Double.isInfinite(p.z) || Double.isNaN(p.x) || Double.isNaN(p.y) || Double.isNaN(p.z)) {
           //          System.out.println(Tools.TimeToString(new Date()) + ": recovering...");
           preFuseIter();
         }
       }
-      int nextXForm = randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE);
-      xf = xf.getNextAppliedXFormTable()[nextXForm];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
@@ -169,7 +168,7 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
         for (int i = 1; i < finalXForms.size(); i++) {
           finalXForms.get(i).transformPoint(ctx, affineT, varT, q, q);
         }
-        if (!renderer.project(q, prj))
+        if (!renderer.project(q, prj, randGen))
           continue;
         XForm finalXForm = finalXForms.get(finalXForms.size() - 1);
         if ((finalXForm.getAntialiasAmount() > EPSILON) && (finalXForm.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - finalXForm.getAntialiasAmount())) {
@@ -185,7 +184,7 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
       }
       else {
         q.assign(p);
-        if (!renderer.project(q, prj))
+        if (!renderer.project(q, prj, randGen))
           continue;
         if ((xf.getAntialiasAmount() > EPSILON) && (xf.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - xf.getAntialiasAmount())) {
           double dr = exp(xf.getAntialiasRadius() * sqrt(-log(randGen.random()))) - 1.0;
@@ -202,8 +201,6 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
         continue;
       if (yIdx < 0 || yIdx >= renderer.rasterHeight)
         continue;
-      AbstractRasterPoint rp = renderer.raster[yIdx][xIdx];
-
       double cx, cy, cz;
       switch (style) {
         case 0:
@@ -261,19 +258,15 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
         p.color = 1;
 
       if (p.rgbColor) {
-        rp.setRed(rp.getRed() + p.redColor * prj.intensity);
-        rp.setGreen(rp.getGreen() + p.greenColor * prj.intensity);
-        rp.setBlue(rp.getBlue() + p.blueColor * prj.intensity);
+        raster.addSample(xIdx, yIdx, p.redColor * prj.intensity, p.greenColor * prj.intensity, p.blueColor * prj.intensity);
       }
       else {
         // TODO
         ////        int colorIdx = (int) (p.color * renderer.paletteIdxScl + 0.5);
         ////        RenderColor color = renderer.colorMap[colorIdx];
-        ////        rp.setRed(rp.getRed() + color.red * prj.intensity);
-        ////        rp.setGreen(rp.getGreen() + color.green * prj.intensity);
-        ////        rp.setBlue(rp.getBlue() + color.blue * prj.intensity);
+        ////        raster.addSample(xIdx, yIdx, color.red * prj.intensity, color.green * prj.intensity, color.blue * prj.intensity);
+        raster.incCount(xIdx, yIdx);
       }
-      rp.incCount();
       if (observers != null && observers.size() > 0) {
         for (IterationObserver observer : observers) {
           observer.notifyIterationFinished(this, xIdx, yIdx);
@@ -284,7 +277,7 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
 
   @Override
   protected FlameRenderThreadState saveState() {
-    FlameRenderFlatThreadState res = new FlameRenderFlatThreadState();
+    FlameRenderDistanceColorThreadState res = new FlameRenderDistanceColorThreadState();
     res.currSample = currSample;
     res.xfIndex = (xf != null) ? flame.getXForms().indexOf(xf) : -1;
     res.startIter = iter;
@@ -297,7 +290,7 @@ public final class FlameRenderDistanceColorThread extends FlameRenderThread {
 
   @Override
   protected void restoreState(FlameRenderThreadState pState) {
-    FlameRenderFlatThreadState state = (FlameRenderFlatThreadState) pState;
+    FlameRenderDistanceColorThreadState state = (FlameRenderDistanceColorThreadState) pState;
     currSample = state.currSample;
     xf = (state.xfIndex >= 0) ? flame.getXForms().get(state.xfIndex) : null;
     startIter = state.startIter;
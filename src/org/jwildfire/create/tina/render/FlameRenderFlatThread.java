@@ -35,7 +35,6 @@ import org.jwildfire.create.tina.base.Layer;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
 import org.jwildfire.create.tina.base.XYZProjectedPoint;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
 import org.jwildfire.create.tina.palette.RenderColor;
 import org.jwildfire.create.tina.random.AbstractRandomGenerator;
 import org.jwildfire.create.tina.variation.FlameTransformationContext;
@@ -44,6 +43,7 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
   private long startIter;
   private long iter;
   private List<IterationState> iterationState;
+  private final int batchSize;
 
   private static class IterationState extends AbstractIterationState {
     private static final long serialVersionUID = 1L;
@@ -54,9 +54,40 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
     private XYZPoint q;
     private XForm xf;
     protected final XYZProjectedPoint prj = new XYZProjectedPoint();
+    private final XYZPoint projPoint = new XYZPoint();
+    // per-layer invariants
+    private final XForm finalXForms[];
+    private final double finalAAAmount, finalAARadius;
+    private final double layerWeight;
+    private final IterationObserver observerArray[];
+    // samples of the current block
+    private final double batchX[], batchY[], batchZ[];
+    private final double batchAAAmount[], batchAARadius[];
+    private final int batchColorIdx[];
+    private final double batchRed[], batchGreen[], batchBlue[];
 
-    public IterationState(FlameRenderThread pRenderThread, FlameRenderer pRenderer, Flame pFlame, Layer pLayer, FlameTransformationContext pCtx, AbstractRandomGenerator pRandGen) {
+    public IterationState(FlameRenderThread pRenderThread, FlameRenderer pRenderer, Flame pFlame, Layer pLayer, FlameTransformationContext pCtx, AbstractRandomGenerator pRandGen, int pBatchSize) {
       super(pRenderThread, pRenderer, pFlame, pLayer, pCtx, pRandGen);
+      finalXForms = pLayer.getFinalXForms().toArray(new XForm[pLayer.getFinalXForms().size()]);
+      XForm finalXForm = finalXForms.length > 0 ? finalXForms[finalXForms.length - 1] : null;
+      if (finalXForm != null && finalXForm.getAntialiasAmount() > EPSILON && finalXForm.getAntialiasRadius() > EPSILON) {
+        finalAAAmount = finalXForm.getAntialiasAmount();
+        finalAARadius = finalXForm.getAntialiasRadius();
+      }
+      else {
+        finalAAAmount = finalAARadius = 0.0;
+      }
+      layerWeight = pLayer.getWeight();
+      observerArray = observers != null && observers.size() > 0 ? observers.toArray(new IterationObserver[observers.size()]) : null;
+      batchX = new double[pBatchSize];
+      batchY = new double[pBatchSize];
+      batchZ = new double[pBatchSize];
+      batchAAAmount = new double[pBatchSize];
+      batchAARadius = new double[pBatchSize];
+      batchColorIdx = new int[pBatchSize];
+      batchRed = new double[pBatchSize];
+      batchGreen = new double[pBatchSize];
+      batchBlue = new double[pBatchSize];
     }
 
     public void preFuseIter() {
@@ -72,7 +103,7 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
       xf = layer.getXForms().get(0);
       xf.transformPoint(ctx, affineT, varT, p, p);
       for (int i = 0; i <= Constants.INITIAL_ITERATIONS; i++) {
-        xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+        xf = xf.getNextAppliedXForms().next(randGen.random());
         if (xf == null) {
           xf = layer.getXForms().get(0);
           return;
@@ -81,85 +112,145 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
       }
     }
 
+    public FlameRenderFlatThreadState.LayerState saveState() {
+      FlameRenderFlatThreadState.LayerState res = new FlameRenderFlatThreadState.LayerState();
+      res.xfIndex = (xf != null) ? layer.getXForms().indexOf(xf) : -1;
+      res.affineT = affineT != null ? affineT.makeCopy() : null;
+      res.varT = varT != null ? varT.makeCopy() : null;
+      res.p = p != null ? p.makeCopy() : null;
+      res.q = q != null ? q.makeCopy() : null;
+      return res;
+    }
+
+    public void restoreState(FlameRenderFlatThreadState.LayerState pState) {
+      xf = (pState.xfIndex >= 0) ? layer.getXForms().get(pState.xfIndex) : null;
+      affineT = pState.affineT != null ? pState.affineT.makeCopy() : null;
+      varT = pState.varT != null ? pState.varT.makeCopy() : null;
+      p = pState.p != null ? pState.p.makeCopy() : null;
+      q = pState.q != null ? pState.q.makeCopy() : null;
+      if (xf == null || affineT == null || varT == null || p == null || q == null) {
+        preFuseIter();
+      }
+    }
+
     public void validateState() {
       if (Double.isInfinite(p.x) || Double.isInfinite(p.y) || Double.isInfinite(p.z) || Double.isNaN(p.x) || Double.isNaN(p.y) || Double.isNaN(p.z)) {
+        if (statistics != null) {
+          statistics.incInvalidResets();
+          if (xf != null && xf.getStatistics() != null) {
+            xf.getStatistics().incInvalidResets();
+          }
+        }
         preFuseIter();
       }
     }
 
-    public void iterateNext() {
-      int nextXForm = randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE);
-      xf = xf.getNextAppliedXFormTable()[nextXForm];
-      if (xf == null) {
-        return;
+    // Runs the chaos game for pCount samples into the batch buffers, then projects and draws them in a second loop.
+    // Only the samples of one block are kept, so the order of the random numbers differs from drawing each sample
+    // directly, except for a batch size of 1.
+    public void iterateBatch(int pCount) {
+      int count = 0;
+      for (int i = 0; i < pCount; i++) {
+        xf = xf.getNextAppliedXForms().next(randGen.random());
+        if (xf == null) {
+          break;
+        }
+        xf.transformPoint(ctx, affineT, varT, p, p);
+        DrawMode drawMode = xf.getDrawMode();
+        if (drawMode == DrawMode.HIDDEN || (drawMode == DrawMode.OPAQUE && randGen.random() > xf.getOpacity())) {
+          continue;
+        }
+        if (finalXForms.length > 0) {
+          finalXForms[0].transformPoint(ctx, affineT, varT, p, q);
+          for (int j = 1; j < finalXForms.length; j++) {
+            finalXForms[j].transformPoint(ctx, affineT, varT, q, q);
+          }
+          batchX[count] = q.x;
+          batchY[count] = q.y;
+          batchZ[count] = q.z;
+          batchAAAmount[count] = finalAAAmount;
+          batchAARadius[count] = finalAARadius;
+        }
+        else {
+          batchX[count] = p.x;
+          batchY[count] = p.y;
+          batchZ[count] = p.z;
+          if (xf.getAntialiasAmount() > EPSILON && xf.getAntialiasRadius() > EPSILON) {
+            batchAAAmount[count] = xf.getAntialiasAmount();
+            batchAARadius[count] = xf.getAntialiasRadius();
+          }
+          else {
+            batchAAAmount[count] = 0.0;
+          }
+        }
+        if (p.rgbColor) {
+          batchColorIdx[count] = -1;
+          batchRed[count] = p.redColor;
+          batchGreen[count] = p.greenColor;
+          batchBlue[count] = p.blueColor;
+        }
+        else {
+          batchColorIdx[count] = (int) (p.color * paletteIdxScl + 0.5);
+        }
+        count++;
       }
+      drawBatch(count);
+    }
 
-      xf.transformPoint(ctx, affineT, varT, p, p);
-      if (xf.getDrawMode() == DrawMode.HIDDEN)
-        return;
-      else if ((xf.getDrawMode() == DrawMode.OPAQUE) && (randGen.random() > xf.getOpacity()))
-        return;
-      List<XForm> finalXForms = layer.getFinalXForms();
-
-      int xIdx, yIdx;
-      if (finalXForms.size() > 0) {
-        finalXForms.get(0).transformPoint(ctx, affineT, varT, p, q);
-        for (int i = 1; i < finalXForms.size(); i++) {
-          finalXForms.get(i).transformPoint(ctx, affineT, varT, q, q);
-        }
-        if (!renderer.project(q, prj))
-          return;
-        XForm finalXForm = finalXForms.get(finalXForms.size() - 1);
-        if ((finalXForm.getAntialiasAmount() > EPSILON) && (finalXForm.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - finalXForm.getAntialiasAmount())) {
-          double dr = exp(finalXForm.getAntialiasRadius() * sqrt(-log(randGen.random()))) - 1.0;
+    private void drawBatch(int pCount) {
+      final double bws = renderer.bws;
+      final double bhs = renderer.bhs;
+      final int rasterWidth = renderer.rasterWidth;
+      final int rasterHeight = renderer.rasterHeight;
+      for (int i = 0; i < pCount; i++) {
+        // a diverged point is only reset at the next validation, until then its samples are dropped here, because NaN
+        // passes the bounds checks below and (int) NaN would draw it at (0, 0)
+        if (Double.isNaN(batchX[i]) || Double.isNaN(batchY[i]) || Double.isNaN(batchZ[i]) || Double.isInfinite(batchX[i]) || Double.isInfinite(batchY[i]) || Double.isInfinite(batchZ[i])) {
+          continue;
+        }
+        projPoint.x = batchX[i];
+        projPoint.y = batchY[i];
+        projPoint.z = batchZ[i];
+        if (!renderer.project(projPoint, prj, randGen)) {
+          if (statistics != null) {
+            statistics.incOutOfFrame();
+          }
+          continue;
+        }
+        int xIdx, yIdx;
+        double aaAmount = batchAAAmount[i];
+        if (aaAmount > 0.0 && randGen.random() > 1.0 - aaAmount) {
+          double dr = exp(batchAARadius[i] * sqrt(-log(randGen.random()))) - 1.0;
           double da = randGen.random() * 2.0 * M_PI;
-          xIdx = (int) (renderer.bws * prj.x + dr * cos(da) + 0.5);
-          yIdx = (int) (renderer.bhs * prj.y + dr * sin(da) + 0.5);
+          xIdx = (int) (bws * prj.x + dr * cos(da) + 0.5);
+          yIdx = (int) (bhs * prj.y + dr * sin(da) + 0.5);
         }
         else {
-          xIdx = (int) (renderer.bws * prj.x + 0.5);
-          yIdx = (int) (renderer.bhs * prj.y + 0.5);
+          xIdx = (int) (bws * prj.x + 0.5);
+          yIdx = (int) (bhs * prj.y + 0.5);
         }
-      }
-      else {
-        q.assign(p);
-        if (!renderer.project(q, prj))
-          return;
-        if ((xf.getAntialiasAmount() > EPSILON) && (xf.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - xf.getAntialiasAmount())) {
-          double dr = exp(xf.getAntialiasRadius() * sqrt(-log(randGen.random()))) - 1.0;
-          double da = randGen.random() * 2.0 * M_PI;
-          xIdx = (int) (renderer.bws * prj.x + dr * cos(da) + 0.5);
-          yIdx = (int) (renderer.bhs * prj.y + dr * sin(da) + 0.5);
+        if (xIdx < 0 || xIdx >= rasterWidth || yIdx < 0 || yIdx >= rasterHeight) {
+          if (statistics != null) {
+            statistics.incOutOfFrame();
+          }
+          continue;
+        }
+        if (statistics != null) {
+          statistics.incHits();
+        }
+        double intensity = prj.intensity * layerWeight;
+        int colorIdx = batchColorIdx[i];
+        if (colorIdx < 0) {
+          raster.addSample(xIdx, yIdx, batchRed[i] * intensity, batchGreen[i] * intensity, batchBlue[i] * intensity);
         }
         else {
-          xIdx = (int) (renderer.bws * prj.x + 0.5);
-          yIdx = (int) (renderer.bhs * prj.y + 0.5);
+          RenderColor color = colorMap[colorIdx];
+          raster.addSample(xIdx, yIdx, color.red * intensity, color.green * intensity, color.blue * intensity);
         }
-      }
-      if (xIdx < 0 || xIdx >= renderer.rasterWidth)
-        return;
-      if (yIdx < 0 || yIdx >= renderer.rasterHeight)
-        return;
-      AbstractRasterPoint rp = renderer.raster[yIdx][xIdx];
-
-      double intensity = prj.intensity * layer.getWeight();
-
-      if (p.rgbColor) {
-        rp.setRed(rp.getRed() + p.redColor * intensity);
-        rp.setGreen(rp.getGreen() + p.greenColor * intensity);
-        rp.setBlue(rp.getBlue() + p.blueColor * intensity);
-      }
-      else {
-        int colorIdx = (int) (p.color * paletteIdxScl + 0.5);
-        RenderColor color = colorMap[colorIdx];
-        rp.setRed(rp.getRed() + color.red * intensity);
-        rp.setGreen(rp.getGreen() + color.green * intensity);
-        rp.setBlue(rp.getBlue() + color.blue * intensity);
-      }
-      rp.incCount();
-      if (observers != null && observers.size() > 0) {
-        for (IterationObserver observer : observers) {
-          observer.notifyIterationFinished(renderThread, xIdx, yIdx);
+        if (observerArray != null) {
+          for (IterationObserver observer : observerArray) {
+            observer.notifyIterationFinished(renderThread, xIdx, yIdx);
+          }
         }
       }
     }
@@ -171,10 +262,11 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
 
   public FlameRenderFlatThread(Prefs pPrefs, int pThreadId, FlameRenderer pRenderer, Flame pFlame, long pSamples) {
     super(pPrefs, pThreadId, pRenderer, pFlame, pSamples);
+    batchSize = renderer.getSampleBatchSize();
     iterationState = new ArrayList<IterationState>();
     for (Layer layer : pFlame.getLayers()) {
       if (isValidLayer(layer)) {
-        iterationState.add(new IterationState(this, renderer, flame, layer, ctx, randGen));
+        iterationState.add(new IterationState(this, renderer, flame, layer, ctx, randGen, batchSize));
       }
     }
   }
@@ -198,47 +290,59 @@ public final class FlameRenderFlatThread extends FlameRenderThread {
     if (iterInc < 1) {
       return;
     }
-    for (iter = startIter; !forceAbort && (samples < 0 || iter < samples); iter += iterInc) {
-      if (iter % 10000 == 0) {
+    // the points are reset every 10000 and validated every 100 samples, checked at the start of each block
+    long resetBlock = startIter % 10000 == 0 ? -1 : startIter / 10000;
+    long validateBlock = startIter / 100;
+    iter = startIter;
+    while (!forceAbort && (samples < 0 || iter < samples)) {
+      if (iter / 10000 != resetBlock) {
+        resetBlock = iter / 10000;
+        validateBlock = iter / 100;
         preFuseIter();
       }
-      else if (iter % 100 == 0) {
+      else if (iter / 100 != validateBlock) {
+        validateBlock = iter / 100;
         currSample = iter;
+        flushRaster();
         for (IterationState state : iterationState) {
           state.validateState();
         }
       }
+      int count = batchSize;
+      if (samples >= 0 && (samples - iter + iterInc - 1) / iterInc < count) {
+        count = (int) ((samples - iter + iterInc - 1) / iterInc);
+      }
       for (IterationState state : iterationState) {
-        state.iterateNext();
+        state.iterateBatch(count);
       }
+      iter += (long) count * iterInc;
     }
   }
 
   @Override
   protected FlameRenderThreadState saveState() {
-    return null;
-    // TODO
-    //    FlameRenderFlatThreadState res = new FlameRenderFlatThreadState();
-    //    res.currSample = currSample;
-    //    res.xfIndex = (xf != null) ? flame.getXForms().indexOf(xf) : -1;
-    //    res.startIter = iter;
-    //    res.affineT = affineT != null ? affineT.makeCopy() : null;
-    //    res.varT = varT != null ? varT.makeCopy() : null;
-    //    res.p = p != null ? p.makeCopy() : null;
-    //    res.q = q != null ? q.makeCopy() : null;
-    //    return res;
+    FlameRenderFlatThreadState res = new FlameRenderFlatThreadState();
+    res.currSample = currSample;
+    res.startIter = iter;
+    res.layerState = new FlameRenderFlatThreadState.LayerState[iterationState.size()];
+    for (int i = 0; i < iterationState.size(); i++) {
+      res.layerState[i] = iterationState.get(i).saveState();
+    }
+    return res;
   }
 
   @Override
   protected void restoreState(FlameRenderThreadState pState) {
-    // TODO    
-    //    FlameRenderFlatThreadState state = (FlameRenderFlatThreadState) pState;
-    //    currSample = state.currSample;
-    //    xf = (state.xfIndex >= 0) ? flame.getXForms().get(state.xfIndex) : null;
-    //    startIter = state.startIter;
-    //    affineT = state.affineT != null ? state.affineT.makeCopy() : null;
-    //    varT = state.varT != null ? state.varT.makeCopy() : null;
-    //    p = state.p != null ? state.p.makeCopy() : null;
-    //    q = state.q != null ? state.q.makeCopy() : null;
+    FlameRenderFlatThreadState state = (FlameRenderFlatThreadState) pState;
+    if (state.layerState == null || state.layerState.length != iterationState.size()) {
+      // the layers do not match the saved state, so just start over
+      initState();
+      return;
+    }
+    currSample = state.currSample;
+    startIter = state.startIter;
+    for (int i = 0; i < iterationState.size(); i++) {
+      iterationState.get(i).restoreState(state.layerState[i]);
+    }
   }
 }
@@ -16,12 +16,21 @@
 */
 package org.jwildfire.create.tina.render;
 
+import java.io.Serializable;
+
 import org.jwildfire.create.tina.base.XYZPoint;
 
 public final class FlameRenderFlatThreadState extends FlameRenderThreadState {
   private static final long serialVersionUID = 1L;
-  protected XYZPoint affineT;
-  protected XYZPoint varT;
-  protected XYZPoint p;
-  protected XYZPoint q;
+  // state of each rendered layer (FlameRenderFlatThread), the xfIndex refers to the xForms of the layer 
+  protected LayerState layerState[];
+
+  protected static class LayerState implements Serializable {
+    private static final long serialVersionUID = 1L;
+    protected int xfIndex;
+    protected XYZPoint affineT;
+    protected XYZPoint varT;
+    protected XYZPoint p;
+    protected XYZPoint q;
+  }
 }
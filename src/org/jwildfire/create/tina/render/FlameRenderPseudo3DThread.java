@@ -32,7 +32,6 @@ import org.jwildfire.create.tina.base.DrawMode;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
 import org.jwildfire.create.tina.palette.RenderColor;
 
 public final class FlameRenderPseudo3DThread extends FlameRenderThread {
@@ -44,6 +43,8 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
   private XForm xf;
   private long iter;
   private long startIter;
+  // scratch color, reused for every sample
+  private final RenderColor color = new RenderColor();
 
   public FlameRenderPseudo3DThread(Prefs pPrefs, int pThreadId, FlameRenderer pRenderer, Flame pFlame, long pSamples) {
     super(pPrefs, pThreadId, pRenderer, pFlame, pSamples);
@@ -76,6 +77,7 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
       }
       else if (iter % 100 == 0) {
         currSample = iter;
+        flushRaster();
         for (int pIdx = 0; pIdx < pA.length; pIdx++) {
           if (Double.isInfinite(pA[pIdx].x) || Double.isInfinite(pA[pIdx].y) || Double.isInfinite(pA[pIdx].z) || Double.isNaN(pA[pIdx].x) || Double.isNaN(pA[pIdx].y) || Double.isNaN(pA[pIdx].z)) {
             //            System.out.println(Tools.TimeToString(new Date()) + ": recovering...");
@@ -84,7 +86,7 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
           }
         }
       }
-      xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
@@ -97,15 +99,16 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
       List<XForm> finalXForms = flame.getFinalXForms();
       int xIdx, yIdx;
       if (finalXForms.size() > 0) {
-        for (int pIdx = 0; pIdx < pA.length; pIdx++) {
-          qA[pIdx] = new XYZPoint();
+        // same state as freshly created points, without the allocation
+        for (int pIdx = 0; pIdx < qA.length; pIdx++) {
+          qA[pIdx].clear();
         }
         finalXForms.get(0).transformPoints(ctx, affineTA, varTA, pA, qA);
         for (int i = 1; i < finalXForms.size(); i++) {
           finalXForms.get(i).transformPoints(ctx, affineTA, varTA, qA, qA);
         }
         r.assign(qA[0]);
-        if (!renderer.project(r, prj))
+        if (!renderer.project(r, prj, randGen))
           continue;
 
         XForm finalXForm = finalXForms.get(finalXForms.size() - 1);
@@ -127,11 +130,10 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
       }
       else {
         for (int pIdx = 0; pIdx < pA.length; pIdx++) {
-          qA[pIdx] = new XYZPoint();
           qA[pIdx].assign(pA[pIdx]);
         }
         r.assign(qA[0]);
-        if (!renderer.project(r, prj))
+        if (!renderer.project(r, prj, randGen))
           continue;
 
         if ((xf.getAntialiasAmount() > EPSILON) && (xf.getAntialiasRadius() > EPSILON) && (randGen.random() > 1.0 - xf.getAntialiasAmount())) {
@@ -150,10 +152,7 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
       if (yIdx < 0 || yIdx >= renderer.rasterHeight)
         continue;
 
-      AbstractRasterPoint rp = renderer.raster[yIdx][xIdx];
-      RenderColor color;
       if (pA[0].rgbColor) {
-        color = new RenderColor();
         color.red = pA[0].redColor;
         color.green = pA[0].greenColor;
         color.blue = pA[0].blueColor;
@@ -164,10 +163,8 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
       }
       // TODO
       ////      RenderColor shadedColor = shader.calculateColor(qA, color);
-      ////      rp.setRed(rp.getRed() + shadedColor.red * prj.intensity);
-      ////      rp.setGreen(rp.getGreen() + shadedColor.green * prj.intensity);
-      ////      rp.setBlue(rp.getBlue() + shadedColor.blue * prj.intensity);
-      rp.incCount();
+      ////      raster.addSample(xIdx, yIdx, shadedColor.red * prj.intensity, shadedColor.green * prj.intensity, shadedColor.blue * prj.intensity);
+      raster.incCount(xIdx, yIdx);
       if (observers != null && observers.size() > 0) {
         for (IterationObserver observer : observers) {
           observer.notifyIterationFinished(this, xIdx, yIdx);
@@ -216,21 +213,34 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
     }
   }
 
+  private XYZPoint[] resetXYZPointArray(XYZPoint points[]) {
+    if (points == null || points.length != 3) {
+      points = new XYZPoint[3];
+    }
+    for (int i = 0; i < points.length; i++) {
+      if (points[i] == null) {
+        points[i] = new XYZPoint();
+      }
+      else {
+        points[i].clear();
+      }
+    }
+    return points;
+  }
+
   @Override
   protected void preFuseIter() {
-    affineTA = new XYZPoint[3]; // affine part of the transformation
-    for (int i = 0; i < affineTA.length; i++) {
-      affineTA[i] = new XYZPoint();
-    }
-    varTA = new XYZPoint[3]; // complete transformation
-    for (int i = 0; i < varTA.length; i++) {
-      varTA[i] = new XYZPoint();
+    // reuse the points of the previous run
+    affineTA = resetXYZPointArray(affineTA); // affine part of the transformation
+    varTA = resetXYZPointArray(varTA); // complete transformation
+    pA = resetXYZPointArray(pA);
+    qA = resetXYZPointArray(qA);
+    if (r == null) {
+      r = new XYZPoint();
     }
-    pA = new XYZPoint[3];
-    for (int i = 0; i < pA.length; i++) {
-      pA[i] = new XYZPoint();
+    else {
+      r.clear();
     }
-    r = new XYZPoint();
 
     pA[0].x = 2.0 * randGen.random() - 1.0;
     pA[0].y = 2.0 * randGen.random() - 1.0;
@@ -238,15 +248,11 @@ public final class FlameRenderPseudo3DThread extends FlameRenderThread {
     pA[0].color = randGen.random();
 
     distributeInitialPoints(pA);
-    qA = new XYZPoint[3];
-    for (int i = 0; i < qA.length; i++) {
-      qA[i] = new XYZPoint();
-    }
 
     xf = flame.getXForms().get(0);
     xf.transformPoints(ctx, affineTA, varTA, pA, pA);
     for (int i = 0; i <= Constants.INITIAL_ITERATIONS; i++) {
-      xf = xf.getNextAppliedXFormTable()[randGen.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(randGen.random());
       if (xf == null) {
         return;
       }
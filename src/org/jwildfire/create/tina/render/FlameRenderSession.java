@@ -0,0 +1,112 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
+import org.jwildfire.create.tina.palette.RGBPalette;
+import org.jwildfire.create.tina.palette.RenderColor;
+
+// Keeps the buffers of a render alive for the following renders, e. g. the frames of a movie. The rasters are cleared
+// instead of being allocated again (as long as the size does not change), and the render palettes of unchanged
+// gradients are shared by the threads and reused by the next frames. A session may only be used by one renderer at a
+// time, see FlameRenderer.setRenderSession().
+public class FlameRenderSession {
+  private static final int MAX_CACHED_PALETTES = 16;
+  private final List<AbstractRaster> freeRasters = new ArrayList<AbstractRaster>();
+  // most recently used first
+  private final LinkedList<CachedPalette> palettes = new LinkedList<CachedPalette>();
+  private int allocatedRasters, reusedRasters;
+
+  private static class CachedPalette {
+    private final int key[];
+    private final RenderColor colors[];
+
+    public CachedPalette(int pKey[], RenderColor pColors[]) {
+      key = pKey;
+      colors = pColors;
+    }
+  }
+
+  // returns a cleared raster, or null if a new one must be allocated
+  synchronized AbstractRaster obtainRaster(Class<? extends AbstractRaster> pRasterClass, int pWidth, int pHeight) {
+    AbstractRaster res = null;
+    Iterator<AbstractRaster> it = freeRasters.iterator();
+    while (it.hasNext()) {
+      AbstractRaster raster = it.next();
+      if (raster.getClass() != pRasterClass || raster.getRasterWidth() != pWidth || raster.getRasterHeight() != pHeight) {
+        // the size (or precision) has changed, free the memory
+        it.remove();
+      }
+      else if (res == null) {
+        it.remove();
+        res = raster;
+      }
+    }
+    if (res != null) {
+      res.clearRaster();
+      reusedRasters++;
+    }
+    else {
+      allocatedRasters++;
+    }
+    return res;
+  }
+
+  synchronized void releaseRaster(AbstractRaster pRaster) {
+    freeRasters.add(pRaster);
+  }
+
+  // the returned colors are shared and must not be modified
+  synchronized RenderColor[] getRenderPalette(RGBPalette pPalette, int pWhiteLevel) {
+    int key[] = pPalette.createRenderPaletteKey(pWhiteLevel);
+    Iterator<CachedPalette> it = palettes.iterator();
+    while (it.hasNext()) {
+      CachedPalette palette = it.next();
+      if (Arrays.equals(palette.key, key)) {
+        it.remove();
+        palettes.addFirst(palette);
+        return palette.colors;
+      }
+    }
+    CachedPalette palette = new CachedPalette(key, pPalette.createRenderPalette(pWhiteLevel));
+    palettes.addFirst(palette);
+    if (palettes.size() > MAX_CACHED_PALETTES) {
+      palettes.removeLast();
+    }
+    return palette.colors;
+  }
+
+  // frees all buffers, the session may still be used afterwards
+  public synchronized void clear() {
+    freeRasters.clear();
+    palettes.clear();
+  }
+
+  public synchronized int getAllocatedRasters() {
+    return allocatedRasters;
+  }
+
+  public synchronized int getReusedRasters() {
+    return reusedRasters;
+  }
+}
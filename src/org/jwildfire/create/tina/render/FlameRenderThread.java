@@ -19,8 +19,8 @@ package org.jwildfire.create.tina.render;
 import org.jwildfire.base.Prefs;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
 import org.jwildfire.create.tina.random.AbstractRandomGenerator;
-import org.jwildfire.create.tina.random.RandomGeneratorFactory;
 import org.jwildfire.create.tina.variation.FlameTransformationContext;
 
 public abstract class FlameRenderThread implements Runnable {
@@ -29,21 +29,29 @@ public abstract class FlameRenderThread implements Runnable {
   protected final long samples;
   protected volatile long currSample;
   protected SampleTonemapper tonemapper;
-  protected boolean forceAbort;
-  protected boolean finished;
+  protected volatile boolean forceAbort;
+  // a thread which was not started yet is regarded as finished
+  protected volatile boolean finished = true;
   protected FlameRenderThreadState resumeState;
   protected FlameTransformationContext ctx;
   protected AbstractRandomGenerator randGen;
   protected final XYZProjectedPoint prj = new XYZProjectedPoint();
+  protected final AbstractRaster raster;
+  // null if the render statistics are disabled
+  protected final RenderStatistics statistics;
+  // progressive renders with thread-local rasters: set at each frame of the preview
+  private volatile boolean flushRasterRequested;
 
   public FlameRenderThread(Prefs pPrefs, int pThreadId, FlameRenderer pRenderer, Flame pFlame, long pSamples) {
     renderer = pRenderer;
     flame = pFlame;
     samples = pSamples;
-    randGen = RandomGeneratorFactory.getInstance(pPrefs.getTinaRandomNumberGenerator(), pThreadId);
+    raster = pRenderer.createThreadRaster(pThreadId);
+    randGen = pRenderer.createThreadRandomGenerator(pThreadId);
     ctx = new FlameTransformationContext(pRenderer, randGen);
     ctx.setPreserveZCoordinate(pFlame.isPreserveZ());
     ctx.setPreview(renderer.isPreview());
+    statistics = pRenderer.isCollectStatistics() ? new RenderStatistics() : null;
   }
 
   protected abstract void preFuseIter();
@@ -58,7 +66,6 @@ public abstract class FlameRenderThread implements Runnable {
 
   @Override
   public void run() {
-    finished = forceAbort = false;
     try {
       try {
         if (resumeState == null) {
@@ -76,7 +83,30 @@ public abstract class FlameRenderThread implements Runnable {
       }
     }
     finally {
-      finished = true;
+      // the remaining samples must be in the shared raster when the thread is regarded as finished
+      renderer.flushThreadRaster(raster);
+      synchronized (this) {
+        finished = true;
+        notifyAll();
+      }
+    }
+  }
+
+  // must be called before passing the thread to the executor
+  void prepareStart() {
+    finished = forceAbort = false;
+  }
+
+  public synchronized boolean awaitFinished(long pTimeoutMillis) throws InterruptedException {
+    if (!finished) {
+      wait(pTimeoutMillis);
+    }
+    return finished;
+  }
+
+  public synchronized void awaitFinished() throws InterruptedException {
+    while (!finished) {
+      wait();
     }
   }
 
@@ -100,6 +130,27 @@ public abstract class FlameRenderThread implements Runnable {
     forceAbort = true;
   }
 
+  // asks the thread to move its samples into the shared raster of a progressive render, see flushRaster()
+  public void requestRasterFlush() {
+    flushRasterRequested = true;
+  }
+
+  // must be called regularly by iterate()
+  protected void flushRaster() {
+    if (flushRasterRequested) {
+      flushRasterRequested = false;
+      renderer.flushThreadRaster(raster);
+    }
+  }
+
+  public AbstractRaster getRaster() {
+    return raster;
+  }
+
+  public RenderStatistics getStatistics() {
+    return statistics;
+  }
+
   public void setResumeState(FlameRenderThreadState resumeState) {
     this.resumeState = resumeState;
   }
@@ -19,17 +19,10 @@ package org.jwildfire.create.tina.render;
 import static org.jwildfire.base.mathlib.MathLib.EPSILON;
 import static org.jwildfire.base.mathlib.MathLib.M_PI;
 import static org.jwildfire.base.mathlib.MathLib.cos;
-import static org.jwildfire.base.mathlib.MathLib.exp;
 import static org.jwildfire.base.mathlib.MathLib.fabs;
 import static org.jwildfire.base.mathlib.MathLib.sin;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -38,18 +31,29 @@ import org.jwildfire.base.QualityProfile;
 import org.jwildfire.base.mathlib.MathLib;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.Layer;
+import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
 import org.jwildfire.create.tina.base.XYZProjectedPoint;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
+import org.jwildfire.create.tina.base.raster.DirtyTileRaster;
+import org.jwildfire.create.tina.base.raster.RasterAccumulationMode;
+import org.jwildfire.create.tina.base.raster.RasterPoint;
+import org.jwildfire.create.tina.base.raster.RasterPointPrecision;
+import org.jwildfire.create.tina.base.raster.StripedRaster;
+import org.jwildfire.create.tina.palette.RGBPalette;
+import org.jwildfire.create.tina.palette.RenderColor;
 import org.jwildfire.create.tina.random.AbstractRandomGenerator;
 import org.jwildfire.create.tina.random.RandomGeneratorFactory;
+import org.jwildfire.create.tina.random.RandomGeneratorType;
 import org.jwildfire.create.tina.variation.FlameTransformationContext;
+import org.jwildfire.create.tina.variation.Variation;
 import org.jwildfire.image.SimpleHDRImage;
 import org.jwildfire.image.SimpleImage;
 
 public class FlameRenderer {
   // constants
   private final static int MAX_FILTER_WIDTH = 25;
+  private final static int MAX_SAMPLE_BATCH_SIZE = 4096;
   // init in initRaster
   private int imageWidth;
   private int imageHeight;
@@ -60,7 +64,9 @@ public class FlameRenderer {
   private int maxBorderWidth;
   LogDensityFilter logDensityFilter;
   GammaCorrectionFilter gammaCorrectionFilter;
-  AbstractRasterPoint[][] raster;
+  AbstractRaster raster;
+  private RasterAccumulationMode accumulationMode;
+  private boolean progressive;
   // init in initView
   protected double cosa;
   protected double sina;
@@ -79,20 +85,45 @@ public class FlameRenderer {
   protected double camDOF_10;
   protected boolean useDOF;
   protected boolean legacyDOF;
+  // init in initView()
+  private AbstractProjection projection;
+  // the flame which defines the camera of the projection, differs from the flame only while a motion blur time step is rendered
+  Flame viewFlame;
   private boolean withAlpha;
   //
   private ProgressUpdater progressUpdater;
   // 
-  private final FlameTransformationContext flameTransformationContext;
+  private FlameTransformationContext flameTransformationContext;
   private RenderInfo renderInfo;
 
   protected final Flame flame;
   private final Prefs prefs;
   private boolean preview;
+  private int renderThreads;
 
   private List<IterationObserver> iterationObservers;
   private List<FlameRenderThread> runningThreads;
-  private boolean forceAbort;
+  private volatile boolean forceAbort;
+  private String checkpointFilename;
+  private long checkpointInterval;
+  private boolean checkpointCompressed;
+  private JWFRenderCheckpoint resumeCheckpoint;
+  // samples and iteration time of the last renderFlame (all parts), measured by the render threads
+  private long iterationSamples;
+  private long iterationNanos;
+  private boolean collectStatistics;
+  private RenderStatistics statistics;
+  // null: random seed
+  private Long randomSeed;
+  private RandomGeneratorType randomSeedGeneratorType;
+  private boolean deterministic;
+  private int sampleBatchSize;
+  // optional, provides the buffers of previous renders
+  private FlameRenderSession renderSession;
+  private final List<AbstractRaster> sessionRasters = new ArrayList<AbstractRaster>();
+  // optional, the flame at several times of the shutter interval
+  private List<Flame> motionBlurFlames;
+  private int randomStreamOffset;
 
   public void registerIterationObserver(IterationObserver pObserver) {
     if (iterationObservers == null) {
@@ -113,11 +144,18 @@ public class FlameRenderer {
     flameTransformationContext = new FlameTransformationContext(this, randGen);
     flameTransformationContext.setPreserveZCoordinate(pFlame.isPreserveZ());
     flameTransformationContext.setPreview(pPreview);
+    collectStatistics = prefs.isTinaRenderStatistics();
+    renderThreads = prefs.getTinaRenderThreads();
+    setSampleBatchSize(prefs.getTinaRenderSampleBatchSize());
   }
 
   public void init3D() {
-    double yaw = -flame.getCamYaw() * M_PI / 180.0;
-    double pitch = flame.getCamPitch() * M_PI / 180.0;
+    init3D(flame);
+  }
+
+  private void init3D(Flame pViewFlame) {
+    double yaw = -pViewFlame.getCamYaw() * M_PI / 180.0;
+    double pitch = pViewFlame.getCamPitch() * M_PI / 180.0;
     cameraMatrix[0][0] = cos(yaw);
     cameraMatrix[1][0] = -sin(yaw);
     cameraMatrix[2][0] = 0;
@@ -127,10 +165,20 @@ public class FlameRenderer {
     cameraMatrix[0][2] = sin(pitch) * sin(yaw);
     cameraMatrix[1][2] = sin(pitch) * cos(yaw);
     cameraMatrix[2][2] = cos(pitch);
-    useDOF = fabs(flame.getCamDOF()) > MathLib.EPSILON;
-    doProject3D = fabs(flame.getCamYaw()) > EPSILON || fabs(flame.getCamPitch()) > EPSILON || fabs(flame.getCamPerspective()) > EPSILON || useDOF || fabs(flame.getDimishZ()) > EPSILON;
-    legacyDOF = !flame.isNewCamDOF();
-    camDOF_10 = 0.1 * flame.getCamDOF();
+    useDOF = fabs(pViewFlame.getCamDOF()) > MathLib.EPSILON;
+    doProject3D = fabs(pViewFlame.getCamYaw()) > EPSILON || fabs(pViewFlame.getCamPitch()) > EPSILON || fabs(pViewFlame.getCamPerspective()) > EPSILON || useDOF || fabs(pViewFlame.getDimishZ()) > EPSILON;
+    legacyDOF = !pViewFlame.isNewCamDOF();
+    camDOF_10 = 0.1 * pViewFlame.getCamDOF();
+  }
+
+  // rough estimate of the memory needed to render an image of the given size, used to decide how many renders may run
+  // at the same time
+  public static long estimateRenderMemory(Prefs pPrefs, int pImageWidth, int pImageHeight) {
+    long rasterSize = (long) (pImageWidth + MAX_FILTER_WIDTH - 1) * (long) (pImageHeight + MAX_FILTER_WIDTH - 1);
+    long rasterMemory = rasterSize * pPrefs.getTinaRasterPointPrecision().getBytesPerRasterPoint();
+    int rasterCount = pPrefs.getTinaRasterAccumulationMode() == RasterAccumulationMode.THREAD_LOCAL ? pPrefs.getTinaRenderThreads() : 1;
+    // one more raster for the DE filter, and the output image
+    return rasterMemory * (rasterCount + 1) + 4L * pImageWidth * pImageHeight;
   }
 
   public void initRasterSizes(int pImageWidth, int pImageHeight) {
@@ -145,12 +193,87 @@ public class FlameRenderer {
     rasterSize = rasterWidth * rasterHeight;
   }
 
-  private void initRaster(int pImageWidth, int pImageHeight) {
+  private void initRaster(int pImageWidth, int pImageHeight, boolean pProgressive) {
     initRasterSizes(pImageWidth, pImageHeight);
-    Class<? extends AbstractRasterPoint> rpClass = prefs.getTinaRasterPointPrecision().getRasterPointClass();
-    AbstractRasterPoint rp;
+    // progressive renders tonemap the shared raster while the threads are running. In THREAD_LOCAL mode every thread
+    // has its own raster and moves its samples into the shared raster at each frame of the ProgressivePreview.
+    progressive = pProgressive;
+    int threadRasters = pProgressive ? renderThreads : renderThreads - 1;
+    accumulationMode = selectAccumulationMode(threadRasters);
+    raster = pProgressive || accumulationMode == RasterAccumulationMode.STRIPED ? new StripedRaster(allocRaster()) : allocRaster();
+    if (pProgressive) {
+      ((StripedRaster) raster).trackDirtyTiles();
+    }
+  }
+
+  private RasterAccumulationMode selectAccumulationMode(int pThreadRasters) {
+    // thread-local rasters are merged in a fixed order, while the order of the writes into a shared raster depends on the scheduling
+    if (deterministic) {
+      return RasterAccumulationMode.THREAD_LOCAL;
+    }
+    RasterAccumulationMode mode = prefs.getTinaRasterAccumulationMode();
+    if (mode == RasterAccumulationMode.THREAD_LOCAL && pThreadRasters > 0) {
+      Runtime runtime = Runtime.getRuntime();
+      long availMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+      long threadRastersMemory = (long) pThreadRasters * (long) rasterSize * (long) prefs.getTinaRasterPointPrecision().getBytesPerRasterPoint();
+      // keep enough memory left for the DE filter and the output images
+      if (threadRastersMemory > availMemory / 2) {
+        return RasterAccumulationMode.STRIPED;
+      }
+    }
+    return mode;
+  }
+
+  AbstractRaster createThreadRaster(int pThreadId) {
+    // progressive renders: the main raster is tonemapped while rendering, so all threads get their own raster
+    if (accumulationMode == RasterAccumulationMode.THREAD_LOCAL && progressive) {
+      return new DirtyTileRaster(allocRaster());
+    }
+    // the first thread writes directly into the main raster, all other threads get their own raster in THREAD_LOCAL mode  
+    else if (accumulationMode == RasterAccumulationMode.THREAD_LOCAL && pThreadId > 0) {
+      return allocRaster();
+    }
+    else {
+      return raster;
+    }
+  }
+
+  // progressive renders: moves the samples of a thread-local raster into the shared raster, called by the thread itself
+  void flushThreadRaster(AbstractRaster pThreadRaster) {
+    if (pThreadRaster instanceof DirtyTileRaster) {
+      ((StripedRaster) raster).addDirtyTiles((DirtyTileRaster) pThreadRaster);
+    }
+  }
+
+  // the raster of a progressive render, which is tonemapped by the ProgressivePreview
+  StripedRaster getProgressiveRaster() {
+    return (StripedRaster) raster;
+  }
+
+  private void mergeThreadRasters(List<FlameRenderThread> pThreads) {
+    for (FlameRenderThread thread : pThreads) {
+      if (thread.getRaster() != raster) {
+        raster.addRaster(thread.getRaster());
+        // the next part of the render may use it again
+        if (renderSession != null && sessionRasters.remove(thread.getRaster())) {
+          renderSession.releaseRaster(thread.getRaster());
+        }
+      }
+    }
+  }
+
+  private AbstractRaster allocRaster() {
+    Class<? extends AbstractRaster> rasterClass = prefs.getTinaRasterPointPrecision().getRasterClass();
+    AbstractRaster res;
+    if (renderSession != null) {
+      res = renderSession.obtainRaster(rasterClass, rasterWidth, rasterHeight);
+      if (res != null) {
+        sessionRasters.add(res);
+        return res;
+      }
+    }
     try {
-      rp = rpClass.newInstance();
+      res = rasterClass.newInstance();
     }
     catch (InstantiationException e) {
       throw new RuntimeException(e);
@@ -158,79 +281,51 @@ public class FlameRenderer {
     catch (IllegalAccessException e) {
       throw new RuntimeException(e);
     }
-    raster = rp.allocRaster(rasterWidth, rasterHeight);
+    res.allocRaster(rasterWidth, rasterHeight);
+    if (renderSession != null) {
+      sessionRasters.add(res);
+    }
+    return res;
   }
 
-  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint) {
-    if (doProject3D) {
-      double z = pPoint.z;
-      double px = cameraMatrix[0][0] * pPoint.x + cameraMatrix[1][0] * pPoint.y /*+ cameraMatrix[2][0] * z*/;
-      double py = cameraMatrix[0][1] * pPoint.x + cameraMatrix[1][1] * pPoint.y + cameraMatrix[2][1] * z;
-      double pz = cameraMatrix[0][2] * pPoint.x + cameraMatrix[1][2] * pPoint.y + cameraMatrix[2][2] * z;
-      double zr = 1.0 - flame.getCamPerspective() * pz;
-      if (flame.getDimishZ() > EPSILON) {
-        double zdist = (flame.getCamZ() - pz);
-        if (zdist > 0.0) {
-          pProjectedPoint.intensity = exp(-zdist * zdist * flame.getDimishZ());
-        }
-        else {
-          pProjectedPoint.intensity = 1.0;
-        }
-      }
-      else {
-        pProjectedPoint.intensity = 1.0;
-      }
-
-      if (useDOF) {
-        if (legacyDOF) {
-          double zdist = (flame.getCamZ() - pz);
-          if (zdist > 0.0) {
-            double dr = randGen.random() * camDOF_10 * zdist;
-            double a = 2.0 * M_PI * randGen.random();
-            double dsina = sin(a);
-            double dcosa = cos(a);
-            pPoint.x = (px + dr * dcosa) / zr;
-            pPoint.y = (py + dr * dsina) / zr;
-          }
-          else {
-            pPoint.x = px / zr;
-            pPoint.y = py / zr;
-          }
-        }
-        else {
-          double xdist = (px - flame.getFocusX());
-          double ydist = (py - flame.getFocusY());
-          double zdist = (pz - flame.getFocusZ());
-          double dist = Math.pow(xdist * xdist + ydist * ydist + zdist * zdist, 1 / flame.getCamDOFExponent()) - flame.getCamDOFArea();
-          if (dist > 0.05) {
-            double dr = randGen.random() * camDOF_10 * dist;
-            double a = 2.0 * M_PI * randGen.random();
-            double dsina = sin(a);
-            double dcosa = cos(a);
-            pPoint.x = (px + dr * dcosa) / zr;
-            pPoint.y = (py + dr * dsina) / zr;
-          }
-          else {
-            pPoint.x = px / zr;
-            pPoint.y = py / zr;
-          }
-        }
-      }
-      else {
-        pPoint.x = px / zr;
-        pPoint.y = py / zr;
+  // hands the rasters back to the session after the render, so they must not be accessed anymore
+  private void releaseSessionRasters() {
+    if (sessionRasters.size() > 0) {
+      for (AbstractRaster sessionRaster : sessionRasters) {
+        renderSession.releaseRaster(sessionRaster);
       }
+      sessionRasters.clear();
+      raster = null;
+    }
+  }
+
+  RenderColor[] createRenderPalette(RGBPalette pPalette, int pWhiteLevel) {
+    return renderSession != null ? renderSession.getRenderPalette(pPalette, pWhiteLevel) : pPalette.createRenderPalette(pWhiteLevel);
+  }
+
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint) {
+    return project(pPoint, pProjectedPoint, randGen);
+  }
+
+  // render threads pass their own generator (used for DOF), so they do not share the one of the renderer
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+    return projection.project(pPoint, pProjectedPoint, pRandGen);
+  }
+
+  // called once per render by initView(), after init3D()
+  protected AbstractProjection createProjection() {
+    if (!doProject3D) {
+      return new Projection2D(this);
+    }
+    else if (!useDOF) {
+      return new Projection3D(this);
+    }
+    else if (legacyDOF) {
+      return new Projection3DLegacyDOF(this);
     }
     else {
-      pProjectedPoint.intensity = 1.0;
-    }
-    pProjectedPoint.x = pPoint.x * cosa + pPoint.y * sina + rcX;
-    if ((pProjectedPoint.x < 0) || (pProjectedPoint.x > camW))
-      return false;
-    pProjectedPoint.y = pPoint.y * cosa - pPoint.x * sina + rcY;
-    if ((pProjectedPoint.y < 0) || (pProjectedPoint.y > camH))
-      return false;
-    return true;
+      return new Projection3DDOF(this);
+    }
   }
 
   public RenderedFlame finishRenderFlame(long pSampleCount) {
@@ -252,6 +347,7 @@ public class FlameRenderer {
   }
 
   public RenderedFlame renderFlame(RenderInfo pRenderInfo) {
+    renderInfo = pRenderInfo;
     RenderedFlame res = new RenderedFlame();
     res.init(pRenderInfo);
 
@@ -279,57 +375,126 @@ public class FlameRenderer {
       SimpleHDRImage hdrIntensityMapImg = renderHDRIntensityMap ? res.getHDRIntensityMap() : null;
 
       if (renderNormal) {
-        initRaster(img.getImageWidth(), img.getImageHeight());
+        initRaster(img.getImageWidth(), img.getImageHeight(), false);
       }
       else if (renderHDR) {
-        initRaster(hdrImg.getImageWidth(), hdrImg.getImageHeight());
+        initRaster(hdrImg.getImageWidth(), hdrImg.getImageHeight(), false);
       }
       else if (renderHDRIntensityMap) {
-        initRaster(hdrIntensityMapImg.getImageWidth(), hdrIntensityMapImg.getImageHeight());
+        initRaster(hdrIntensityMapImg.getImageWidth(), hdrIntensityMapImg.getImageHeight(), false);
       }
       else {
         throw new IllegalStateException();
       }
 
-      init3D();
-      initView();
-      List<Flame> renderFlames = new ArrayList<Flame>();
-      for (int t = 0; t < prefs.getTinaRenderThreads(); t++) {
-        Flame renderFlame = flame.makeCopy();
-        renderFlames.add(renderFlame);
-        for (Layer layer : renderFlame.getLayers()) {
-          layer.refreshModWeightTables(flameTransformationContext);
+      forceAbort = false;
+      statistics = null;
+      iterationSamples = 0;
+      iterationNanos = 0;
+      if (resumeCheckpoint != null) {
+        // the checkpoint holds the state of a render of a single part
+        resumeCheckpoint.readRaster(raster);
+        init3D();
+        initView();
+        FlameRenderThreadState state[] = resumeCheckpoint.getState();
+        iterate(0, 1, createRenderFlames(flame, state.length), state);
+      }
+      else if (motionBlurFlames != null && motionBlurFlames.size() > 1) {
+        // the samples of the frame are distributed over the time steps, each one with its own camera and transforms
+        int timeSteps = motionBlurFlames.size();
+        for (int i = 0; i < timeSteps && !forceAbort; i++) {
+          Flame timeFlame = motionBlurFlames.get(i);
+          init3D(timeFlame);
+          initView(timeFlame);
+          randomStreamOffset = i * renderThreads;
+          iterate(i, timeSteps, createRenderFlames(timeFlame, renderThreads), null);
         }
+        randomStreamOffset = 0;
+        init3D();
+        initView();
+      }
+      else {
+        init3D();
+        initView();
+        iterate(0, 1, createRenderFlames(flame, renderThreads), null);
+      }
+      if (deterministic) {
+        res.setRasterChecksum(calcRasterChecksum());
       }
-      forceAbort = false;
-      iterate(0, 1, renderFlames);
       if (!forceAbort) {
+        long t0 = System.nanoTime();
         if (flame.getSampleDensity() <= 10.0 || renderScale > 1) {
           renderImageSimple(img);
         }
         else {
           renderImage(img, hdrImg, hdrIntensityMapImg);
         }
+        if (statistics != null) {
+          statistics.setFilterNanos(System.nanoTime() - t0);
+          res.setStatistics(statistics);
+          RenderStatisticsMonitor.getInstance().publish(statistics);
+        }
       }
     }
+    catch (IOException ex) {
+      throw new RuntimeException(ex);
+    }
     finally {
       flame.setCamZoom(origZoom);
+      releaseSessionRasters();
     }
     return res;
   }
 
+  // batch counterpart of resumeRenderFlame: continues the render of a checkpoint (see setCheckpoint) until all samples
+  // are done. The flame and the render info of the checkpoint replace the ones of this renderer.
+  public RenderedFlame renderFlameFromCheckpoint(String pAbsolutePath) {
+    JWFRenderCheckpoint checkpoint;
+    try {
+      checkpoint = JWFRenderCheckpoint.read(pAbsolutePath);
+    }
+    catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+    flame.assign(checkpoint.getFlame());
+    resumeCheckpoint = checkpoint;
+    try {
+      return renderFlame(checkpoint.getRenderInfo());
+    }
+    finally {
+      resumeCheckpoint = null;
+    }
+  }
+
   private void renderImage(SimpleImage pImage, SimpleHDRImage pHDRImage, SimpleHDRImage pHDRIntensityMap) {
     if (renderScale > 1) {
       throw new IllegalArgumentException("renderScale != 1");
     }
+    int imgWidth, imgHeight;
+    if (pImage != null) {
+      imgWidth = pImage.getImageWidth();
+      imgHeight = pImage.getImageHeight();
+    }
+    else if (pHDRImage != null) {
+      imgWidth = pHDRImage.getImageWidth();
+      imgHeight = pHDRImage.getImageHeight();
+    }
+    else if (pHDRIntensityMap != null) {
+      imgWidth = pHDRIntensityMap.getImageWidth();
+      imgHeight = pHDRIntensityMap.getImageHeight();
+    }
+    else {
+      throw new IllegalStateException();
+    }
+    int threadCount = renderThreads;
+    RenderScheduler scheduler = RenderScheduler.getInstance(prefs);
+
     boolean useDEFilter = flame.isDeFilterEnabled() && (flame.getDeFilterMaxRadius() > 0);
-    AbstractRasterPoint accumRaster[][] = null;
+    AbstractRaster accumRaster = null;
     Flam3DEFilter deFilter = null;
     if (useDEFilter) {
       try {
-        Class<? extends AbstractRasterPoint> rpClass = prefs.getTinaRasterPointPrecision().getRasterPointClass();
-        AbstractRasterPoint rp = rpClass.newInstance();
-        accumRaster = rp.allocRaster(rasterWidth, rasterHeight);
+        accumRaster = allocRaster();
       }
       catch (Exception ex) {
         ex.printStackTrace();
@@ -339,83 +504,70 @@ public class FlameRenderer {
     }
 
     if (useDEFilter) {
-      if (pImage != null) {
-        deFilter.setRaster(accumRaster, raster, rasterWidth, rasterHeight, pImage.getImageWidth(), pImage.getImageHeight());
-      }
-      else if (pHDRImage != null) {
-        deFilter.setRaster(accumRaster, raster, rasterWidth, rasterHeight, pHDRImage.getImageWidth(), pHDRImage.getImageHeight());
-      }
-      else if (pHDRIntensityMap != null) {
-        deFilter.setRaster(accumRaster, raster, rasterWidth, rasterHeight, pHDRIntensityMap.getImageWidth(), pHDRIntensityMap.getImageHeight());
+      deFilter.setRaster(accumRaster, raster, rasterWidth, rasterHeight, imgWidth, imgHeight);
+      // The DE filter spreads each point over its neighbours. Bands which are processed at the same time are separated 
+      // by a band which is at least as high as the filter, so they never write into the same rows of the accumRaster.
+      int minBandHeight = 2 * deFilter.getMaxFilterRadius() + 1;
+      int bandCount = Math.min(2 * threadCount, imgHeight / minBandHeight);
+      if (bandCount < 2) {
+        new DEFilterThread(deFilter, 0, imgHeight, imgWidth).run();
       }
       else {
-        throw new IllegalStateException();
-      }
-
-      for (int i = 0; i < pImage.getImageHeight(); i++) {
-        for (int j = 0; j < pImage.getImageWidth(); j++) {
-          deFilter.transformPoint(j, i);
+        int rowsPerBand = imgHeight / bandCount;
+        for (int phase = 0; phase < 2; phase++) {
+          List<DEFilterThread> threads = new ArrayList<DEFilterThread>();
+          for (int i = phase; i < bandCount; i += 2) {
+            int startRow = i * rowsPerBand;
+            int endRow = i < bandCount - 1 ? startRow + rowsPerBand : imgHeight;
+            threads.add(new DEFilterThread(deFilter, startRow, endRow, imgWidth));
+          }
+          scheduler.invokeAll(threads);
         }
       }
       raster = null;
       raster = accumRaster;
     }
 
-    LogDensityPoint logDensityPnt = new LogDensityPoint();
-    if (pImage != null) {
-      logDensityFilter.setRaster(raster, rasterWidth, rasterHeight, pImage.getImageWidth(), pImage.getImageHeight());
-    }
-    else if (pHDRImage != null) {
-      logDensityFilter.setRaster(raster, rasterWidth, rasterHeight, pHDRImage.getImageWidth(), pHDRImage.getImageHeight());
-    }
-    else if (pHDRIntensityMap != null) {
-      logDensityFilter.setRaster(raster, rasterWidth, rasterHeight, pHDRIntensityMap.getImageWidth(), pHDRIntensityMap.getImageHeight());
-    }
-    else {
-      throw new IllegalStateException();
+    logDensityFilter.setRaster(raster, rasterWidth, rasterHeight, imgWidth, imgHeight);
+
+    int rowsPerThread = imgHeight / threadCount;
+    if (rowsPerThread < 1) {
+      threadCount = 1;
+      rowsPerThread = imgHeight;
     }
 
     if (pImage != null) {
-      GammaCorrectedRGBPoint rbgPoint = new GammaCorrectedRGBPoint();
-      for (int i = 0; i < pImage.getImageHeight(); i++) {
-        for (int j = 0; j < pImage.getImageWidth(); j++) {
-          if (useDEFilter) {
-            logDensityFilter.transformPointPastDE(logDensityPnt, j, i);
-          }
-          else {
-            logDensityFilter.transformPoint(logDensityPnt, j, i);
-          }
-          gammaCorrectionFilter.transformPoint(logDensityPnt, rbgPoint);
-          pImage.setARGB(j, i, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
-        }
+      List<RenderImageThread> threads = new ArrayList<RenderImageThread>();
+      for (int i = 0; i < threadCount; i++) {
+        int startRow = i * rowsPerThread;
+        int endRow = i < threadCount - 1 ? startRow + rowsPerThread : imgHeight;
+        threads.add(new RenderImageThread(startRow, endRow, pImage, useDEFilter));
       }
+      scheduler.invokeAll(threads);
     }
 
     if (pHDRImage != null) {
-      GammaCorrectedHDRPoint rbgPoint = new GammaCorrectedHDRPoint();
       boolean hasBGColor = flame.getBGColorRed() > 0 || flame.getBGColorGreen() > 0 || flame.getBGColorBlue() > 0;
-      boolean setBG = false;
+      boolean bgMap[][] = hasBGColor ? new boolean[pHDRImage.getImageHeight()][pHDRImage.getImageWidth()] : null;
+      List<RenderImageHDRThread> threads = new ArrayList<RenderImageHDRThread>();
+      for (int i = 0; i < threadCount; i++) {
+        int startRow = i * rowsPerThread;
+        int endRow = i < threadCount - 1 ? startRow + rowsPerThread : imgHeight;
+        threads.add(new RenderImageHDRThread(startRow, endRow, pHDRImage, bgMap));
+      }
+      scheduler.invokeAll(threads);
       if (hasBGColor) {
-        boolean bgMap[][] = new boolean[pHDRImage.getImageHeight()][pHDRImage.getImageWidth()];
+        boolean setBG = false;
         double minLum = Double.MAX_VALUE, maxLum = 0.0;
-        for (int i = 0; i < pHDRImage.getImageHeight(); i++) {
-          for (int j = 0; j < pHDRImage.getImageWidth(); j++) {
-            logDensityFilter.transformPointHDR(logDensityPnt, j, i);
-            gammaCorrectionFilter.transformPointHDR(logDensityPnt, rbgPoint);
-            if (rbgPoint.red < 0.0) {
-              bgMap[i][j] = true;
-              setBG = true;
-            }
-            else {
-              pHDRImage.setRGB(j, i, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
-              double lum = (rbgPoint.red * 0.299 + rbgPoint.green * 0.588 + rbgPoint.blue * 0.113);
-              if (lum > maxLum) {
-                maxLum = lum;
-              }
-              else if (lum < minLum) {
-                minLum = lum;
-              }
-            }
+        for (RenderImageHDRThread thread : threads) {
+          if (thread.isSetBG()) {
+            setBG = true;
+          }
+          if (thread.getMinLum() < minLum) {
+            minLum = thread.getMinLum();
+          }
+          if (thread.getMaxLum() > maxLum) {
+            maxLum = thread.getMaxLum();
           }
         }
         if (setBG) {
@@ -432,25 +584,177 @@ public class FlameRenderer {
           }
         }
       }
-      else {
-        for (int i = 0; i < pHDRImage.getImageHeight(); i++) {
-          for (int j = 0; j < pHDRImage.getImageWidth(); j++) {
+    }
+
+    if (pHDRIntensityMap != null) {
+      List<RenderHDRIntensityMapThread> threads = new ArrayList<RenderHDRIntensityMapThread>();
+      for (int i = 0; i < threadCount; i++) {
+        int startRow = i * rowsPerThread;
+        int endRow = i < threadCount - 1 ? startRow + rowsPerThread : imgHeight;
+        threads.add(new RenderHDRIntensityMapThread(startRow, endRow, pHDRIntensityMap));
+      }
+      scheduler.invokeAll(threads);
+    }
+  }
+
+  private class DEFilterThread implements Runnable {
+    private final Flam3DEFilter deFilter;
+    private final int startRow, endRow;
+    private final int width;
+    private final RasterPoint rasterPoint;
+
+    public DEFilterThread(Flam3DEFilter pDEFilter, int pStartRow, int pEndRow, int pWidth) {
+      deFilter = pDEFilter;
+      startRow = pStartRow;
+      endRow = pEndRow;
+      width = pWidth;
+      rasterPoint = new RasterPoint();
+    }
+
+    @Override
+    public void run() {
+      for (int i = startRow; i < endRow; i++) {
+        for (int j = 0; j < width; j++) {
+          deFilter.transformPoint(rasterPoint, j, i);
+        }
+      }
+    }
+
+  }
+
+  private class RenderImageThread implements Runnable {
+    private final int startRow, endRow;
+    private final LogDensityPoint logDensityPnt;
+    private final GammaCorrectedRGBPoint rbgPoint;
+    private final SimpleImage img;
+    private final boolean pastDE;
+    private final LogDensityFilter.SeparableFilter separableFilter;
+
+    public RenderImageThread(int pStartRow, int pEndRow, SimpleImage pImg, boolean pPastDE) {
+      startRow = pStartRow;
+      endRow = pEndRow;
+      logDensityPnt = new LogDensityPoint();
+      rbgPoint = new GammaCorrectedRGBPoint();
+      img = pImg;
+      pastDE = pPastDE;
+      separableFilter = logDensityFilter.getNoiseFilterSize() > 1 ? logDensityFilter.createSeparableFilter(!pastDE, img.getImageWidth()) : null;
+    }
+
+    @Override
+    public void run() {
+      for (int i = startRow; i < endRow; i++) {
+        for (int j = 0; j < img.getImageWidth(); j++) {
+          if (separableFilter != null) {
+            separableFilter.transformPoint(logDensityPnt, j, i);
+          }
+          else if (pastDE) {
+            logDensityFilter.transformPointPastDE(logDensityPnt, j, i);
+          }
+          else {
+            logDensityFilter.transformPoint(logDensityPnt, j, i);
+          }
+          gammaCorrectionFilter.transformPoint(logDensityPnt, rbgPoint);
+          img.setARGB(j, i, rbgPoint.getARGBValue());
+        }
+      }
+    }
+
+  }
+
+  private class RenderImageHDRThread implements Runnable {
+    private final int startRow, endRow;
+    private final LogDensityPoint logDensityPnt;
+    private final GammaCorrectedHDRPoint rbgPoint;
+    private final SimpleHDRImage img;
+    private final boolean bgMap[][];
+    private final LogDensityFilter.SeparableFilter separableFilter;
+    private boolean setBG;
+    private double minLum = Double.MAX_VALUE, maxLum = 0.0;
+
+    public RenderImageHDRThread(int pStartRow, int pEndRow, SimpleHDRImage pImg, boolean pBGMap[][]) {
+      startRow = pStartRow;
+      endRow = pEndRow;
+      logDensityPnt = new LogDensityPoint();
+      rbgPoint = new GammaCorrectedHDRPoint();
+      img = pImg;
+      bgMap = pBGMap;
+      separableFilter = logDensityFilter.getNoiseFilterSize() > 1 ? logDensityFilter.createSeparableFilter(false, img.getImageWidth()) : null;
+    }
+
+    @Override
+    public void run() {
+      for (int i = startRow; i < endRow; i++) {
+        for (int j = 0; j < img.getImageWidth(); j++) {
+          if (separableFilter != null) {
+            separableFilter.transformPoint(logDensityPnt, j, i);
+          }
+          else {
             logDensityFilter.transformPointHDR(logDensityPnt, j, i);
-            gammaCorrectionFilter.transformPointHDR(logDensityPnt, rbgPoint);
-            pHDRImage.setRGB(j, i, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
+          }
+          gammaCorrectionFilter.transformPointHDR(logDensityPnt, rbgPoint);
+          if (bgMap != null && rbgPoint.red < 0.0) {
+            bgMap[i][j] = true;
+            setBG = true;
+          }
+          else {
+            img.setRGB(j, i, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
+            if (bgMap != null) {
+              double lum = (rbgPoint.red * 0.299 + rbgPoint.green * 0.588 + rbgPoint.blue * 0.113);
+              if (lum > maxLum) {
+                maxLum = lum;
+              }
+              if (lum < minLum) {
+                minLum = lum;
+              }
+            }
           }
         }
       }
     }
 
-    if (pHDRIntensityMap != null) {
-      for (int i = 0; i < pHDRIntensityMap.getImageHeight(); i++) {
-        for (int j = 0; j < pHDRIntensityMap.getImageWidth(); j++) {
-          logDensityFilter.transformPointHDR(logDensityPnt, j, i);
-          pHDRIntensityMap.setRGB(j, i, (float) logDensityPnt.intensity, (float) logDensityPnt.intensity, (float) logDensityPnt.intensity);
+    public boolean isSetBG() {
+      return setBG;
+    }
+
+    public double getMinLum() {
+      return minLum;
+    }
+
+    public double getMaxLum() {
+      return maxLum;
+    }
+
+  }
+
+  private class RenderHDRIntensityMapThread implements Runnable {
+    private final int startRow, endRow;
+    private final LogDensityPoint logDensityPnt;
+    private final SimpleHDRImage img;
+    private final LogDensityFilter.SeparableFilter separableFilter;
+
+    public RenderHDRIntensityMapThread(int pStartRow, int pEndRow, SimpleHDRImage pImg) {
+      startRow = pStartRow;
+      endRow = pEndRow;
+      logDensityPnt = new LogDensityPoint();
+      img = pImg;
+      separableFilter = logDensityFilter.getNoiseFilterSize() > 1 ? logDensityFilter.createSeparableFilter(false, img.getImageWidth()) : null;
+    }
+
+    @Override
+    public void run() {
+      for (int i = startRow; i < endRow; i++) {
+        for (int j = 0; j < img.getImageWidth(); j++) {
+          if (separableFilter != null) {
+            separableFilter.transformPoint(logDensityPnt, j, i);
+          }
+          else {
+            logDensityFilter.transformPointHDR(logDensityPnt, j, i);
+          }
+          img.setRGB(j, i, (float) logDensityPnt.intensity, (float) logDensityPnt.intensity, (float) logDensityPnt.intensity);
         }
       }
     }
+
   }
 
   public class RenderImageSimpleScaledThread implements Runnable {
@@ -459,7 +763,6 @@ public class FlameRenderer {
     private final GammaCorrectedRGBPoint rbgPoint;
     private final SimpleImage img;
     private final SimpleImage newImg;
-    private boolean done;
 
     public RenderImageSimpleScaledThread(int pStartRow, int pEndRow, SimpleImage pImg, SimpleImage pNewImg) {
       startRow = pStartRow;
@@ -468,12 +771,10 @@ public class FlameRenderer {
       rbgPoint = new GammaCorrectedRGBPoint();
       img = pImg;
       newImg = pNewImg;
-      done = false;
     }
 
     @Override
     public void run() {
-      done = false;
       for (int i = startRow; i < endRow; i++) {
         for (int j = 0; j < img.getImageWidth(); j++) {
           logDensityFilter.transformPointSimple(logDensityPnt, j, i);
@@ -481,17 +782,13 @@ public class FlameRenderer {
           int x = j * renderScale;
           int y = i * renderScale;
 
-          newImg.setARGB(x, y, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
-          newImg.setARGB(x + 1, y, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
-          newImg.setARGB(x, y + 1, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
-          newImg.setARGB(x + 1, y + 1, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
+          int argb = rbgPoint.getARGBValue();
+          newImg.setARGB(x, y, argb);
+          newImg.setARGB(x + 1, y, argb);
+          newImg.setARGB(x, y + 1, argb);
+          newImg.setARGB(x + 1, y + 1, argb);
         }
       }
-      done = true;
-    }
-
-    public boolean isDone() {
-      return done;
     }
 
   }
@@ -501,7 +798,6 @@ public class FlameRenderer {
     private final LogDensityPoint logDensityPnt;
     private final GammaCorrectedRGBPoint rbgPoint;
     private final SimpleImage img;
-    private boolean done;
 
     public RenderImageSimpleThread(int pStartRow, int pEndRow, SimpleImage pImg) {
       startRow = pStartRow;
@@ -509,30 +805,23 @@ public class FlameRenderer {
       logDensityPnt = new LogDensityPoint();
       rbgPoint = new GammaCorrectedRGBPoint();
       img = pImg;
-      done = false;
     }
 
     @Override
     public void run() {
-      done = false;
       for (int i = startRow; i < endRow; i++) {
         for (int j = 0; j < img.getImageWidth(); j++) {
           logDensityFilter.transformPointSimple(logDensityPnt, j, i);
           gammaCorrectionFilter.transformPointSimple(logDensityPnt, rbgPoint);
-          img.setARGB(j, i, rbgPoint.alpha, rbgPoint.red, rbgPoint.green, rbgPoint.blue);
+          img.setARGB(j, i, rbgPoint.getARGBValue());
         }
       }
-      done = true;
-    }
-
-    public boolean isDone() {
-      return done;
     }
 
   }
 
   private void renderImageSimple(SimpleImage pImage) {
-    int threadCount = prefs.getTinaRenderThreads() - 1;
+    int threadCount = renderThreads - 1;
     if (threadCount < 1)
       threadCount = 1;
     logDensityFilter.setRaster(raster, rasterWidth, rasterHeight, pImage.getImageWidth(), pImage.getImageHeight());
@@ -560,30 +849,10 @@ public class FlameRenderer {
         List<RenderImageSimpleScaledThread> threads = new ArrayList<RenderImageSimpleScaledThread>();
         for (int i = 0; i < threadCount; i++) {
           int startRow = i * rowsPerThread;
-          int endRow = i < rowsPerThread - 1 ? startRow + rowsPerThread : pImage.getImageHeight();
-          RenderImageSimpleScaledThread thread = new RenderImageSimpleScaledThread(startRow, endRow, pImage, newImg);
-          threads.add(thread);
-          thread.run();
-        }
-        while (true) {
-          boolean ready = true;
-          for (RenderImageSimpleScaledThread t : threads) {
-            if (!t.isDone()) {
-              ready = false;
-              break;
-            }
-          }
-          if (!ready) {
-            try {
-              Thread.sleep(1);
-            }
-            catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-          }
-          else
-            break;
+          int endRow = i < threadCount - 1 ? startRow + rowsPerThread : pImage.getImageHeight();
+          threads.add(new RenderImageSimpleScaledThread(startRow, endRow, pImage, newImg));
         }
+        RenderScheduler.getInstance(prefs).invokeAll(threads);
       }
       pImage.setBufferedImage(newImg.getBufferedImg(), newImg.getImageWidth(), newImg.getImageHeight());
     }
@@ -604,30 +873,10 @@ public class FlameRenderer {
         List<RenderImageSimpleThread> threads = new ArrayList<RenderImageSimpleThread>();
         for (int i = 0; i < threadCount; i++) {
           int startRow = i * rowsPerThread;
-          int endRow = i < rowsPerThread - 1 ? startRow + rowsPerThread : pImage.getImageHeight();
-          RenderImageSimpleThread thread = new RenderImageSimpleThread(startRow, endRow, pImage);
-          threads.add(thread);
-          thread.run();
-        }
-        while (true) {
-          boolean ready = true;
-          for (RenderImageSimpleThread t : threads) {
-            if (!t.isDone()) {
-              ready = false;
-              break;
-            }
-          }
-          if (!ready) {
-            try {
-              Thread.sleep(1);
-            }
-            catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-          }
-          else
-            break;
+          int endRow = i < threadCount - 1 ? startRow + rowsPerThread : pImage.getImageHeight();
+          threads.add(new RenderImageSimpleThread(startRow, endRow, pImage));
         }
+        RenderScheduler.getInstance(prefs).invokeAll(threads);
       }
     }
     else {
@@ -650,12 +899,31 @@ public class FlameRenderer {
     }
   }
 
-  private void iterate(int pPart, int pParts, List<Flame> pFlames) {
-    long nSamples = (long) ((flame.getSampleDensity() * (double) rasterSize + 0.5));
+  // the copies of the flame for the render threads
+  private List<Flame> createRenderFlames(Flame pFlame, int pThreads) {
+    List<Flame> res = new ArrayList<Flame>();
+    for (int t = 0; t < pThreads; t++) {
+      Flame renderFlame = pFlame.makeCopy();
+      res.add(renderFlame);
+      for (Layer layer : renderFlame.getLayers()) {
+        layer.refreshModWeightTables(flameTransformationContext);
+      }
+      if (collectStatistics) {
+        attachStatistics(renderFlame);
+      }
+    }
+    return res;
+  }
+
+  // renders the part pPart of pParts, each part gets the same share of the samples. pState (optional) is the saved
+  // state of the threads to continue.
+  private void iterate(int pPart, int pParts, List<Flame> pFlames, FlameRenderThreadState pState[]) {
+    long nSamples = (long) ((flame.getSampleDensity() * (double) rasterSize + 0.5)) / pParts;
     //    if (flame.getSampleDensity() > 50) {
     //      System.err.println("SAMPLES: " + nSamples);
     //    }
-    int PROGRESS_STEPS = 50;
+    final int PROGRESS_STEPS = 50;
+    final long PROGRESS_INTERVAL = 10;
     if (progressUpdater != null && pPart == 0) {
       progressUpdater.initProgress((PROGRESS_STEPS - 1) * pParts);
     }
@@ -665,23 +933,21 @@ public class FlameRenderer {
     int nThreads = pFlames.size();
     for (int i = 0; i < nThreads; i++) {
       FlameRenderThread t = createFlameRenderThread(i, pFlames.get(i), nSamples / (long) nThreads);
+      if (pState != null) {
+        t.setResumeState(pState[i]);
+      }
       runningThreads.add(t);
-      new Thread(t).start();
     }
+    long startNanos = System.nanoTime();
+    startThreads(runningThreads);
+    long startTime = System.currentTimeMillis();
+    // a checkpoint can only resume a render of a single part
+    long nextCheckpoint = checkpointFilename != null && pParts == 1 ? startTime + checkpointInterval : Long.MAX_VALUE;
     boolean done = false;
     while (!done) {
-      try {
-        Thread.sleep(10);
-      }
-      catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-      done = true;
+      done = awaitThreads(runningThreads, PROGRESS_INTERVAL);
       long currSamples = 0;
       for (FlameRenderThread t : runningThreads) {
-        if (!t.isFinished()) {
-          done = false;
-        }
         currSamples += t.getCurrSample();
       }
       if (currSamples >= nextProgressUpdate) {
@@ -691,7 +957,118 @@ public class FlameRenderer {
           nextProgressUpdate = (currProgress + 1) * sampleProgressUpdateStep;
         }
       }
+      if (!done && !forceAbort && System.currentTimeMillis() >= nextCheckpoint) {
+        writePeriodicCheckpoint(runningThreads, currSamples, System.currentTimeMillis() - startTime);
+        nextCheckpoint = System.currentTimeMillis() + checkpointInterval;
+      }
+    }
+    iterationNanos += System.nanoTime() - startNanos;
+    for (FlameRenderThread t : runningThreads) {
+      iterationSamples += t.getCurrSample();
+    }
+    if (collectStatistics) {
+      statistics = collectStatistics(runningThreads, pFlames, System.nanoTime() - startNanos);
+    }
+    mergeThreadRasters(runningThreads);
+    runningThreads = null;
+  }
+
+  private void attachStatistics(Flame pFlame) {
+    for (int i = 0; i < pFlame.getLayers().size(); i++) {
+      Layer layer = pFlame.getLayers().get(i);
+      for (int j = 0; j < layer.getXForms().size(); j++) {
+        attachStatistics(layer.getXForms().get(j), "layer " + (i + 1) + " / xform " + (j + 1));
+      }
+      for (int j = 0; j < layer.getFinalXForms().size(); j++) {
+        attachStatistics(layer.getFinalXForms().get(j), "layer " + (i + 1) + " / final " + (j + 1));
+      }
+    }
+  }
+
+  private void attachStatistics(XForm pXForm, String pName) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < pXForm.getVariationCount(); i++) {
+      Variation var = pXForm.getVariation(i);
+      var.setStatistics(new VariationStatistics(var.getFunc().getName()));
+      sb.append(i > 0 ? " " : "").append(var.getFunc().getName());
+    }
+    pXForm.setStatistics(new XFormStatistics(pName + " (" + sb.toString() + ")"));
+  }
+
+  private RenderStatistics collectStatistics(List<FlameRenderThread> pThreads, List<Flame> pFlames, long pIterationNanos) {
+    RenderStatistics res = new RenderStatistics();
+    long samples = 0;
+    for (FlameRenderThread thread : pThreads) {
+      samples += thread.getCurrSample();
+      if (thread.getStatistics() != null) {
+        res.add(thread.getStatistics());
+      }
+    }
+    res.setSamples(samples);
+    res.setIterationNanos(pIterationNanos);
+    for (Flame renderFlame : pFlames) {
+      for (Layer layer : renderFlame.getLayers()) {
+        List<XForm> xForms = new ArrayList<XForm>(layer.getXForms());
+        xForms.addAll(layer.getFinalXForms());
+        for (XForm xForm : xForms) {
+          if (xForm.getStatistics() != null) {
+            res.addXFormStatistics(xForm.getStatistics());
+          }
+          for (int i = 0; i < xForm.getVariationCount(); i++) {
+            Variation var = xForm.getVariation(i);
+            if (var.getStatistics() != null) {
+              res.addVariationStatistics(var.getStatistics());
+            }
+          }
+        }
+      }
     }
+    return res;
+  }
+
+  public long getIterationSamples() {
+    return iterationSamples;
+  }
+
+  public long getIterationNanos() {
+    return iterationNanos;
+  }
+
+  public boolean isCollectStatistics() {
+    return collectStatistics;
+  }
+
+  // also enabled by the preferences (tina.render.statistics)
+  public void setCollectStatistics(boolean pCollectStatistics) {
+    collectStatistics = pCollectStatistics;
+  }
+
+  public int getSampleBatchSize() {
+    return sampleBatchSize;
+  }
+
+  // number of samples each render thread iterates (per layer) before it projects and draws them, 1 means no batching
+  public void setSampleBatchSize(int pSampleBatchSize) {
+    sampleBatchSize = pSampleBatchSize < 1 ? 1 : (pSampleBatchSize > MAX_SAMPLE_BATCH_SIZE ? MAX_SAMPLE_BATCH_SIZE : pSampleBatchSize);
+  }
+
+  public List<Flame> getMotionBlurFlames() {
+    return motionBlurFlames;
+  }
+
+  // the flames at the times of the shutter interval (with the size of the flame), the samples of the render are
+  // distributed over them, null renders the flame at a single time
+  public void setMotionBlurFlames(List<Flame> pMotionBlurFlames) {
+    motionBlurFlames = pMotionBlurFlames;
+  }
+
+  public FlameRenderSession getRenderSession() {
+    return renderSession;
+  }
+
+  // rasters and render palettes are taken from the session and handed back at the end of renderFlame()
+  public void setRenderSession(FlameRenderSession pRenderSession) {
+    renderSession = pRenderSession;
   }
 
   private List<FlameRenderThread> startIterate(List<Flame> pFlames, FlameRenderThreadState pState[], boolean pStartThreads) {
@@ -702,19 +1079,70 @@ public class FlameRenderer {
       if (pState != null) {
         t.setResumeState(pState[i]);
       }
-      t.setTonemapper(new SampleTonemapper(flame, raster, rasterWidth, rasterHeight, imageWidth, imageHeight));
-      threads.add(t);
-      if (pStartThreads) {
-        new Thread(t).start();
+      // only used by the observers
+      if (iterationObservers != null && iterationObservers.size() > 0) {
+        t.setTonemapper(new SampleTonemapper(flame, raster, rasterWidth, rasterHeight, imageWidth, imageHeight));
       }
+      threads.add(t);
+    }
+    if (pStartThreads) {
+      startThreads(threads);
     }
     return threads;
   }
 
+  public void startThreads(List<FlameRenderThread> pThreads) {
+    RenderScheduler scheduler = RenderScheduler.getInstance(prefs);
+    for (FlameRenderThread thread : pThreads) {
+      thread.prepareStart();
+      scheduler.submit(thread);
+    }
+  }
+
+  // waits until the first unfinished thread has finished or the timeout has elapsed, returns true if all threads are finished 
+  private boolean awaitThreads(List<FlameRenderThread> pThreads, long pTimeoutMillis) {
+    for (FlameRenderThread thread : pThreads) {
+      if (!thread.isFinished()) {
+        try {
+          thread.awaitFinished(pTimeoutMillis);
+        }
+        catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+        break;
+      }
+    }
+    for (FlameRenderThread thread : pThreads) {
+      if (!thread.isFinished()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void cancelThreads(List<FlameRenderThread> pThreads) {
+    for (FlameRenderThread thread : pThreads) {
+      thread.cancel();
+    }
+    for (FlameRenderThread thread : pThreads) {
+      try {
+        thread.awaitFinished();
+      }
+      catch (InterruptedException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
   public void initView() {
-    double pixelsPerUnit = flame.getPixelsPerUnit() * flame.getCamZoom();
-    double corner_x = flame.getCentreX() - (double) imageWidth / pixelsPerUnit / 2.0;
-    double corner_y = flame.getCentreY() - (double) imageHeight / pixelsPerUnit / 2.0;
+    initView(flame);
+  }
+
+  private void initView(Flame pViewFlame) {
+    viewFlame = pViewFlame;
+    double pixelsPerUnit = pViewFlame.getPixelsPerUnit() * pViewFlame.getCamZoom();
+    double corner_x = pViewFlame.getCentreX() - (double) imageWidth / pixelsPerUnit / 2.0;
+    double corner_y = pViewFlame.getCentreY() - (double) imageHeight / pixelsPerUnit / 2.0;
     double t0 = borderWidth / pixelsPerUnit;
     double t1 = borderWidth / pixelsPerUnit;
     double t2 = (2 * maxBorderWidth - borderWidth) / pixelsPerUnit;
@@ -739,31 +1167,72 @@ public class FlameRenderer {
     bws = (rasterWidth - 0.5) * Xsize;
     bhs = (rasterHeight - 0.5) * Ysize;
 
-    cosa = cos(-M_PI * (flame.getCamRoll()) / 180.0);
-    sina = sin(-M_PI * (flame.getCamRoll()) / 180.0);
-    rcX = flame.getCentreX() * (1 - cosa) - flame.getCentreY() * sina - camX0;
-    rcY = flame.getCentreY() * (1 - cosa) + flame.getCentreX() * sina - camY0;
+    cosa = cos(-M_PI * (pViewFlame.getCamRoll()) / 180.0);
+    sina = sin(-M_PI * (pViewFlame.getCamRoll()) / 180.0);
+    rcX = pViewFlame.getCentreX() * (1 - cosa) - pViewFlame.getCentreY() * sina - camX0;
+    rcY = pViewFlame.getCentreY() * (1 - cosa) + pViewFlame.getCentreX() * sina - camY0;
+    projection = createProjection();
   }
 
   public void setRandomNumberGenerator(AbstractRandomGenerator random) {
     this.randGen = random;
   }
 
-  public void setProgressUpdater(ProgressUpdater pProgressUpdater) {
-    progressUpdater = pProgressUpdater;
+  // renders with a master seed are reproducible: each render thread gets its own stream derived from the seed.
+  // The generator type is passed explicitly (instead of taken from the prefs), so that the result does not depend on the prefs
+  public void setRandomSeed(long pRandomSeed, RandomGeneratorType pRandomGeneratorType) {
+    randomSeed = Long.valueOf(pRandomSeed);
+    randomSeedGeneratorType = pRandomGeneratorType;
+    randGen = RandomGeneratorFactory.getInstance(pRandomGeneratorType, pRandomSeed, 0);
+    flameTransformationContext = new FlameTransformationContext(this, randGen);
+    flameTransformationContext.setPreserveZCoordinate(flame.isPreserveZ());
+    flameTransformationContext.setPreview(preview);
   }
 
-  public AbstractRasterPoint getRasterPoint(double pX, double pY) {
-    int xIdx = (int) (bws * pX + 0.5);
-    int yIdx = (int) (bhs * pY + 0.5);
-    if (xIdx >= 0 && xIdx < rasterWidth && yIdx >= 0 && yIdx < rasterHeight) {
-      return raster[yIdx][xIdx];
+  public Long getRandomSeed() {
+    return randomSeed;
+  }
+
+  // A deterministic render of the same flame with the same quality, size and number of threads always produces a
+  // bit-identical raster: all threads use seeded generators and private rasters, which are merged in thread order.
+  public void setDeterministic(long pRandomSeed, RandomGeneratorType pRandomGeneratorType) {
+    deterministic = true;
+    setRandomSeed(pRandomSeed, pRandomGeneratorType);
+  }
+
+  public boolean isDeterministic() {
+    return deterministic;
+  }
+
+  // 64 bit FNV-1a hash of all raster points
+  private long calcRasterChecksum() {
+    long res = 0xcbf29ce484222325L;
+    RasterPoint rp = new RasterPoint();
+    for (int i = 0; i < rasterHeight; i++) {
+      for (int j = 0; j < rasterWidth; j++) {
+        raster.readRasterPoint(j, i, rp);
+        res = (res ^ Double.doubleToLongBits(rp.red)) * 0x100000001b3L;
+        res = (res ^ Double.doubleToLongBits(rp.green)) * 0x100000001b3L;
+        res = (res ^ Double.doubleToLongBits(rp.blue)) * 0x100000001b3L;
+        res = (res ^ rp.count) * 0x100000001b3L;
+      }
+    }
+    return res;
+  }
+
+  AbstractRandomGenerator createThreadRandomGenerator(int pThreadId) {
+    if (randomSeed != null) {
+      return RandomGeneratorFactory.getInstance(randomSeedGeneratorType, randomSeed.longValue(), randomStreamOffset + pThreadId + 1);
     }
     else {
-      return null;
+      return RandomGeneratorFactory.getInstance(prefs.getTinaRandomNumberGenerator(), pThreadId);
     }
   }
 
+  public void setProgressUpdater(ProgressUpdater pProgressUpdater) {
+    progressUpdater = pProgressUpdater;
+  }
+
   public void setRenderScale(int pRenderScale) {
     renderScale = pRenderScale;
   }
@@ -772,92 +1241,87 @@ public class FlameRenderer {
     return iterationObservers;
   }
 
-  private void pauseThreads(List<FlameRenderThread> pThreads) {
-    while (true) {
-      boolean done = true;
-      for (FlameRenderThread thread : pThreads) {
-        if (!thread.isFinished()) {
-          done = false;
-          thread.cancel();
-          try {
-            Thread.sleep(1);
-          }
-          catch (InterruptedException e) {
-            e.printStackTrace();
-          }
-          break;
-        }
-      }
-      if (done) {
-        break;
-      }
-    }
+  public void saveState(String pAbsolutePath, List<FlameRenderThread> pThreads, long pSampleCount, long pElapsedMilliseconds, QualityProfile pQualityProfile) {
+    saveState(pAbsolutePath, pThreads, pSampleCount, pElapsedMilliseconds, pQualityProfile, false);
   }
 
-  public void saveState(String pAbsolutePath, List<FlameRenderThread> pThreads, long pSampleCount, long pElapsedMilliseconds, QualityProfile pQualityProfile) {
-    pauseThreads(pThreads);
+  public void saveState(String pAbsolutePath, List<FlameRenderThread> pThreads, long pSampleCount, long pElapsedMilliseconds, QualityProfile pQualityProfile, boolean pCompress) {
+    cancelThreads(pThreads);
     // store thread state
     FlameRenderThreadState state[] = new FlameRenderThreadState[pThreads.size()];
     for (int i = 0; i < pThreads.size(); i++) {
       state[i] = pThreads.get(i).saveState();
     }
     try {
-      try {
-        ObjectOutputStream outputStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(pAbsolutePath)));
-        try {
-          // save header
-          JWFRenderFileHeader header = new JWFRenderFileHeader(pThreads.size(), flame.getWidth(), flame.getHeight(),
-              pSampleCount, pElapsedMilliseconds, 1, 1, (int) (flame.getSampleDensity() + 0.5),
-              true, false);
-          outputStream.writeObject(header);
-          // save flame
-          outputStream.writeObject(flame);
-          // save renderInfo          
-          outputStream.writeObject(renderInfo);
-          // save thread state
-          for (int i = 0; i < pThreads.size(); i++) {
-            outputStream.writeObject(state[i]);
-          }
-          // save raster
-          outputStream.writeObject(raster);
-        }
-        finally {
-          outputStream.flush();
-          outputStream.close();
-        }
-      }
-      catch (Exception ex) {
-        ex.printStackTrace();
-        try {
-          new File(pAbsolutePath).delete();
-        }
-        catch (Exception ex2) {
-
-        }
+      writeCheckpoint(pAbsolutePath, pThreads, state, pSampleCount, pElapsedMilliseconds, pCompress);
+    }
+    catch (Exception ex) {
+      ex.printStackTrace();
+      throw new RuntimeException(ex);
+    }
+    finally {
+      resumeThreads(pThreads, state);
+    }
+  }
 
-        throw new RuntimeException(ex);
+  private void writeCheckpoint(String pAbsolutePath, List<FlameRenderThread> pThreads, FlameRenderThreadState pState[], long pSampleCount, long pElapsedMilliseconds, boolean pCompress) throws IOException {
+    JWFRenderFileHeader header = new JWFRenderFileHeader(pThreads.size(), flame.getWidth(), flame.getHeight(),
+        pSampleCount, pElapsedMilliseconds, 1, 1, (int) (flame.getSampleDensity() + 0.5),
+        true, false);
+    // the thread-local rasters are summed up while writing, so they do not need to be merged
+    List<AbstractRaster> rasters = new ArrayList<AbstractRaster>();
+    rasters.add(raster);
+    for (FlameRenderThread thread : pThreads) {
+      // the thread rasters of progressive renders were moved into the main raster when their threads stopped
+      if (thread.getRaster() != raster && !(thread.getRaster() instanceof DirtyTileRaster)) {
+        rasters.add(thread.getRaster());
       }
     }
+    boolean doublePrecision = prefs.getTinaRasterPointPrecision() == RasterPointPrecision.DOUBLE_PRECISION;
+    JWFRenderCheckpoint.write(pAbsolutePath, header, flame, renderInfo, pState, rasters, rasterWidth, rasterHeight, doublePrecision, pCompress);
+  }
+
+  // writes a checkpoint of a running (unattended) render, which may be resumed by resumeRenderFlame 
+  private void writePeriodicCheckpoint(List<FlameRenderThread> pThreads, long pSampleCount, long pElapsedMilliseconds) {
+    cancelThreads(pThreads);
+    FlameRenderThreadState state[] = new FlameRenderThreadState[pThreads.size()];
+    for (int i = 0; i < pThreads.size(); i++) {
+      state[i] = pThreads.get(i).saveState();
+    }
+    try {
+      writeCheckpoint(checkpointFilename, pThreads, state, pSampleCount, pElapsedMilliseconds, checkpointCompressed);
+    }
+    catch (Exception ex) {
+      // a failed checkpoint must not abort the render
+      ex.printStackTrace();
+    }
     finally {
-      resumeThreads(pThreads, state);
+      if (!forceAbort) {
+        resumeThreads(pThreads, state);
+      }
     }
   }
 
+  public void setCheckpoint(String pAbsolutePath, long pIntervalMillis, boolean pCompress) {
+    checkpointFilename = pAbsolutePath;
+    checkpointInterval = pIntervalMillis;
+    checkpointCompressed = pCompress;
+  }
+
   private void resumeThreads(List<FlameRenderThread> pThreads, FlameRenderThreadState pState[]) {
     for (int i = 0; i < pThreads.size(); i++) {
-      FlameRenderThread t = pThreads.get(i);
-      t.setResumeState(pState[i]);
-      new Thread(t).start();
+      pThreads.get(i).setResumeState(pState[i]);
     }
+    startThreads(pThreads);
   }
 
   public List<FlameRenderThread> startRenderFlame(RenderInfo pRenderInfo) {
     renderInfo = pRenderInfo;
-    initRaster(pRenderInfo.getImageWidth(), pRenderInfo.getImageHeight());
+    initRaster(pRenderInfo.getImageWidth(), pRenderInfo.getImageHeight(), true);
     init3D();
     initView();
     List<Flame> renderFlames = new ArrayList<Flame>();
-    for (int t = 0; t < prefs.getTinaRenderThreads(); t++) {
+    for (int t = 0; t < renderThreads; t++) {
       Flame renderFlame = flame.makeCopy();
       renderFlames.add(renderFlame);
       for (Layer layer : renderFlame.getLayers()) {
@@ -869,44 +1333,28 @@ public class FlameRenderer {
 
   public ResumedFlameRender resumeRenderFlame(String pAbsolutePath) {
     try {
-      ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(pAbsolutePath)));
-      try {
-        // read header
-        JWFRenderFileHeader header = (JWFRenderFileHeader) in.readObject();
-        // read flame
-        Flame rdFlame = (Flame) in.readObject();
-        flame.assign(rdFlame);
-        // restore renderInfo
-        renderInfo = (RenderInfo) in.readObject();
-
-        //        renderInfo.setRenderHDR(true);
-        // restore thread state
-        FlameRenderThreadState state[] = new FlameRenderThreadState[header.numThreads];
-        for (int i = 0; i < header.numThreads; i++) {
-          state[i] = (FlameRenderThreadState) in.readObject();
-        }
+      JWFRenderCheckpoint checkpoint = JWFRenderCheckpoint.read(pAbsolutePath);
+      JWFRenderFileHeader header = checkpoint.getHeader();
+      flame.assign(checkpoint.getFlame());
+      renderInfo = checkpoint.getRenderInfo();
+      FlameRenderThreadState state[] = checkpoint.getState();
 
-        initRaster(renderInfo.getImageWidth(), renderInfo.getImageHeight());
-        init3D();
-        initView();
-        List<Flame> renderFlames = new ArrayList<Flame>();
-        for (int t = 0; t < header.numThreads; t++) {
-          Flame renderFlame = flame.makeCopy();
-          renderFlames.add(renderFlame);
-          for (Layer layer : renderFlame.getLayers()) {
-            layer.refreshModWeightTables(flameTransformationContext);
-          }
+      initRaster(renderInfo.getImageWidth(), renderInfo.getImageHeight(), true);
+      init3D();
+      initView();
+      List<Flame> renderFlames = new ArrayList<Flame>();
+      for (int t = 0; t < state.length; t++) {
+        Flame renderFlame = flame.makeCopy();
+        renderFlames.add(renderFlame);
+        for (Layer layer : renderFlame.getLayers()) {
+          layer.refreshModWeightTables(flameTransformationContext);
         }
-        raster = null;
-        // read raster
-        raster = (AbstractRasterPoint[][]) in.readObject();
-        // create threads
-        List<FlameRenderThread> threads = startIterate(renderFlames, state, false);
-        return new ResumedFlameRender(header, threads);
-      }
-      finally {
-        in.close();
       }
+      // read raster
+      checkpoint.readRaster(raster);
+      // create threads
+      List<FlameRenderThread> threads = startIterate(renderFlames, state, false);
+      return new ResumedFlameRender(header, threads);
     }
     catch (Exception ex) {
       ex.printStackTrace();
@@ -918,12 +1366,21 @@ public class FlameRenderer {
     return flame;
   }
 
+  public int getRenderThreads() {
+    return renderThreads;
+  }
+
+  // number of threads of this renderer, the default is taken from the prefs
+  public void setRenderThreads(int pRenderThreads) {
+    renderThreads = pRenderThreads;
+  }
+
   public long calcSampleCount() {
     long res = 0;
     if (raster != null) {
       for (int i = 0; i < rasterHeight; i++) {
         for (int j = 0; j < rasterWidth; j++) {
-          res += raster[i][j].getCount();
+          res += raster.getCount(j, i);
         }
       }
     }
@@ -940,26 +1397,9 @@ public class FlameRenderer {
 
   public void cancel() {
     forceAbort = true;
-    if (runningThreads != null) {
-      while (true) {
-        boolean done = true;
-        for (FlameRenderThread thread : runningThreads) {
-          if (!thread.isFinished()) {
-            done = false;
-            thread.cancel();
-            try {
-              Thread.sleep(1);
-            }
-            catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-            break;
-          }
-        }
-        if (done) {
-          break;
-        }
-      }
+    List<FlameRenderThread> threads = runningThreads;
+    if (threads != null) {
+      cancelThreads(threads);
     }
   }
 
@@ -21,4 +21,8 @@ public class GammaCorrectedRGBPoint {
   public int green;
   public int blue;
   public int alpha;
+
+  public int getARGBValue() {
+    return (alpha << 24) | (red << 16) | (green << 8) | blue;
+  }
 }
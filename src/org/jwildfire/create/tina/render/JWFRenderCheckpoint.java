@@ -0,0 +1,363 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
+import org.jwildfire.create.tina.base.raster.RasterDouble;
+import org.jwildfire.create.tina.base.raster.RasterFloat;
+import org.jwildfire.create.tina.base.raster.RasterPoint;
+import org.jwildfire.create.tina.base.raster.StripedRaster;
+
+// Binary checkpoint of a running render. Layout:
+//   int magic, int version, int flags
+//   int length + serialized header, flame, renderInfo and thread states
+//   int rasterWidth, int rasterHeight
+//   raster rows (optionally deflated), each one channel by channel: red, green, blue (float or double), count (long)
+public class JWFRenderCheckpoint {
+  private static final int MAGIC = 0x4A574643; // "JWFC"
+  private static final int VERSION = 2;
+  private static final int FLAG_COMPRESSED = 1;
+  private static final int FLAG_DOUBLE_PRECISION = 2;
+  private static final int BUFFER_SIZE = 256 * 1024;
+
+  private final String absolutePath;
+  private final int flags;
+  private final long rasterDataOffset;
+  private final int rasterWidth, rasterHeight;
+  private final JWFRenderFileHeader header;
+  private final Flame flame;
+  private final RenderInfo renderInfo;
+  private final FlameRenderThreadState state[];
+
+  private JWFRenderCheckpoint(String pAbsolutePath, int pFlags, long pRasterDataOffset, int pRasterWidth, int pRasterHeight, JWFRenderFileHeader pHeader, Flame pFlame, RenderInfo pRenderInfo, FlameRenderThreadState pState[]) {
+    absolutePath = pAbsolutePath;
+    flags = pFlags;
+    rasterDataOffset = pRasterDataOffset;
+    rasterWidth = pRasterWidth;
+    rasterHeight = pRasterHeight;
+    header = pHeader;
+    flame = pFlame;
+    renderInfo = pRenderInfo;
+    state = pState;
+  }
+
+  // writes the sum of the given rasters, so the thread-local rasters of a running render do not need to be merged before
+  public static void write(String pAbsolutePath, JWFRenderFileHeader pHeader, Flame pFlame, RenderInfo pRenderInfo, FlameRenderThreadState pState[], List<AbstractRaster> pRasters, int pRasterWidth, int pRasterHeight, boolean pDoublePrecision, boolean pCompress) throws IOException {
+    // write into a temporary file first, so a crash while writing does not destroy the previous checkpoint
+    File file = new File(pAbsolutePath);
+    File tmpFile = new File(pAbsolutePath + ".tmp");
+    FileOutputStream fos = new FileOutputStream(tmpFile);
+    boolean success = false;
+    try {
+      FileChannel fileChannel = fos.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      int flags = (pCompress ? FLAG_COMPRESSED : 0) | (pDoublePrecision ? FLAG_DOUBLE_PRECISION : 0);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(flags);
+      {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos);
+        oos.writeObject(pHeader);
+        oos.writeObject(pFlame);
+        oos.writeObject(pRenderInfo);
+        oos.writeInt(pState.length);
+        for (FlameRenderThreadState state : pState) {
+          oos.writeObject(state);
+        }
+        oos.close();
+        byte data[] = bos.toByteArray();
+        buffer.putInt(data.length);
+        flush(fileChannel, buffer);
+        ByteBuffer dataBuffer = ByteBuffer.wrap(data);
+        while (dataBuffer.hasRemaining()) {
+          fileChannel.write(dataBuffer);
+        }
+      }
+      buffer.putInt(pRasterWidth);
+      buffer.putInt(pRasterHeight);
+      flush(fileChannel, buffer);
+
+      // the deflater holds native memory, which is only released by end()
+      Deflater deflater = pCompress ? new Deflater(Deflater.BEST_SPEED) : null;
+      try {
+        DeflaterOutputStream deflaterStream = deflater != null ? new DeflaterOutputStream(Channels.newOutputStream(fileChannel), deflater, BUFFER_SIZE) : null;
+        WritableByteChannel channel = deflaterStream != null ? Channels.newChannel(deflaterStream) : fileChannel;
+        // each cell of the rasters is read once, the sums of a row are written channel by channel
+        double red[] = new double[pRasterWidth];
+        double green[] = new double[pRasterWidth];
+        double blue[] = new double[pRasterWidth];
+        long count[] = new long[pRasterWidth];
+        RasterPoint rp = new RasterPoint();
+        for (int i = 0; i < pRasterHeight; i++) {
+          Arrays.fill(red, 0.0);
+          Arrays.fill(green, 0.0);
+          Arrays.fill(blue, 0.0);
+          Arrays.fill(count, 0L);
+          for (AbstractRaster raster : pRasters) {
+            for (int j = 0; j < pRasterWidth; j++) {
+              raster.readRasterPoint(j, i, rp);
+              red[j] += rp.red;
+              green[j] += rp.green;
+              blue[j] += rp.blue;
+              count[j] += rp.count;
+            }
+          }
+          writeRow(channel, buffer, red, pDoublePrecision);
+          writeRow(channel, buffer, green, pDoublePrecision);
+          writeRow(channel, buffer, blue, pDoublePrecision);
+          for (int j = 0; j < pRasterWidth; j++) {
+            if (buffer.remaining() < 8) {
+              flush(channel, buffer);
+            }
+            buffer.putLong(count[j]);
+          }
+        }
+        flush(channel, buffer);
+        if (deflaterStream != null) {
+          // writes the remaining compressed data, the file itself is closed below
+          deflaterStream.finish();
+          deflaterStream.flush();
+        }
+        fileChannel.force(false);
+      }
+      finally {
+        if (deflater != null) {
+          deflater.end();
+        }
+      }
+      success = true;
+    }
+    finally {
+      fos.close();
+      if (!success) {
+        tmpFile.delete();
+      }
+    }
+    if (file.exists() && !file.delete()) {
+      throw new IOException("Could not replace file <" + pAbsolutePath + ">");
+    }
+    if (!tmpFile.renameTo(file)) {
+      throw new IOException("Could not rename file <" + tmpFile.getAbsolutePath() + ">");
+    }
+  }
+
+  private static void writeRow(WritableByteChannel pChannel, ByteBuffer pBuffer, double pValues[], boolean pDoublePrecision) throws IOException {
+    for (double value : pValues) {
+      if (pBuffer.remaining() < 8) {
+        flush(pChannel, pBuffer);
+      }
+      if (pDoublePrecision) {
+        pBuffer.putDouble(value);
+      }
+      else {
+        pBuffer.putFloat((float) value);
+      }
+    }
+  }
+
+  private static void flush(WritableByteChannel pChannel, ByteBuffer pBuffer) throws IOException {
+    pBuffer.flip();
+    while (pBuffer.hasRemaining()) {
+      pChannel.write(pBuffer);
+    }
+    pBuffer.clear();
+  }
+
+  // ensures that at least pSize bytes are available in the buffer (which is in read mode)
+  private static void fill(ReadableByteChannel pChannel, ByteBuffer pBuffer, int pSize) throws IOException {
+    if (pBuffer.remaining() < pSize) {
+      pBuffer.compact();
+      while (pBuffer.position() < pSize) {
+        if (pChannel.read(pBuffer) < 0) {
+          throw new EOFException();
+        }
+      }
+      pBuffer.flip();
+    }
+  }
+
+  private static ByteBuffer readFully(ReadableByteChannel pChannel, int pSize) throws IOException {
+    ByteBuffer res = ByteBuffer.allocate(pSize);
+    while (res.hasRemaining()) {
+      if (pChannel.read(res) < 0) {
+        throw new EOFException();
+      }
+    }
+    res.flip();
+    return res;
+  }
+
+  public static boolean isCheckpointFile(String pAbsolutePath) throws IOException {
+    FileInputStream fis = new FileInputStream(pAbsolutePath);
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(4);
+      FileChannel channel = fis.getChannel();
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          return false;
+        }
+      }
+      buffer.flip();
+      return buffer.getInt() == MAGIC;
+    }
+    finally {
+      fis.close();
+    }
+  }
+
+  // reads everything but the raster data
+  public static JWFRenderCheckpoint read(String pAbsolutePath) throws IOException, ClassNotFoundException {
+    FileInputStream fis = new FileInputStream(pAbsolutePath);
+    try {
+      FileChannel channel = fis.getChannel();
+      ByteBuffer buffer = readFully(channel, 12);
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("File <" + pAbsolutePath + "> is not a render checkpoint");
+      }
+      int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported checkpoint version " + version);
+      }
+      int flags = buffer.getInt();
+      int length = readFully(channel, 4).getInt();
+      ByteBuffer data = readFully(channel, length);
+      ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data.array()));
+      JWFRenderFileHeader header = (JWFRenderFileHeader) in.readObject();
+      Flame flame = (Flame) in.readObject();
+      RenderInfo renderInfo = (RenderInfo) in.readObject();
+      FlameRenderThreadState state[] = new FlameRenderThreadState[in.readInt()];
+      for (int i = 0; i < state.length; i++) {
+        state[i] = (FlameRenderThreadState) in.readObject();
+      }
+      in.close();
+      buffer = readFully(channel, 8);
+      int rasterWidth = buffer.getInt();
+      int rasterHeight = buffer.getInt();
+      return new JWFRenderCheckpoint(pAbsolutePath, flags, channel.position(), rasterWidth, rasterHeight, header, flame, renderInfo, state);
+    }
+    finally {
+      fis.close();
+    }
+  }
+
+  // fills the given raster, which must have the stored size, with the stored raster data. The channel arrays are
+  // filled directly, so a shared raster (StripedRaster) does not lock once per channel and cell.
+  public void readRaster(AbstractRaster pRaster) throws IOException {
+    if (pRaster.getRasterWidth() != rasterWidth || pRaster.getRasterHeight() != rasterHeight) {
+      throw new IOException("Raster size mismatch: " + rasterWidth + "x" + rasterHeight);
+    }
+    AbstractRaster raster = pRaster instanceof StripedRaster ? ((StripedRaster) pRaster).getRaster() : pRaster;
+    float floatChannels[][] = null;
+    double doubleChannels[][] = null;
+    long count[];
+    if (raster instanceof RasterFloat) {
+      RasterFloat floatRaster = (RasterFloat) raster;
+      floatChannels = new float[][] { floatRaster.getRedChannel(), floatRaster.getGreenChannel(), floatRaster.getBlueChannel() };
+      count = floatRaster.getCountChannel();
+    }
+    else if (raster instanceof RasterDouble) {
+      RasterDouble doubleRaster = (RasterDouble) raster;
+      doubleChannels = new double[][] { doubleRaster.getRedChannel(), doubleRaster.getGreenChannel(), doubleRaster.getBlueChannel() };
+      count = doubleRaster.getCountChannel();
+    }
+    else {
+      throw new IOException("Unsupported raster type " + raster.getClass().getName());
+    }
+    boolean doublePrecision = (flags & FLAG_DOUBLE_PRECISION) != 0;
+    FileInputStream fis = new FileInputStream(absolutePath);
+    // the inflater holds native memory, which is only released by end()
+    Inflater inflater = (flags & FLAG_COMPRESSED) != 0 ? new Inflater() : null;
+    try {
+      FileChannel fileChannel = fis.getChannel();
+      fileChannel.position(rasterDataOffset);
+      ReadableByteChannel channel = inflater != null ? Channels.newChannel(new InflaterInputStream(Channels.newInputStream(fileChannel), inflater, BUFFER_SIZE)) : fileChannel;
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffer.limit(0);
+      for (int i = 0; i < rasterHeight; i++) {
+        int rowOffset = i * rasterWidth;
+        for (int c = 0; c < 3; c++) {
+          for (int j = 0; j < rasterWidth; j++) {
+            double value;
+            if (doublePrecision) {
+              fill(channel, buffer, 8);
+              value = buffer.getDouble();
+            }
+            else {
+              fill(channel, buffer, 4);
+              value = buffer.getFloat();
+            }
+            if (floatChannels != null) {
+              floatChannels[c][rowOffset + j] = (float) value;
+            }
+            else {
+              doubleChannels[c][rowOffset + j] = value;
+            }
+          }
+        }
+        for (int j = 0; j < rasterWidth; j++) {
+          fill(channel, buffer, 8);
+          count[rowOffset + j] = buffer.getLong();
+        }
+      }
+    }
+    finally {
+      if (inflater != null) {
+        inflater.end();
+      }
+      fis.close();
+    }
+  }
+
+  public JWFRenderFileHeader getHeader() {
+    return header;
+  }
+
+  public Flame getFlame() {
+    return flame;
+  }
+
+  public RenderInfo getRenderInfo() {
+    return renderInfo;
+  }
+
+  public FlameRenderThreadState[] getState() {
+    return state;
+  }
+}
@@ -19,18 +19,19 @@ package org.jwildfire.create.tina.render;
 import static org.jwildfire.base.mathlib.MathLib.log10;
 
 import org.jwildfire.create.tina.base.Flame;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
 import org.jwildfire.create.tina.base.raster.RasterPoint;
 import org.jwildfire.create.tina.render.filter.FilterKernel;
 
 public class LogDensityFilter {
   private final Flame flame;
-  private AbstractRasterPoint[][] raster;
+  private AbstractRaster raster;
   private int rasterWidth, rasterHeight, rasterSize;
   public static final int FILTER_WHITE = (1 << 26);
   public final static double BRIGHTNESS_SCALE = 2.0 * 268.0;
   private final int PRECALC_LOG_ARRAY_SIZE = 256;
   private double filter[][];
+  private double filter1D[];
   private int noiseFilterSize;
   private double precalcLogArray[]; // precalculated log-values
   private double k1, k2;
@@ -41,30 +42,26 @@ public class LogDensityFilter {
     filterKernel = pFlame.getSpatialFilterKernel().createFilterInstance();
     noiseFilterSize = filterKernel.getFilterSize(pFlame.getSpatialFilterRadius());
     filter = new double[noiseFilterSize][noiseFilterSize];
-    initFilter(pFlame.getSpatialFilterRadius(), noiseFilterSize, filter);
+    filter1D = new double[noiseFilterSize];
+    initFilter(pFlame.getSpatialFilterRadius(), noiseFilterSize, filter1D, filter);
   }
 
-  private void initFilter(double pFilterRadius, int pFilterSize, double[][] pFilter) {
+  // the filter is the outer product of a 1D filter, so it may also be applied as two 1D passes (see SeparableFilter)
+  private void initFilter(double pFilterRadius, int pFilterSize, double[] pFilter1D, double[][] pFilter) {
     double adjust = filterKernel.getFilterAdjust(pFilterRadius);
+    double t = 0.0;
     for (int i = 0; i < pFilterSize; i++) {
-      for (int j = 0; j < pFilterSize; j++) {
-        double ii = ((2.0 * i + 1.0) / pFilterSize - 1.0) * adjust;
-        double jj = ((2.0 * j + 1.0) / pFilterSize - 1.0) * adjust;
-        pFilter[i][j] = filterKernel.getFilterCoeff(ii) * filterKernel.getFilterCoeff(jj);
-      }
+      double ii = ((2.0 * i + 1.0) / pFilterSize - 1.0) * adjust;
+      pFilter1D[i] = filterKernel.getFilterCoeff(ii);
+      t += pFilter1D[i];
     }
     // normalize
-    {
-      double t = 0.0;
-      for (int i = 0; i < pFilterSize; i++) {
-        for (int j = 0; j < pFilterSize; j++) {
-          t += pFilter[i][j];
-        }
-      }
-      for (int i = 0; i < pFilterSize; i++) {
-        for (int j = 0; j < pFilterSize; j++) {
-          pFilter[i][j] = pFilter[i][j] / t;
-        }
+    for (int i = 0; i < pFilterSize; i++) {
+      pFilter1D[i] = pFilter1D[i] / t;
+    }
+    for (int i = 0; i < pFilterSize; i++) {
+      for (int j = 0; j < pFilterSize; j++) {
+        pFilter[i][j] = pFilter1D[i] * pFilter1D[j];
       }
     }
   }
@@ -73,7 +70,7 @@ public class LogDensityFilter {
     return noiseFilterSize;
   }
 
-  public void setRaster(AbstractRasterPoint[][] pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
+  public void setRaster(AbstractRaster pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
     raster = pRaster;
     rasterWidth = pRasterWidth;
     rasterHeight = pRasterHeight;
@@ -94,11 +91,11 @@ public class LogDensityFilter {
       pFilteredPnt.clear();
       for (int i = 0; i < noiseFilterSize; i++) {
         for (int j = 0; j < noiseFilterSize; j++) {
-          AbstractRasterPoint point = getRasterPoint(pX + j, pY + i);
-          pFilteredPnt.red += filter[i][j] * point.getRed();
-          pFilteredPnt.green += filter[i][j] * point.getGreen();
-          pFilteredPnt.blue += filter[i][j] * point.getBlue();
-          pFilteredPnt.intensity += filter[i][j] * point.getCount();
+          RasterPoint point = getRasterPoint(pX + j, pY + i, pFilteredPnt.rasterPoint);
+          pFilteredPnt.red += filter[i][j] * point.red;
+          pFilteredPnt.green += filter[i][j] * point.green;
+          pFilteredPnt.blue += filter[i][j] * point.blue;
+          pFilteredPnt.intensity += filter[i][j] * point.count;
         }
       }
       pFilteredPnt.red /= FILTER_WHITE;
@@ -107,36 +104,40 @@ public class LogDensityFilter {
       pFilteredPnt.intensity = flame.getWhiteLevel() * pFilteredPnt.intensity / FILTER_WHITE;
     }
     else {
-      AbstractRasterPoint point = getRasterPoint(pX, pY);
-      pFilteredPnt.red = point.getRed();
-      pFilteredPnt.green = point.getGreen();
-      pFilteredPnt.blue = point.getBlue();
-      pFilteredPnt.intensity = point.getCount() * flame.getWhiteLevel();
+      RasterPoint point = getRasterPoint(pX, pY, pFilteredPnt.rasterPoint);
+      pFilteredPnt.red = point.red;
+      pFilteredPnt.green = point.green;
+      pFilteredPnt.blue = point.blue;
+      pFilteredPnt.intensity = point.count * flame.getWhiteLevel();
     }
   }
 
   public void transformPointSimple(LogDensityPoint pFilteredPnt, int pX, int pY) {
-    AbstractRasterPoint point = getRasterPoint(pX, pY);
-    double logScale;
-    if (point.getCount() < precalcLogArray.length) {
-      logScale = precalcLogArray[(int) point.getCount()] / FILTER_WHITE;
+    RasterPoint point = getRasterPoint(pX, pY, pFilteredPnt.rasterPoint);
+    double logScale = calcLogScale(point.count) / FILTER_WHITE;
+    pFilteredPnt.red = logScale * point.red;
+    pFilteredPnt.green = logScale * point.green;
+    pFilteredPnt.blue = logScale * point.blue;
+    pFilteredPnt.intensity = logScale * point.count * flame.getWhiteLevel();
+  }
+
+  private double calcLogScale(long pCount) {
+    if (pCount < precalcLogArray.length) {
+      return precalcLogArray[(int) pCount];
     }
     else {
-      logScale = (k1 * log10(1.0 + flame.getWhiteLevel() * point.getCount() * k2)) / (flame.getWhiteLevel() * point.getCount()) / FILTER_WHITE;
+      return (k1 * log10(1.0 + flame.getWhiteLevel() * pCount * k2)) / (flame.getWhiteLevel() * pCount);
     }
-    pFilteredPnt.red = logScale * point.getRed();
-    pFilteredPnt.green = logScale * point.getGreen();
-    pFilteredPnt.blue = logScale * point.getBlue();
-    pFilteredPnt.intensity = logScale * point.getCount() * flame.getWhiteLevel();
   }
 
-  private AbstractRasterPoint emptyRasterPoint = new RasterPoint();
-
-  private AbstractRasterPoint getRasterPoint(int pX, int pY) {
-    if (pX < 0 || pX >= rasterWidth || pY < 0 || pY >= rasterHeight)
-      return emptyRasterPoint;
-    else
-      return raster[pY][pX];
+  private RasterPoint getRasterPoint(int pX, int pY, RasterPoint pRasterPoint) {
+    if (pX < 0 || pX >= rasterWidth || pY < 0 || pY >= rasterHeight) {
+      pRasterPoint.clear();
+    }
+    else {
+      raster.readRasterPoint(pX, pY, pRasterPoint);
+    }
+    return pRasterPoint;
   }
 
   public double calcDensity(long pSampleCount, long pRasterSize) {
@@ -155,18 +156,12 @@ public class LogDensityFilter {
       pFilteredPnt.clear();
       for (int i = 0; i < noiseFilterSize; i++) {
         for (int j = 0; j < noiseFilterSize; j++) {
-          AbstractRasterPoint point = getRasterPoint(pX + j, pY + i);
-          double logScale;
-          if (point.getCount() < precalcLogArray.length) {
-            logScale = precalcLogArray[(int) point.getCount()];
-          }
-          else {
-            logScale = (k1 * log10(1.0 + flame.getWhiteLevel() * point.getCount() * k2)) / (flame.getWhiteLevel() * point.getCount());
-          }
-          pFilteredPnt.red += filter[i][j] * logScale * point.getRed();
-          pFilteredPnt.green += filter[i][j] * logScale * point.getGreen();
-          pFilteredPnt.blue += filter[i][j] * logScale * point.getBlue();
-          pFilteredPnt.intensity += filter[i][j] * logScale * point.getCount();
+          RasterPoint point = getRasterPoint(pX + j, pY + i, pFilteredPnt.rasterPoint);
+          double logScale = calcLogScale(point.count);
+          pFilteredPnt.red += filter[i][j] * logScale * point.red;
+          pFilteredPnt.green += filter[i][j] * logScale * point.green;
+          pFilteredPnt.blue += filter[i][j] * logScale * point.blue;
+          pFilteredPnt.intensity += filter[i][j] * logScale * point.count;
         }
       }
 
@@ -176,18 +171,12 @@ public class LogDensityFilter {
       pFilteredPnt.intensity = flame.getWhiteLevel() * pFilteredPnt.intensity / FILTER_WHITE;
     }
     else {
-      AbstractRasterPoint point = getRasterPoint(pX, pY);
-      double logScale;
-      if (point.getCount() < precalcLogArray.length) {
-        logScale = precalcLogArray[(int) point.getCount()] / FILTER_WHITE;
-      }
-      else {
-        logScale = (k1 * log10(1.0 + flame.getWhiteLevel() * point.getCount() * k2)) / (flame.getWhiteLevel() * point.getCount()) / FILTER_WHITE;
-      }
-      pFilteredPnt.red = logScale * point.getRed();
-      pFilteredPnt.green = logScale * point.getGreen();
-      pFilteredPnt.blue = logScale * point.getBlue();
-      pFilteredPnt.intensity = logScale * point.getCount() * flame.getWhiteLevel();
+      RasterPoint point = getRasterPoint(pX, pY, pFilteredPnt.rasterPoint);
+      double logScale = calcLogScale(point.count) / FILTER_WHITE;
+      pFilteredPnt.red = logScale * point.red;
+      pFilteredPnt.green = logScale * point.green;
+      pFilteredPnt.blue = logScale * point.blue;
+      pFilteredPnt.intensity = logScale * point.count * flame.getWhiteLevel();
     }
   }
 
@@ -196,11 +185,11 @@ public class LogDensityFilter {
       pFilteredPnt.clear();
       for (int i = 0; i < noiseFilterSize; i++) {
         for (int j = 0; j < noiseFilterSize; j++) {
-          AbstractRasterPoint point = getRasterPoint(pX + j, pY + i);
-          pFilteredPnt.red += filter[i][j] * point.getRed();
-          pFilteredPnt.green += filter[i][j] * point.getGreen();
-          pFilteredPnt.blue += filter[i][j] * point.getBlue();
-          pFilteredPnt.intensity += filter[i][j] * point.getCount();
+          RasterPoint point = getRasterPoint(pX + j, pY + i, pFilteredPnt.rasterPoint);
+          pFilteredPnt.red += filter[i][j] * point.red;
+          pFilteredPnt.green += filter[i][j] * point.green;
+          pFilteredPnt.blue += filter[i][j] * point.blue;
+          pFilteredPnt.intensity += filter[i][j] * point.count;
         }
       }
       pFilteredPnt.red /= FILTER_WHITE;
@@ -209,12 +198,104 @@ public class LogDensityFilter {
       pFilteredPnt.intensity = flame.getWhiteLevel() * pFilteredPnt.intensity / FILTER_WHITE;
     }
     else {
-      AbstractRasterPoint point = getRasterPoint(pX, pY);
-      pFilteredPnt.red = point.getRed() / (double) FILTER_WHITE;
-      pFilteredPnt.green = point.getGreen() / (double) FILTER_WHITE;
-      pFilteredPnt.blue = point.getBlue() / (double) FILTER_WHITE;
-      pFilteredPnt.intensity = point.getCount() * flame.getWhiteLevel() / (double) FILTER_WHITE;
+      RasterPoint point = getRasterPoint(pX, pY, pFilteredPnt.rasterPoint);
+      pFilteredPnt.red = point.red / (double) FILTER_WHITE;
+      pFilteredPnt.green = point.green / (double) FILTER_WHITE;
+      pFilteredPnt.blue = point.blue / (double) FILTER_WHITE;
+      pFilteredPnt.intensity = point.count * flame.getWhiteLevel() / (double) FILTER_WHITE;
+
+    }
+  }
+
+  // Creates a filter which produces the same result as transformPoint (pLogScale=true) or transformPointPastDE/transformPointHDR
+  // (pLogScale=false), but computes the log-scale of each raster cell only once per row and applies the spatial filter as
+  // a horizontal and a vertical pass. The filter keeps state and must be used by one thread only, visiting the rows in
+  // ascending order.
+  public SeparableFilter createSeparableFilter(boolean pLogScale, int pImageWidth) {
+    return new SeparableFilter(pLogScale, pImageWidth);
+  }
+
+  public class SeparableFilter {
+    private final boolean logScale;
+    private final int imageWidth;
+    // log-scaled raster row
+    private final double rowRed[], rowGreen[], rowBlue[], rowCount[];
+    // horizontally filtered raster rows, ring buffer indexed by row % noiseFilterSize
+    private final double hRed[][], hGreen[][], hBlue[][], hCount[][];
+    private final RasterPoint rasterPoint = new RasterPoint();
+    private int currY = -1;
 
+    private SeparableFilter(boolean pLogScale, int pImageWidth) {
+      logScale = pLogScale;
+      imageWidth = pImageWidth;
+      rowRed = new double[rasterWidth];
+      rowGreen = new double[rasterWidth];
+      rowBlue = new double[rasterWidth];
+      rowCount = new double[rasterWidth];
+      hRed = new double[noiseFilterSize][imageWidth];
+      hGreen = new double[noiseFilterSize][imageWidth];
+      hBlue = new double[noiseFilterSize][imageWidth];
+      hCount = new double[noiseFilterSize][imageWidth];
     }
+
+    public void transformPoint(LogDensityPoint pFilteredPnt, int pX, int pY) {
+      if (pY != currY) {
+        if (pY == currY + 1 && currY >= 0) {
+          filterRow(pY + noiseFilterSize - 1);
+        }
+        else {
+          for (int i = 0; i < noiseFilterSize; i++) {
+            filterRow(pY + i);
+          }
+        }
+        currY = pY;
+      }
+      pFilteredPnt.clear();
+      for (int i = 0; i < noiseFilterSize; i++) {
+        int idx = (pY + i) % noiseFilterSize;
+        pFilteredPnt.red += filter1D[i] * hRed[idx][pX];
+        pFilteredPnt.green += filter1D[i] * hGreen[idx][pX];
+        pFilteredPnt.blue += filter1D[i] * hBlue[idx][pX];
+        pFilteredPnt.intensity += filter1D[i] * hCount[idx][pX];
+      }
+      pFilteredPnt.red /= FILTER_WHITE;
+      pFilteredPnt.green /= FILTER_WHITE;
+      pFilteredPnt.blue /= FILTER_WHITE;
+      pFilteredPnt.intensity = flame.getWhiteLevel() * pFilteredPnt.intensity / FILTER_WHITE;
+    }
+
+    private void filterRow(int pY) {
+      int idx = pY % noiseFilterSize;
+      double dstRed[] = hRed[idx], dstGreen[] = hGreen[idx], dstBlue[] = hBlue[idx], dstCount[] = hCount[idx];
+      if (pY >= rasterHeight) {
+        for (int j = 0; j < imageWidth; j++) {
+          dstRed[j] = dstGreen[j] = dstBlue[j] = dstCount[j] = 0.0;
+        }
+        return;
+      }
+      for (int j = 0; j < rasterWidth; j++) {
+        raster.readRasterPoint(j, pY, rasterPoint);
+        double scale = logScale ? calcLogScale(rasterPoint.count) : 1.0;
+        rowRed[j] = scale * rasterPoint.red;
+        rowGreen[j] = scale * rasterPoint.green;
+        rowBlue[j] = scale * rasterPoint.blue;
+        rowCount[j] = scale * rasterPoint.count;
+      }
+      for (int j = 0; j < imageWidth; j++) {
+        double red = 0.0, green = 0.0, blue = 0.0, count = 0.0;
+        int maxK = Math.min(noiseFilterSize, rasterWidth - j);
+        for (int k = 0; k < maxK; k++) {
+          red += filter1D[k] * rowRed[j + k];
+          green += filter1D[k] * rowGreen[j + k];
+          blue += filter1D[k] * rowBlue[j + k];
+          count += filter1D[k] * rowCount[j + k];
+        }
+        dstRed[j] = red;
+        dstGreen[j] = green;
+        dstBlue[j] = blue;
+        dstCount[j] = count;
+      }
+    }
+
   }
 }
@@ -16,11 +16,15 @@
 */
 package org.jwildfire.create.tina.render;
 
+import org.jwildfire.create.tina.base.raster.RasterPoint;
+
 public class LogDensityPoint {
   public double red;
   public double green;
   public double blue;
   public double intensity;
+  // scratch object to read the raster, so that a LogDensityFilter may be shared by several threads
+  final RasterPoint rasterPoint = new RasterPoint();
 
   public void clear() {
     red = green = blue = intensity = 0.0;
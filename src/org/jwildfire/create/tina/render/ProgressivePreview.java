@@ -0,0 +1,190 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.util.List;
+
+import org.jwildfire.create.tina.base.raster.StripedRaster;
+import org.jwildfire.image.SimpleImage;
+
+// Shows a running progressive render (FlameRenderer.startRenderFlame or resumeRenderFlame): a background thread
+// tonemaps the tiles of the shared raster which were changed since the last frame, at a fixed frame rate. So the
+// render threads do not need an IterationObserver. In THREAD_LOCAL mode (the default) the threads write into their own
+// rasters, like in a batch render. At each frame they are asked to move their changed tiles into the shared raster,
+// which takes one lock per row of a tile. In STRIPED mode, or if there is not enough memory for the thread-local
+// rasters, the threads write into the shared raster directly, with a lock per sample.
+public class ProgressivePreview implements Runnable {
+  public static final int DEFAULT_FRAME_RATE = 10;
+  // all pixels are tonemapped again when the quality (and so the brightness of all pixels) has grown by this factor
+  private static final double FULL_REFRESH_QUALITY_FACTOR = 1.1;
+
+  private final FlameRenderer renderer;
+  private final List<FlameRenderThread> threads;
+  private final SimpleImage image;
+  private final ProgressivePreviewListener listener;
+  private final long frameMillis;
+  private final StripedRaster raster;
+  private final int rasterWidth, rasterHeight;
+  private SampleTonemapper tonemapper;
+  private double tonemapperQuality;
+  private volatile boolean running;
+  private Thread thread;
+
+  public ProgressivePreview(FlameRenderer pRenderer, List<FlameRenderThread> pThreads, SimpleImage pImage, int pFrameRate, ProgressivePreviewListener pListener) {
+    renderer = pRenderer;
+    threads = pThreads;
+    image = pImage;
+    listener = pListener;
+    frameMillis = 1000L / (pFrameRate > 0 ? pFrameRate : DEFAULT_FRAME_RATE);
+    raster = pRenderer.getProgressiveRaster();
+    rasterWidth = raster.getRasterWidth();
+    rasterHeight = raster.getRasterHeight();
+  }
+
+  public void start() {
+    running = true;
+    thread = new Thread(this, "ProgressivePreview");
+    thread.setDaemon(true);
+    thread.setPriority(Thread.NORM_PRIORITY - 1);
+    thread.start();
+  }
+
+  // waits until the preview thread has finished, the threads of the render are not affected
+  public void stop() {
+    running = false;
+    if (thread != null && thread != Thread.currentThread()) {
+      thread.interrupt();
+      try {
+        thread.join();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    thread = null;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (running) {
+        long t0 = System.currentTimeMillis();
+        boolean finished = isRenderFinished();
+        refresh(finished);
+        if (finished) {
+          break;
+        }
+        long delay = frameMillis - (System.currentTimeMillis() - t0);
+        if (delay > 0) {
+          Thread.sleep(delay);
+        }
+      }
+    }
+    catch (InterruptedException ex) {
+      // stopped
+    }
+    finally {
+      running = false;
+    }
+  }
+
+  private boolean isRenderFinished() {
+    for (FlameRenderThread thread : threads) {
+      if (!thread.isFinished()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long getSampleCount() {
+    long res = 0;
+    for (FlameRenderThread thread : threads) {
+      res += thread.getCurrSample();
+    }
+    return res;
+  }
+
+  private void refresh(boolean pFull) {
+    // the threads move their samples at their next check, so they are shown by the next frame
+    for (FlameRenderThread thread : threads) {
+      thread.requestRasterFlush();
+    }
+    long sampleCount = getSampleCount();
+    if (tonemapper == null) {
+      tonemapper = new SampleTonemapper(renderer.getFlame(), raster, rasterWidth, rasterHeight, image.getImageWidth(), image.getImageHeight());
+    }
+    double quality = tonemapper.calcDensity(sampleCount);
+    boolean full = pFull;
+    if (quality > tonemapperQuality * FULL_REFRESH_QUALITY_FACTOR) {
+      tonemapper.setDensity(quality);
+      tonemapperQuality = quality;
+      full = true;
+    }
+    if (full) {
+      clearDirtyTiles();
+      tonemap(0, 0, image.getImageWidth(), image.getImageHeight());
+    }
+    else {
+      tonemapDirtyTiles();
+    }
+    if (listener != null) {
+      listener.previewUpdated(sampleCount, tonemapperQuality);
+    }
+  }
+
+  private void clearDirtyTiles() {
+    for (int i = 0; i < raster.getTilesY(); i++) {
+      for (int j = 0; j < raster.getTilesX(); j++) {
+        raster.clearDirtyTile(j, i);
+      }
+    }
+  }
+
+  private void tonemapDirtyTiles() {
+    int tileSize = 1 << StripedRaster.TILE_SHIFT;
+    // an image pixel depends on the raster points from (x, y) to (x + filterSize - 1, y + filterSize - 1)
+    int border = tonemapper.getNoiseFilterSize() - 1;
+    for (int i = 0; i < raster.getTilesY(); i++) {
+      for (int j = 0; j < raster.getTilesX(); j++) {
+        if (raster.clearDirtyTile(j, i)) {
+          int x0 = j * tileSize - border;
+          int y0 = i * tileSize - border;
+          tonemap(x0, y0, j * tileSize + tileSize, i * tileSize + tileSize);
+        }
+      }
+    }
+  }
+
+  // tonemaps the image pixels in the range [pX0, pX1) x [pY0, pY1)
+  private void tonemap(int pX0, int pY0, int pX1, int pY1) {
+    int x0 = pX0 < 0 ? 0 : pX0;
+    int y0 = pY0 < 0 ? 0 : pY0;
+    int x1 = pX1 > image.getImageWidth() ? image.getImageWidth() : pX1;
+    int y1 = pY1 > image.getImageHeight() ? image.getImageHeight() : pY1;
+    for (int y = y0; y < y1; y++) {
+      for (int x = x0; x < x1; x++) {
+        image.setARGB(x, y, tonemapper.tonemapSample(x, y));
+      }
+    }
+  }
+
+  public boolean isRunning() {
+    return running;
+  }
+
+}
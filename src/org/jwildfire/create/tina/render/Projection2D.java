@@ -0,0 +1,36 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+
+// flat camera: no rotation in space, no perspective, no depth of field and no fading by z
+public final class Projection2D extends AbstractProjection {
+
+  public Projection2D(FlameRenderer pRenderer) {
+    super(pRenderer);
+  }
+
+  @Override
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+    pProjectedPoint.intensity = 1.0;
+    return projectView(pPoint.x, pPoint.y, pProjectedPoint);
+  }
+
+}
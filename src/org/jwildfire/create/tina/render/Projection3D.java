@@ -0,0 +1,43 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+
+// 3D camera without depth of field
+public final class Projection3D extends AbstractProjection3D {
+
+  public Projection3D(FlameRenderer pRenderer) {
+    super(pRenderer);
+  }
+
+  @Override
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+    double x = pPoint.x, y = pPoint.y, z = pPoint.z;
+    double px = m00 * x + m10 * y;
+    double py = m01 * x + m11 * y + m21 * z;
+    double pz = m02 * x + m12 * y + m22 * z;
+    double zr = 1.0 - camPerspective * pz;
+    calcIntensity(camZ - pz, pProjectedPoint);
+    pPoint.x = px / zr;
+    pPoint.y = py / zr;
+    return projectView(pPoint.x, pPoint.y, pProjectedPoint);
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import static org.jwildfire.base.mathlib.MathLib.M_2PI;
+import static org.jwildfire.base.mathlib.MathLib.cos;
+import static org.jwildfire.base.mathlib.MathLib.sin;
+import static org.jwildfire.base.mathlib.MathLib.sqrt;
+
+import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+
+// 3D camera with depth of field around the focus point
+public final class Projection3DDOF extends AbstractProjection3D {
+  private final double camDOF_10;
+  private final double focusX, focusY, focusZ;
+  private final double camDOFArea;
+  // the default exponent of 2 is a plain distance, which does not need pow()
+  private final boolean euclideanDist;
+  private final double invDOFExponent;
+
+  public Projection3DDOF(FlameRenderer pRenderer) {
+    super(pRenderer);
+    camDOF_10 = pRenderer.camDOF_10;
+    Flame flame = pRenderer.viewFlame;
+    focusX = flame.getFocusX();
+    focusY = flame.getFocusY();
+    focusZ = flame.getFocusZ();
+    camDOFArea = flame.getCamDOFArea();
+    euclideanDist = flame.getCamDOFExponent() == 2.0;
+    invDOFExponent = 1.0 / flame.getCamDOFExponent();
+  }
+
+  @Override
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+    double x = pPoint.x, y = pPoint.y, z = pPoint.z;
+    double px = m00 * x + m10 * y;
+    double py = m01 * x + m11 * y + m21 * z;
+    double pz = m02 * x + m12 * y + m22 * z;
+    double zr = 1.0 - camPerspective * pz;
+    calcIntensity(camZ - pz, pProjectedPoint);
+    double xdist = px - focusX;
+    double ydist = py - focusY;
+    double zdist = pz - focusZ;
+    double dist2 = xdist * xdist + ydist * ydist + zdist * zdist;
+    double dist = (euclideanDist ? sqrt(dist2) : Math.pow(dist2, invDOFExponent)) - camDOFArea;
+    if (dist > 0.05) {
+      double dr = pRandGen.random() * camDOF_10 * dist;
+      double a = M_2PI * pRandGen.random();
+      pPoint.x = (px + dr * cos(a)) / zr;
+      pPoint.y = (py + dr * sin(a)) / zr;
+    }
+    else {
+      pPoint.x = px / zr;
+      pPoint.y = py / zr;
+    }
+    return projectView(pPoint.x, pPoint.y, pProjectedPoint);
+  }
+
+}
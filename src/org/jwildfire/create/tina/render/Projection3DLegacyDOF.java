@@ -0,0 +1,58 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import static org.jwildfire.base.mathlib.MathLib.M_2PI;
+import static org.jwildfire.base.mathlib.MathLib.cos;
+import static org.jwildfire.base.mathlib.MathLib.sin;
+
+import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.base.XYZProjectedPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator;
+
+// 3D camera with the old depth of field, which blurs all points behind the camera z
+public final class Projection3DLegacyDOF extends AbstractProjection3D {
+  private final double camDOF_10;
+
+  public Projection3DLegacyDOF(FlameRenderer pRenderer) {
+    super(pRenderer);
+    camDOF_10 = pRenderer.camDOF_10;
+  }
+
+  @Override
+  public boolean project(XYZPoint pPoint, XYZProjectedPoint pProjectedPoint, AbstractRandomGenerator pRandGen) {
+    double x = pPoint.x, y = pPoint.y, z = pPoint.z;
+    double px = m00 * x + m10 * y;
+    double py = m01 * x + m11 * y + m21 * z;
+    double pz = m02 * x + m12 * y + m22 * z;
+    double zr = 1.0 - camPerspective * pz;
+    double zdist = camZ - pz;
+    calcIntensity(zdist, pProjectedPoint);
+    if (zdist > 0.0) {
+      double dr = pRandGen.random() * camDOF_10 * zdist;
+      double a = M_2PI * pRandGen.random();
+      pPoint.x = (px + dr * cos(a)) / zr;
+      pPoint.y = (py + dr * sin(a)) / zr;
+    }
+    else {
+      pPoint.x = px / zr;
+      pPoint.y = py / zr;
+    }
+    return projectView(pPoint.x, pPoint.y, pProjectedPoint);
+  }
+
+}
@@ -0,0 +1,91 @@
+/*
+  JWildfire - an image and animation processor written in Java 
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser 
+  General Public License as published by the Free Software Foundation; either version 2.1 of the 
+  License, or (at your option) any later version.
+ 
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without 
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software; 
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jwildfire.base.Prefs;
+
+// Pool of worker threads which is shared by all renderers, so that consecutive renders (e. g. the frames of a movie)
+// reuse the same threads. The pool keeps getTinaRenderThreads() threads alive, but may grow temporarily
+// if several renderers are active at the same time (e. g. the interactive renderer and the preview).
+public class RenderScheduler {
+  private static final long KEEP_ALIVE_SECONDS = 60L;
+  private static RenderScheduler instance;
+  private final ThreadPoolExecutor executor;
+
+  private static class RenderThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+    @Override
+    public Thread newThread(Runnable pRunnable) {
+      Thread thread = new Thread(pRunnable, "JWildfire-Render-" + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      thread.setPriority(Thread.NORM_PRIORITY);
+      return thread;
+    }
+  }
+
+  private RenderScheduler(int pCoreThreads) {
+    executor = new ThreadPoolExecutor(pCoreThreads, Integer.MAX_VALUE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new RenderThreadFactory());
+  }
+
+  public static synchronized RenderScheduler getInstance(Prefs pPrefs) {
+    if (instance == null) {
+      instance = new RenderScheduler(pPrefs.getTinaRenderThreads());
+    }
+    return instance;
+  }
+
+  public Future<?> submit(Runnable pTask) {
+    return executor.submit(pTask);
+  }
+
+  // executes all tasks in parallel and returns after all of them are finished, the last task is executed
+  // by the calling thread
+  public void invokeAll(List<? extends Runnable> pTasks) {
+    if (pTasks.size() == 0) {
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < pTasks.size() - 1; i++) {
+      futures.add(executor.submit(pTasks.get(i)));
+    }
+    pTasks.get(pTasks.size() - 1).run();
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      }
+      catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(ex);
+      }
+      catch (ExecutionException ex) {
+        throw new RuntimeException(ex.getCause());
+      }
+    }
+  }
+
+}
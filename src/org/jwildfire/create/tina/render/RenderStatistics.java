@@ -0,0 +1,160 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Counters of a render, collected if the render statistics are enabled (Prefs/FlameRenderer.setCollectStatistics). 
+// Each render thread collects into its own instance, which are merged after iterating.
+public class RenderStatistics {
+  private long samples;
+  private long hits;
+  private long outOfFrame;
+  private long invalidResets;
+  private long iterationNanos;
+  private long filterNanos;
+  private final Map<String, XFormStatistics> xForms = new LinkedHashMap<String, XFormStatistics>();
+  private final Map<String, VariationStatistics> variations = new LinkedHashMap<String, VariationStatistics>();
+
+  public void incHits() {
+    hits++;
+  }
+
+  public void incOutOfFrame() {
+    outOfFrame++;
+  }
+
+  public void incInvalidResets() {
+    invalidResets++;
+  }
+
+  public void add(RenderStatistics pStatistics) {
+    samples += pStatistics.samples;
+    hits += pStatistics.hits;
+    outOfFrame += pStatistics.outOfFrame;
+    invalidResets += pStatistics.invalidResets;
+    iterationNanos = Math.max(iterationNanos, pStatistics.iterationNanos);
+    filterNanos += pStatistics.filterNanos;
+    for (XFormStatistics xForm : pStatistics.xForms.values()) {
+      addXFormStatistics(xForm);
+    }
+    for (VariationStatistics variation : pStatistics.variations.values()) {
+      addVariationStatistics(variation);
+    }
+  }
+
+  public void addXFormStatistics(XFormStatistics pStatistics) {
+    XFormStatistics stats = xForms.get(pStatistics.getName());
+    if (stats == null) {
+      stats = new XFormStatistics(pStatistics.getName());
+      xForms.put(stats.getName(), stats);
+    }
+    stats.add(pStatistics);
+  }
+
+  public void addVariationStatistics(VariationStatistics pStatistics) {
+    VariationStatistics stats = variations.get(pStatistics.getName());
+    if (stats == null) {
+      stats = new VariationStatistics(pStatistics.getName());
+      variations.put(stats.getName(), stats);
+    }
+    stats.add(pStatistics);
+  }
+
+  public long getSamples() {
+    return samples;
+  }
+
+  public void setSamples(long pSamples) {
+    samples = pSamples;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getOutOfFrame() {
+    return outOfFrame;
+  }
+
+  public double getOutOfFrameRatio() {
+    long total = hits + outOfFrame;
+    return total > 0 ? (double) outOfFrame / (double) total : 0.0;
+  }
+
+  public long getInvalidResets() {
+    return invalidResets;
+  }
+
+  public long getIterationNanos() {
+    return iterationNanos;
+  }
+
+  public void setIterationNanos(long pIterationNanos) {
+    iterationNanos = pIterationNanos;
+  }
+
+  public long getFilterNanos() {
+    return filterNanos;
+  }
+
+  public void setFilterNanos(long pFilterNanos) {
+    filterNanos = pFilterNanos;
+  }
+
+  public double getSamplesPerSecond() {
+    return iterationNanos > 0 ? (double) samples * 1.0e9 / (double) iterationNanos : 0.0;
+  }
+
+  public List<XFormStatistics> getXFormStatistics() {
+    return new ArrayList<XFormStatistics>(xForms.values());
+  }
+
+  // sorted by the total time, descending
+  public List<VariationStatistics> getVariationStatistics() {
+    List<VariationStatistics> res = new ArrayList<VariationStatistics>(variations.values());
+    Collections.sort(res, new Comparator<VariationStatistics>() {
+      @Override
+      public int compare(VariationStatistics o1, VariationStatistics o2) {
+        return o1.getNanos() < o2.getNanos() ? 1 : o1.getNanos() > o2.getNanos() ? -1 : 0;
+      }
+    });
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.US, "Render statistics: %d samples in %.2fs (%.0f samples/s), out of frame: %.2f%%, NaN/Inf resets: %d, filter: %.2fs\n",
+        samples, iterationNanos / 1.0e9, getSamplesPerSecond(), getOutOfFrameRatio() * 100.0, invalidResets, filterNanos / 1.0e9));
+    sb.append(String.format(Locale.US, "  %-40s %14s %10s %10s\n", "xForm", "calls", "ns/call", "resets"));
+    for (XFormStatistics xForm : xForms.values()) {
+      sb.append(String.format(Locale.US, "  %-40s %14d %10.1f %10d\n", xForm.getName(), xForm.getCalls(), xForm.getNanosPerCall(), xForm.getInvalidResets()));
+    }
+    sb.append(String.format(Locale.US, "  %-40s %14s %10s %10s\n", "variation", "calls", "ns/call", "NaN/Inf"));
+    for (VariationStatistics variation : getVariationStatistics()) {
+      sb.append(String.format(Locale.US, "  %-40s %14d %10.1f %10d\n", variation.getName(), variation.getCalls(), variation.getNanosPerCall(), variation.getInvalidResults()));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,92 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Publishes the statistics of the last render via JMX (org.jwildfire:type=RenderStatistics)
+public class RenderStatisticsMonitor implements RenderStatisticsMonitorMBean {
+  private static RenderStatisticsMonitor instance;
+  private volatile RenderStatistics lastStatistics;
+  private volatile long renderCount;
+
+  private RenderStatisticsMonitor() {
+  }
+
+  public static synchronized RenderStatisticsMonitor getInstance() {
+    if (instance == null) {
+      instance = new RenderStatisticsMonitor();
+      try {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.registerMBean(instance, new ObjectName("org.jwildfire:type=RenderStatistics"));
+      }
+      catch (Exception ex) {
+        ex.printStackTrace();
+      }
+    }
+    return instance;
+  }
+
+  public void publish(RenderStatistics pStatistics) {
+    lastStatistics = pStatistics;
+    renderCount++;
+  }
+
+  @Override
+  public long getRenderCount() {
+    return renderCount;
+  }
+
+  @Override
+  public long getLastSamples() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.getSamples() : 0;
+  }
+
+  @Override
+  public double getLastSamplesPerSecond() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.getSamplesPerSecond() : 0.0;
+  }
+
+  @Override
+  public double getLastOutOfFrameRatio() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.getOutOfFrameRatio() : 0.0;
+  }
+
+  @Override
+  public long getLastInvalidResets() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.getInvalidResets() : 0;
+  }
+
+  @Override
+  public double getLastFilterSeconds() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.getFilterNanos() / 1.0e9 : 0.0;
+  }
+
+  @Override
+  public String getLastReport() {
+    RenderStatistics stats = lastStatistics;
+    return stats != null ? stats.toString() : "";
+  }
+}
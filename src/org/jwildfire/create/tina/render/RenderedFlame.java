@@ -23,6 +23,8 @@ public class RenderedFlame {
   private SimpleImage image;
   private SimpleHDRImage hdrImage;
   private SimpleHDRImage hdrHeightMap;
+  private RenderStatistics statistics;
+  private long rasterChecksum;
 
   public SimpleImage getImage() {
     return image;
@@ -36,6 +38,24 @@ public class RenderedFlame {
     return hdrHeightMap;
   }
 
+  // null if the render statistics were disabled
+  public RenderStatistics getStatistics() {
+    return statistics;
+  }
+
+  public void setStatistics(RenderStatistics pStatistics) {
+    statistics = pStatistics;
+  }
+
+  // only calculated by deterministic renders, 0 otherwise
+  public long getRasterChecksum() {
+    return rasterChecksum;
+  }
+
+  public void setRasterChecksum(long pRasterChecksum) {
+    rasterChecksum = pRasterChecksum;
+  }
+
   public void init(RenderInfo pRenderInfo) {
     image = new SimpleImage(pRenderInfo.getImageWidth(), pRenderInfo.getImageHeight());
     if (pRenderInfo.isRenderHDR()) {
@@ -17,7 +17,7 @@
 package org.jwildfire.create.tina.render;
 
 import org.jwildfire.create.tina.base.Flame;
-import org.jwildfire.create.tina.base.raster.AbstractRasterPoint;
+import org.jwildfire.create.tina.base.raster.AbstractRaster;
 import org.jwildfire.image.Pixel;
 
 public class SampleTonemapper {
@@ -27,13 +27,13 @@ public class SampleTonemapper {
   private final GammaCorrectedRGBPoint rbgPoint;
   private LogDensityFilter logDensityFilter;
   private GammaCorrectionFilter gammaCorrectionFilter;
-  private AbstractRasterPoint[][] raster;
+  private AbstractRaster raster;
   private int rasterWidth;
   private int rasterHeight;
   private int imageWidth;
   private int imageHeight;
 
-  public SampleTonemapper(Flame pFlame, AbstractRasterPoint[][] pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
+  public SampleTonemapper(Flame pFlame, AbstractRaster pRaster, int pRasterWidth, int pRasterHeight, int pImageWidth, int pImageHeight) {
     logDensityPnt = new LogDensityPoint();
     toolPixel = new Pixel();
     flame = pFlame.makeCopy();
@@ -58,6 +58,11 @@ public class SampleTonemapper {
     return toolPixel.getARGBValue();
   }
 
+  // an image pixel is filtered from the raster points (x, y) to (x + size - 1, y + size - 1)
+  public int getNoiseFilterSize() {
+    return logDensityFilter.getNoiseFilterSize();
+  }
+
   public double calcDensity(long pSampleCount) {
     return logDensityFilter.calcDensity(pSampleCount);
   }
@@ -0,0 +1,64 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+// Call count and time of a variation, collected by one render thread (or merged afterwards)
+public class VariationStatistics {
+  private final String name;
+  private long calls;
+  private long nanos;
+  private long invalidResults;
+
+  public VariationStatistics(String pName) {
+    name = pName;
+  }
+
+  public void addCall(long pNanos, boolean pInvalidResult) {
+    calls++;
+    nanos += pNanos;
+    if (pInvalidResult) {
+      invalidResults++;
+    }
+  }
+
+  public void add(VariationStatistics pStatistics) {
+    calls += pStatistics.calls;
+    nanos += pStatistics.nanos;
+    invalidResults += pStatistics.invalidResults;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCalls() {
+    return calls;
+  }
+
+  public long getNanos() {
+    return nanos;
+  }
+
+  // number of calls which produced NaN or infinite coordinates
+  public long getInvalidResults() {
+    return invalidResults;
+  }
+
+  public double getNanosPerCall() {
+    return calls > 0 ? (double) nanos / (double) calls : 0.0;
+  }
+}
@@ -0,0 +1,65 @@
+/*
+  JWildfire - an image and animation processor written in Java
+  Copyright (C) 1995-2013 Andreas Maschke
+
+  This is free software; you can redistribute it and/or modify it under the terms of the GNU Lesser
+  General Public License as published by the Free Software Foundation; either version 2.1 of the
+  License, or (at your option) any later version.
+
+  This software is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without
+  even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General Public License along with this software;
+  if not, write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+  02110-1301 USA, or see the FSF site: http://www.fsf.org.
+*/
+package org.jwildfire.create.tina.render;
+
+// Call count and time of an xForm (including its variations), collected by one render thread (or merged afterwards)
+public class XFormStatistics {
+  private final String name;
+  private long calls;
+  private long nanos;
+  private long invalidResets;
+
+  public XFormStatistics(String pName) {
+    name = pName;
+  }
+
+  public void addCall(long pNanos) {
+    calls++;
+    nanos += pNanos;
+  }
+
+  // the iteration had to be restarted after this xForm produced NaN or infinite coordinates
+  public void incInvalidResets() {
+    invalidResets++;
+  }
+
+  public void add(XFormStatistics pStatistics) {
+    calls += pStatistics.calls;
+    nanos += pStatistics.nanos;
+    invalidResets += pStatistics.invalidResets;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCalls() {
+    return calls;
+  }
+
+  public long getNanos() {
+    return nanos;
+  }
+
+  public long getInvalidResets() {
+    return invalidResets;
+  }
+
+  public double getNanosPerCall() {
+    return calls > 0 ? (double) nanos / (double) calls : 0.0;
+  }
+}
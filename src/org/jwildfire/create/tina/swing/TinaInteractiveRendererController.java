@@ -34,6 +34,7 @@ import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
 import javax.swing.JToggleButton;
 import javax.swing.ScrollPaneConstants;
+import javax.swing.SwingUtilities;
 
 import org.jwildfire.base.Prefs;
 import org.jwildfire.base.ResolutionProfile;
@@ -46,7 +47,8 @@ import org.jwildfire.create.tina.randomflame.RandomFlameGeneratorList;
 import org.jwildfire.create.tina.randomflame.RandomFlameGeneratorSampler;
 import org.jwildfire.create.tina.render.FlameRenderThread;
 import org.jwildfire.create.tina.render.FlameRenderer;
-import org.jwildfire.create.tina.render.IterationObserver;
+import org.jwildfire.create.tina.render.ProgressivePreview;
+import org.jwildfire.create.tina.render.ProgressivePreviewListener;
 import org.jwildfire.create.tina.render.RenderInfo;
 import org.jwildfire.create.tina.render.RenderedFlame;
 import org.jwildfire.create.tina.render.ResumedFlameRender;
@@ -56,7 +58,7 @@ import org.jwildfire.swing.ErrorHandler;
 import org.jwildfire.swing.ImageFileChooser;
 import org.jwildfire.swing.ImagePanel;
 
-public class TinaInteractiveRendererController implements IterationObserver {
+public class TinaInteractiveRendererController implements ProgressivePreviewListener {
   private enum State {
     IDLE, RENDER
   }
@@ -83,6 +85,7 @@ public class TinaInteractiveRendererController implements IterationObserver {
   private Flame currFlame;
   private List<FlameRenderThread> threads;
   private FlameRenderer renderer;
+  private ProgressivePreview preview;
   private State state = State.IDLE;
 
   public TinaInteractiveRendererController(TinaController pParentCtrl, ErrorHandler pErrorHandler, Prefs pPrefs,
@@ -268,11 +271,11 @@ public class TinaInteractiveRendererController implements IterationObserver {
       image.fillBackground(flame.getBGColorRed(), flame.getBGColorGreen(), flame.getBGColorBlue());
     }
     renderer = new FlameRenderer(flame, prefs, flame.isBGTransparency(), false);
-    renderer.registerIterationObserver(this);
     sampleCount = 0;
     renderStartTime = System.currentTimeMillis();
     pausedRenderTime = 0;
     threads = renderer.startRenderFlame(info);
+    startPreview();
     state = State.RENDER;
     enableControls();
   }
@@ -284,29 +287,30 @@ public class TinaInteractiveRendererController implements IterationObserver {
 
   private void cancelRender() {
     if (state == State.RENDER) {
-      while (true) {
-        boolean done = true;
-        for (FlameRenderThread thread : threads) {
-          if (!thread.isFinished()) {
-            done = false;
-            thread.cancel();
-            try {
-              Thread.sleep(1);
-            }
-            catch (InterruptedException e) {
-              e.printStackTrace();
-            }
-            break;
-          }
-        }
-        if (done) {
-          break;
-        }
-      }
+      renderer.cancelThreads(threads);
+      stopPreview();
       state = State.IDLE;
     }
   }
 
+  private void startPreview() {
+    stopPreview();
+    preview = new ProgressivePreview(renderer, threads, image, ProgressivePreview.DEFAULT_FRAME_RATE, this);
+    preview.start();
+  }
+
+  private void stopPreview() {
+    if (preview != null) {
+      preview.stop();
+      sampleCount = preview.getSampleCount();
+      preview = null;
+    }
+  }
+
+  private long getSampleCount() {
+    return preview != null ? preview.getSampleCount() : sampleCount;
+  }
+
   public void saveImageButton_clicked() {
     try {
       JFileChooser chooser = new ImageFileChooser();
@@ -321,7 +325,7 @@ public class TinaInteractiveRendererController implements IterationObserver {
       if (chooser.showSaveDialog(imageRootPanel) == JFileChooser.APPROVE_OPTION) {
         File file = chooser.getSelectedFile();
         prefs.setLastOutputImageFile(file);
-        RenderedFlame res = renderer.finishRenderFlame(sampleCount);
+        RenderedFlame res = renderer.finishRenderFlame(getSampleCount());
         new ImageWriter().saveImage(res.getImage(), file.getAbsolutePath());
         if (res.getHDRImage() != null) {
           new ImageWriter().saveImage(res.getHDRImage(), file.getAbsolutePath() + ".hdr");
@@ -347,35 +351,22 @@ public class TinaInteractiveRendererController implements IterationObserver {
   private long renderStartTime = 0;
   private long pausedRenderTime = 0;
 
-  private synchronized void incSampleCount() {
-    sampleCount++;
-  }
-
-  private synchronized void updateImage() {
-    imageRootPanel.repaint();
-  }
-
-  private synchronized void updateStats(FlameRenderThread pEventSource, double pQuality) {
+  private void updateStats(long pSampleCount, double pQuality) {
     statsTextArea.setText("Current quality: " + Tools.doubleToString(pQuality) + "\n" +
-        "samples so far: " + sampleCount + "\n" +
+        "samples so far: " + pSampleCount + "\n" +
         "render time: " + Tools.doubleToString((System.currentTimeMillis() - renderStartTime + pausedRenderTime) / 1000.0) + "s");
     statsTextArea.validate();
   }
 
   @Override
-  public void notifyIterationFinished(FlameRenderThread pEventSource, int pX, int pY) {
-    incSampleCount();
-    if (pX >= 0 && pX < image.getImageWidth() && pY >= 0 && pY < image.getImageHeight()) {
-      image.setARGB(pX, pY, pEventSource.getTonemapper().tonemapSample(pX, pY));
-      if (sampleCount % 2000 == 0) {
-        updateImage();
-      }
-      if (sampleCount % 10000 == 0) {
-        double quality = pEventSource.getTonemapper().calcDensity(sampleCount);
-        updateStats(pEventSource, quality);
-        pEventSource.getTonemapper().setDensity(quality);
+  public void previewUpdated(final long pSampleCount, final double pQuality) {
+    imageRootPanel.repaint();
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        updateStats(pSampleCount, pQuality);
       }
-    }
+    });
   }
 
   public void nextButton_clicked() {
@@ -560,13 +551,11 @@ public class TinaInteractiveRendererController implements IterationObserver {
         if (flame.getBGColorRed() > 0 || flame.getBGColorGreen() > 0 || flame.getBGColorBlue() > 0) {
           image.fillBackground(flame.getBGColorRed(), flame.getBGColorGreen(), flame.getBGColorBlue());
         }
-        renderer.registerIterationObserver(this);
         sampleCount = renderer.calcSampleCount();
         pausedRenderTime = resumedRender.getHeader().getElapsedMilliseconds();
         renderStartTime = System.currentTimeMillis();
-        for (FlameRenderThread thread : threads) {
-          new Thread(thread).start();
-        }
+        renderer.startThreads(threads);
+        startPreview();
         state = State.RENDER;
         enableControls();
       }
@@ -591,7 +580,7 @@ public class TinaInteractiveRendererController implements IterationObserver {
         if (chooser.showSaveDialog(imageRootPanel) == JFileChooser.APPROVE_OPTION) {
           File file = chooser.getSelectedFile();
           prefs.setLastOutputFlameFile(file);
-          renderer.saveState(file.getAbsolutePath(), threads, sampleCount, System.currentTimeMillis() - renderStartTime + pausedRenderTime, null);
+          renderer.saveState(file.getAbsolutePath(), threads, getSampleCount(), System.currentTimeMillis() - renderStartTime + pausedRenderTime, null);
         }
       }
       catch (Throwable ex) {
@@ -57,6 +57,7 @@ import org.jwildfire.create.tina.animate.SWFAnimationRenderThread;
 import org.jwildfire.create.tina.animate.SWFAnimationRenderThreadController;
 import org.jwildfire.create.tina.animate.XFormScript;
 import org.jwildfire.create.tina.base.Flame;
+import org.jwildfire.create.tina.batch.HeadlessRenderer;
 import org.jwildfire.create.tina.io.FlameReader;
 import org.jwildfire.create.tina.io.JWFMovieReader;
 import org.jwildfire.create.tina.io.JWFMovieWriter;
@@ -543,7 +544,7 @@ public class TinaSWFAnimatorController implements SWFAnimationRenderThreadContro
         updateMovieFields();
         int from = swfAnimatorFromFrameREd.getIntValue();
         int to = swfAnimatorToFrameREd.getIntValue();
-        renderThread = new SWFAnimationRenderThread(this, currMovie, file.getAbsolutePath(), from, to);
+        renderThread = new SWFAnimationRenderThread(this, new HeadlessRenderer(prefs, null, null), currMovie, file.getAbsolutePath(), from, to);
         try {
           enableControls();
           new Thread(renderThread).start();
@@ -42,6 +42,24 @@ public class JuliaFunc extends SimpleVariationFunc {
     }
   }
 
+  @Override
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount, double pAmount) {
+    // all points use the same branch
+    double branch = M_PI * (int) (2.0 * pContext.random());
+    boolean preserveZ = pContext.isPreserveZCoordinate();
+    for (int i = 0; i < pCount; i++) {
+      double a = pAffineTP[i].getPrecalcAtan() * 0.5 + branch;
+      double sina = sin(a);
+      double cosa = cos(a);
+      double r = pAmount * sqrt(sqrt(pAffineTP[i].x * pAffineTP[i].x + pAffineTP[i].y * pAffineTP[i].y));
+      pVarTP[i].x += r * cosa;
+      pVarTP[i].y += r * sina;
+      if (preserveZ) {
+        pVarTP[i].z += pAmount * pAffineTP[i].z;
+      }
+    }
+  }
+
   @Override
   public String getName() {
     return "julia";
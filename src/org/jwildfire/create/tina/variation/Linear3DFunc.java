@@ -32,6 +32,15 @@ public class Linear3DFunc extends SimpleVariationFunc {
     pVarTP.z += pAmount * pAffineTP.z;
   }
 
+  @Override
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount, double pAmount) {
+    for (int i = 0; i < pCount; i++) {
+      pVarTP[i].x += pAmount * pAffineTP[i].x;
+      pVarTP[i].y += pAmount * pAffineTP[i].y;
+      pVarTP[i].z += pAmount * pAffineTP[i].z;
+    }
+  }
+
   @Override
   public String getName() {
     return "linear3D";
@@ -34,6 +34,18 @@ public class LinearFunc extends SimpleVariationFunc {
     }
   }
 
+  @Override
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount, double pAmount) {
+    boolean preserveZ = pContext.isPreserveZCoordinate();
+    for (int i = 0; i < pCount; i++) {
+      pVarTP[i].x += pAmount * pAffineTP[i].x;
+      pVarTP[i].y += pAmount * pAffineTP[i].y;
+      if (preserveZ) {
+        pVarTP[i].z += pAmount * pAffineTP[i].z;
+      }
+    }
+  }
+
   @Override
   public String getName() {
     return "linear";
@@ -36,6 +36,19 @@ public class SphericalFunc extends SimpleVariationFunc {
     }
   }
 
+  @Override
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount, double pAmount) {
+    boolean preserveZ = pContext.isPreserveZCoordinate();
+    for (int i = 0; i < pCount; i++) {
+      double r = pAmount / (pAffineTP[i].x * pAffineTP[i].x + pAffineTP[i].y * pAffineTP[i].y + EPSILON);
+      pVarTP[i].x += pAffineTP[i].x * r;
+      pVarTP[i].y += pAffineTP[i].y * r;
+      if (preserveZ) {
+        pVarTP[i].z += pAmount * pAffineTP[i].z;
+      }
+    }
+  }
+
   @Override
   public String getName() {
     return "spherical";
@@ -22,7 +22,6 @@ import static org.jwildfire.create.tina.base.Constants.AVAILABILITY_JWILDFIRE;
 import java.util.List;
 
 import org.jwildfire.base.Prefs;
-import org.jwildfire.create.tina.base.Constants;
 import org.jwildfire.create.tina.base.DrawMode;
 import org.jwildfire.create.tina.base.Flame;
 import org.jwildfire.create.tina.base.Layer;
@@ -57,7 +56,7 @@ public class SubFlameWFFunc extends VariationFunc {
       if (++iter > MAX_ITER) {
         return;
       }
-      xf = xf.getNextAppliedXFormTable()[pContext.random(Constants.NEXT_APPLIED_XFORM_TABLE_SIZE)];
+      xf = xf.getNextAppliedXForms().next(pContext.random());
       if (xf == null) {
         return;
       }
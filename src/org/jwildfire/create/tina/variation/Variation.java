@@ -25,6 +25,7 @@ import org.jwildfire.create.tina.animate.AnimAware;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
 import org.jwildfire.create.tina.edit.Assignable;
+import org.jwildfire.create.tina.render.VariationStatistics;
 
 public class Variation implements Assignable<Variation>, Serializable {
   private static final long serialVersionUID = 1L;
@@ -32,6 +33,8 @@ public class Variation implements Assignable<Variation>, Serializable {
   private double amount;
   @AnimAware
   private VariationFunc func;
+  // only set while rendering with statistics enabled
+  private transient VariationStatistics statistics;
 
   public Variation() {
 
@@ -59,7 +62,40 @@ public class Variation implements Assignable<Variation>, Serializable {
   }
 
   public void transform(FlameTransformationContext pContext, XForm pXForm, XYZPoint pAffineTP, XYZPoint pVarTP) {
-    func.transform(pContext, pXForm, pAffineTP, pVarTP, amount);
+    if (statistics == null) {
+      func.transform(pContext, pXForm, pAffineTP, pVarTP, amount);
+    }
+    else {
+      long t0 = System.nanoTime();
+      func.transform(pContext, pXForm, pAffineTP, pVarTP, amount);
+      long t1 = System.nanoTime();
+      boolean invalid = Double.isNaN(pVarTP.x) || Double.isInfinite(pVarTP.x) || Double.isNaN(pVarTP.y) || Double.isInfinite(pVarTP.y) || Double.isNaN(pVarTP.z) || Double.isInfinite(pVarTP.z);
+      statistics.addCall(t1 - t0, invalid);
+    }
+  }
+
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount) {
+    if (statistics == null) {
+      func.transformPoints(pContext, pXForm, pAffineTP, pVarTP, pCount, amount);
+    }
+    else {
+      long t0 = System.nanoTime();
+      func.transformPoints(pContext, pXForm, pAffineTP, pVarTP, pCount, amount);
+      long nanos = (System.nanoTime() - t0) / pCount;
+      for (int i = 0; i < pCount; i++) {
+        XYZPoint p = pVarTP[i];
+        boolean invalid = Double.isNaN(p.x) || Double.isInfinite(p.x) || Double.isNaN(p.y) || Double.isInfinite(p.y) || Double.isNaN(p.z) || Double.isInfinite(p.z);
+        statistics.addCall(nanos, invalid);
+      }
+    }
+  }
+
+  public VariationStatistics getStatistics() {
+    return statistics;
+  }
+
+  public void setStatistics(VariationStatistics pStatistics) {
+    statistics = pStatistics;
   }
 
   @Override
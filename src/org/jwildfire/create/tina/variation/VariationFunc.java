@@ -23,6 +23,7 @@ import java.io.Serializable;
 import org.jwildfire.create.tina.base.Layer;
 import org.jwildfire.create.tina.base.XForm;
 import org.jwildfire.create.tina.base.XYZPoint;
+import org.jwildfire.create.tina.random.AbstractRandomGenerator.RandGenStatus;
 
 @SuppressWarnings("serial")
 public abstract class VariationFunc implements Serializable {
@@ -41,6 +42,27 @@ public abstract class VariationFunc implements Serializable {
 
   public abstract void transform(FlameTransformationContext pContext, XForm pXForm, XYZPoint pAffineTP, XYZPoint pVarTP, double pAmount);
 
+  // Transforms the first pCount points of the arrays in one pass, all points must see the same random numbers.
+  // The default implementation records the random numbers drawn for the first point and replays them for the others,
+  // variations which draw no (or only a single) random number should override it.
+  public void transformPoints(FlameTransformationContext pContext, XForm pXForm, XYZPoint[] pAffineTP, XYZPoint[] pVarTP, int pCount, double pAmount) {
+    if (pCount == 1) {
+      transform(pContext, pXForm, pAffineTP[0], pVarTP[0], pAmount);
+      return;
+    }
+    try {
+      pContext.setRandGenStatus(RandGenStatus.RECORDING);
+      transform(pContext, pXForm, pAffineTP[0], pVarTP[0], pAmount);
+      for (int i = 1; i < pCount; i++) {
+        pContext.setRandGenStatus(RandGenStatus.REPLAY);
+        transform(pContext, pXForm, pAffineTP[i], pVarTP[i], pAmount);
+      }
+    }
+    finally {
+      pContext.setRandGenStatus(RandGenStatus.DEFAULT);
+    }
+  }
+
   public abstract String getName();
 
   public abstract String[] getParameterNames();
@@ -65,8 +65,14 @@ public class ImageWriter {
   }
 
   public void saveImage(SimpleHDRImage pImg, String pFilename) throws Exception {
+    saveImage(pImg, pFilename, false);
+  }
+
+  public void saveImage(SimpleHDRImage pImg, String pFilename, boolean pQuiet) throws Exception {
     String filename = new File(pFilename).getName();
-    System.out.println("file: " + filename);
+    if (!pQuiet) {
+      System.out.println("file: " + filename);
+    }
     String[] p = filename.split("\\.");
     if (p.length == 1)
       saveAsHDR(pImg, pFilename + ".jpg");
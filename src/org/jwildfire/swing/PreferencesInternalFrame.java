@@ -9,10 +9,12 @@ import java.awt.event.KeyEvent;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JInternalFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.WindowConstants;
 
 import org.jwildfire.base.Prefs;
+import org.jwildfire.base.mathlib.MathLib;
 
 public class PreferencesInternalFrame extends JInternalFrame {
   private static final long serialVersionUID = 1L;
@@ -108,6 +110,10 @@ public class PreferencesInternalFrame extends JInternalFrame {
           try {
             prefs.assign(editPrefs);
             prefs.saveToFromFile();
+            if (MathLib.isRestartRequired(prefs.getBaseMathLibType())) {
+              JOptionPane.showMessageDialog(PreferencesInternalFrame.this, "The math library " + prefs.getBaseMathLibType() + " will be used after a restart, active: " + MathLib.getBaseMathLibType(),
+                  "Preferences", JOptionPane.INFORMATION_MESSAGE);
+            }
           }
           catch (Exception ex) {
             mainController.handleError(ex);